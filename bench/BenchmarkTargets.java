@@ -0,0 +1,145 @@
+import java.io.File;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Entry points into truffula for the JMH benchmarks.
+ * 
+ * JMH requires benchmark classes to be in a named package, but truffula's classes are
+ * in the default package, which named packages cannot refer to. The benchmarks look up
+ * these factory methods reflectively once during setup and then only call the returned
+ * functional interfaces, so the measured code runs without any reflection.
+ */
+public class BenchmarkTargets {
+
+  private static final ConsoleColor[] COLORS = {ConsoleColor.WHITE, ConsoleColor.PURPLE, ConsoleColor.YELLOW};
+
+  private BenchmarkTargets() {
+  }
+
+  /**
+   * Returns a task that prints the tree below root to sink.
+   *
+   * @param root        the root of the tree
+   * @param parallelism the number of threads used to list directories
+   * @param sink        the stream to print to
+   * @return the task
+   */
+  public static Runnable printTree(File root, int parallelism, PrintStream sink) {
+    TruffulaOptions options = new TruffulaOptions(root, false, true, parallelism);
+    return () -> new TruffulaPrinter(options, sink).printTree();
+  }
+
+  /**
+   * Returns a sort function.
+   *
+   * @param kind "collation" for AlphabeticalFileSorter.sort (collation keys), or
+   *             "comparator" for Arrays.sort with a getName()/compareNames comparator
+   * @return the sort function
+   */
+  public static UnaryOperator<File[]> sorter(String kind) {
+    if (kind.equals("comparator")) {
+      return files -> {
+        Arrays.sort(files, (f1, f2) -> AlphabeticalFileSorter.compareNames(f1.getName(), f2.getName()));
+        return files;
+      };
+    }
+    return AlphabeticalFileSorter::sort;
+  }
+
+  /**
+   * Returns a task that prints every line through a ColorPrinter, cycling colors every
+   * eight lines like a tree would, then flushes.
+   *
+   * @param mode  "unbuffered", "buffered", "compact" or "plain" (buffered, no escape codes)
+   * @param lines the lines to print
+   * @param sink  the stream to print to
+   * @return the task
+   */
+  public static Runnable printLines(String mode, String[] lines, PrintStream sink) {
+    ColorPrinter printer;
+    if (mode.equals("unbuffered")) {
+      printer = new ColorPrinter(sink);
+    } else {
+      AnsiWriter writer = new AnsiWriter(sink, AnsiWriter.DEFAULT_BUFFER_SIZE, mode.equals("compact"),
+          mode.equals("plain") ? ColorSupport.NONE : ColorSupport.BASIC);
+      printer = new ColorPrinter(sink, ConsoleColor.WHITE, writer);
+    }
+    return () -> {
+      for (int i = 0; i < lines.length; i++) {
+        printer.setCurrentColor(COLORS[(i / 8) % COLORS.length]);
+        printer.println(lines[i]);
+      }
+      printer.flush();
+    };
+  }
+
+  /**
+   * Returns a task that prints tree lines for the given depths the way printTree does.
+   *
+   * @param mode   "repeat" to build each line with INDENT.repeat(depth) and print it
+   *               through ColorPrinter, or "prefixes" to use a LinePrefixes table
+   * @param depths the depth of each line
+   * @param sink   the stream to print to
+   * @return the task
+   */
+  public static Runnable printTreeLines(String mode, int[] depths, PrintStream sink) {
+    List<ConsoleColor> colors = List.of(COLORS);
+    AnsiWriter writer = new AnsiWriter(sink, AnsiWriter.DEFAULT_BUFFER_SIZE, false);
+    if (mode.equals("repeat")) {
+      ColorPrinter printer = new ColorPrinter(sink, ConsoleColor.WHITE, writer);
+      return () -> {
+        for (int depth : depths) {
+          printer.setCurrentColor(colors.get(depth % colors.size()));
+          printer.println("   ".repeat(depth) + "entry.txt");
+        }
+        printer.flush();
+      };
+    }
+    LinePrefixes prefixes = new LinePrefixes(colors, true, "   ");
+    return () -> {
+      for (int depth : depths) {
+        writer.writeLine(prefixes.get(depth), "entry.txt", "");
+      }
+      writer.flush();
+    };
+  }
+
+  /**
+   * Returns a function that lists the whole tree below root and keeps it in memory.
+   *
+   * @param kind "files" to keep every directory's File[] listing in a map, the way a
+   *             File-based model would, or "compact" for a CompactTree
+   * @param root the root of the tree
+   * @return the function, returning the model
+   */
+  public static Supplier<Object> buildModel(String kind, File root) {
+    TruffulaPrinter printer = new TruffulaPrinter(new TruffulaOptions(root, false, false),
+        new PrintStream(PrintStream.nullOutputStream()));
+    if (kind.equals("files")) {
+      return () -> {
+        Map<File, File[]> listings = new HashMap<>();
+        addListings(printer, root, listings);
+        return listings;
+      };
+    }
+    return printer::buildCompactTree;
+  }
+
+  private static void addListings(TruffulaPrinter printer, File directory, Map<File, File[]> listings) {
+    File[] children = printer.listChildren(directory);
+    listings.put(directory, children);
+    for (File child : children) {
+      // Ask for the name, as printing would, so the cached name String is counted
+      child.getName();
+      if (child.isDirectory()) {
+        addListings(printer, child, listings);
+      }
+    }
+  }
+}
@@ -0,0 +1,68 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Helpers for building synthetic directory trees for benchmarks.
+ */
+final class BenchmarkTrees {
+
+  private BenchmarkTrees() {
+  }
+
+  /**
+   * Creates a fresh temporary directory.
+   *
+   * @param prefix the prefix of the directory's name
+   * @return the new, empty directory
+   * @throws IOException if the directory cannot be created
+   */
+  static File createTempDirectory(String prefix) throws IOException {
+    File dir = File.createTempFile(prefix, "");
+    if (!dir.delete() || !dir.mkdir()) {
+      throw new IOException("Could not create temporary directory " + dir);
+    }
+    return dir;
+  }
+
+  /**
+   * Fills a directory with width entries per directory, down to the given depth.
+   * Every third entry is a subdirectory (while depth remains); the rest are empty files.
+   * Names alternate in case so the case-insensitive sort has real work to do.
+   *
+   * @param parent the directory to fill
+   * @param width  the number of entries in each directory
+   * @param depth  the number of directory levels below parent
+   * @throws IOException if a file cannot be created
+   */
+  static void build(File parent, int width, int depth) throws IOException {
+    for (int i = 0; i < width; i++) {
+      String name = (i % 2 == 0 ? "Entry" : "entry") + i;
+      if (depth > 0 && i % 3 == 0) {
+        File dir = new File(parent, name);
+        if (!dir.mkdir()) {
+          throw new IOException("Could not create " + dir);
+        }
+        build(dir, width, depth - 1);
+      } else if (!new File(parent, name + ".txt").createNewFile()) {
+        throw new IOException("Could not create " + name + ".txt in " + parent);
+      }
+    }
+  }
+
+  /**
+   * Recursively deletes a file or directory.
+   *
+   * @param file the file or directory to delete
+   */
+  static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+}
@@ -0,0 +1,56 @@
+package benchmarks;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures ColorPrinter throughput to a sink that discards everything, comparing
+ * the unbuffered printer with the buffered printer (with and without compact color).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ColorPrinterBenchmark {
+
+  private static final int LINES = 1000;
+
+  @Param({"unbuffered", "buffered", "compact", "plain"})
+  public String mode;
+
+  private Runnable printLines;
+
+  @Setup
+  public void setUp() {
+    // Autoflush, like System.out, so the unbuffered printer pays for every write
+    PrintStream sink = new PrintStream(OutputStream.nullOutputStream(), true);
+    String[] lines = new String[LINES];
+    for (int i = 0; i < LINES; i++) {
+      lines[i] = "   ".repeat(i % 5) + "entry" + i + ".txt";
+    }
+    printLines = Targets.get("printLines", new Class<?>[] {String.class, String[].class, PrintStream.class},
+        Runnable.class, mode, lines, sink);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LINES)
+  public void println() {
+    printLines.run();
+  }
+}
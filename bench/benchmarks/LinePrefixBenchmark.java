@@ -0,0 +1,58 @@
+package benchmarks;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of emitting tree lines at increasing depths, comparing lines built
+ * with a repeated indentation string against the precomputed LinePrefixes table.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LinePrefixBenchmark {
+
+  private static final int LINES = 1000;
+
+  @Param({"repeat", "prefixes"})
+  public String mode;
+
+  @Param({"4", "32"})
+  public int maxDepth;
+
+  private Runnable printLines;
+
+  @Setup
+  public void setUp() {
+    PrintStream sink = new PrintStream(OutputStream.nullOutputStream());
+    int[] depths = new int[LINES];
+    for (int i = 0; i < LINES; i++) {
+      depths[i] = i % (maxDepth + 1);
+    }
+    printLines = Targets.get("printTreeLines", new Class<?>[] {String.class, int[].class, PrintStream.class},
+        Runnable.class, mode, depths, sink);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LINES)
+  public void printLines() {
+    printLines.run();
+  }
+}
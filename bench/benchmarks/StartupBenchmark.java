@@ -0,0 +1,109 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures time to first line: launching target/truffula.jar in a new JVM on a small
+ * tree and reading until the first line of output arrives, with and without the class
+ * data sharing archive from the cds profile.
+ * 
+ * Build both first, the archive last since building benchmarks repackages the jar,
+ * then run from the project directory:
+ *   mvn -B -Pbench package -DskipTests
+ *   mvn -B -Pcds package -DskipTests
+ *   java -jar target/benchmarks.jar StartupBenchmark
+ * 
+ * The jar and archive locations can be overridden with -Dtruffula.jar and
+ * -Dtruffula.jsa.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 20)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+
+  @Param({"none", "cds"})
+  public String archive;
+
+  private File root;
+  private List<String> command;
+  private Process process;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    File jar = new File(System.getProperty("truffula.jar", "target/truffula.jar"));
+    File jsa = new File(System.getProperty("truffula.jsa", "target/truffula.jsa"));
+    if (!jar.isFile()) {
+      throw new IllegalStateException("Missing " + jar + "; build it with mvn -B package");
+    }
+    if (archive.equals("cds") && !jsa.isFile()) {
+      throw new IllegalStateException("Missing " + jsa + "; build it with mvn -B -Pcds package");
+    }
+    root = BenchmarkTrees.createTempDirectory("truffula-startup");
+    BenchmarkTrees.build(root, 10, 1);
+
+    command = new ArrayList<>();
+    command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+    if (archive.equals("cds")) {
+      command.add("-XX:SharedArchiveFile=" + jsa.getPath());
+    }
+    command.add("-jar");
+    command.add(jar.getPath());
+    command.add(root.getPath());
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    BenchmarkTrees.delete(root);
+  }
+
+  /**
+   * Lets the launched JVM finish outside the measurement, draining its output so it
+   * never blocks on a full pipe.
+   */
+  @TearDown(Level.Invocation)
+  public void finishProcess() throws IOException, InterruptedException {
+    if (process != null) {
+      try (InputStream in = process.getInputStream()) {
+        in.transferTo(OutputStream.nullOutputStream());
+      }
+      process.waitFor();
+      process = null;
+    }
+  }
+
+  @Benchmark
+  public int timeToFirstLine() throws IOException {
+    process = new ProcessBuilder(command)
+        .redirectError(ProcessBuilder.Redirect.DISCARD)
+        .start();
+    InputStream in = process.getInputStream();
+    int bytes = 0;
+    for (int b = in.read(); b != -1 && b != '\n'; b = in.read()) {
+      bytes++;
+    }
+    return bytes;
+  }
+}
@@ -0,0 +1,33 @@
+package benchmarks;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Looks up the factory methods of the default-package BenchmarkTargets class.
+ */
+final class Targets {
+
+  private Targets() {
+  }
+
+  /**
+   * Calls a static factory method of BenchmarkTargets.
+   *
+   * @param name       the method name
+   * @param types      the parameter types
+   * @param resultType the type of the returned object
+   * @param args       the arguments
+   * @return the result of the call
+   */
+  static <T> T get(String name, Class<?>[] types, Class<T> resultType, Object... args) {
+    try {
+      Method method = Class.forName("BenchmarkTargets").getMethod(name, types);
+      return resultType.cast(method.invoke(null, args));
+    } catch (InvocationTargetException e) {
+      throw new IllegalStateException("BenchmarkTargets." + name + " failed", e.getCause());
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Cannot find BenchmarkTargets." + name, e);
+    }
+  }
+}
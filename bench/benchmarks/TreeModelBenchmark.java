@@ -0,0 +1,103 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares keeping a listed tree in memory as File[] listings against a CompactTree.
+ * 
+ * The score is the time to list and build the model. Setup also prints the heap each
+ * model retains per entry, measured as the used heap after a full GC with the model
+ * held minus the used heap without it. Run with -prof gc to see allocation per build.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx1g", "-XX:+UseSerialGC"})
+@State(Scope.Benchmark)
+public class TreeModelBenchmark {
+
+  @Param({"files", "compact"})
+  public String model;
+
+  @Param({"20"})
+  public int width;
+
+  @Param({"3"})
+  public int depth;
+
+  private File root;
+  private Supplier<Object> build;
+
+  /**
+   * Holds the model while its retained size is measured.
+   */
+  private Object retained;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    root = BenchmarkTrees.createTempDirectory("truffula-model");
+    BenchmarkTrees.build(root, width, depth);
+    build = Targets.get("buildModel", new Class<?>[] {String.class, File.class}, Supplier.class, model, root);
+
+    // One build up front so the measurement does not include loading classes
+    build.get();
+    // The first full GC also releases startup data, so it does not count
+    usedHeapAfterGc();
+    long before = usedHeapAfterGc();
+    retained = build.get();
+    long after = usedHeapAfterGc();
+    long entries = countEntries(root);
+    System.out.printf("%n%s model: %d entries, %d bytes retained, %.1f bytes per entry%n",
+        model, entries, after - before, (double) (after - before) / entries);
+    retained = null;
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    BenchmarkTrees.delete(root);
+  }
+
+  @Benchmark
+  public Object build() {
+    return build.get();
+  }
+
+  private static long usedHeapAfterGc() {
+    MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    for (int i = 0; i < 3; i++) {
+      memory.gc();
+    }
+    return memory.getHeapMemoryUsage().getUsed();
+  }
+
+  private static long countEntries(File directory) {
+    long count = 1;
+    File[] children = directory.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        count += child.isDirectory() ? countEntries(child) : 1;
+      }
+    }
+    return count;
+  }
+}
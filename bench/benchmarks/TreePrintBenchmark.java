@@ -0,0 +1,65 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures TruffulaPrinter.printTree over synthetic trees of varying width and depth,
+ * printing to a sink that discards everything.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TreePrintBenchmark {
+
+  @Param({"10", "40"})
+  public int width;
+
+  @Param({"2", "4"})
+  public int depth;
+
+  @Param({"1", "4"})
+  public int parallelism;
+
+  private File root;
+  private Runnable printTree;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    root = BenchmarkTrees.createTempDirectory("truffula-bench");
+    BenchmarkTrees.build(root, width, depth);
+    PrintStream sink = new PrintStream(OutputStream.nullOutputStream());
+    printTree = Targets.get("printTree", new Class<?>[] {File.class, int.class, PrintStream.class},
+        Runnable.class, root, parallelism, sink);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    BenchmarkTrees.delete(root);
+  }
+
+  @Benchmark
+  public void printTree() {
+    printTree.run();
+  }
+}
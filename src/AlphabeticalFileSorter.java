@@ -1,22 +1,40 @@
 import java.io.File;
-import java.util.Arrays;
 
 /**
  * Utility class for sorting an array of files alphabetically by name, 
- * ignoring case differences.
+ * ignoring case differences. Names that only differ in case are sorted
+ * lexicographically, so "Cat.png" comes before "cat.png".
  */
 public class AlphabeticalFileSorter {
 
   /**
    * Sorts an array of files alphabetically by name, ignoring case.
+   * 
+   * The sorting is done by CollationKeySorter, which folds the case of each name
+   * once up front instead of on every comparison. Arrays with fewer than two files
+   * are returned as they are, so empty and single-entry directories never load it.
    *
    * @param files the array of files to be sorted
    * @return the sorted array of files
    */
   public static File[] sort(File[] files) {
-    // This uses lambdas, which we haven't yet covered
-    // Look at it with curiosity, but you don't need to edit anything here
-    Arrays.sort(files, (f1, f2) -> f1.getName().compareToIgnoreCase(f2.getName()));
-    return files;
+    if (files.length < 2) {
+      return files;
+    }
+    return CollationKeySorter.sort(files);
+  }
+
+  /**
+   * Compares two file names using the same order as sort(), for code that
+   * sorts names without File objects.
+   *
+   * @param name1 the first name
+   * @param name2 the second name
+   * @return a negative number, zero, or a positive number as name1 sorts before,
+   *         the same as, or after name2
+   */
+  public static int compareNames(String name1, String name2) {
+    int result = name1.compareToIgnoreCase(name2);
+    return result != 0 ? result : name1.compareTo(name2);
   }
 }
@@ -0,0 +1,280 @@
+import java.io.Flushable;
+import java.io.PrintStream;
+
+/**
+ * A buffered writer for colored text that batches output into large writes.
+ * 
+ * Text and ANSI color codes are encoded into a reusable byte buffer, which is only
+ * written to the underlying PrintStream when it fills up or when flush() is called.
+ * Printing a large tree therefore takes a handful of large writes instead of several
+ * small writes per line.
+ * 
+ * The writer can optionally elide repeated color codes. Normally every message is
+ * written as color code + message (+ RESET), exactly like ColorPrinter. When eliding,
+ * a color code is only written when the color actually changes, and a requested reset
+ * is delayed until it is needed (a different color, or a flush). What the terminal
+ * displays is the same, but far fewer bytes are written.
+ * 
+ * Example Usage:
+ * 
+ * AnsiWriter writer = new AnsiWriter(System.out, AnsiWriter.DEFAULT_BUFFER_SIZE, true);
+ * writer.writeLine(ConsoleColor.RED, "This is red text", true);
+ * writer.flush();
+ * 
+ * Nothing is guaranteed to reach the PrintStream until flush() is called.
+ * 
+ * The escape codes written depend on the ColorSupport the writer was made for. With
+ * ColorSupport.NONE no escape codes are written at all, and every line is just its
+ * indentation and text, with no per-line color bookkeeping.
+ */
+public class AnsiWriter implements Flushable {
+
+  /**
+   * The default buffer size in bytes.
+   */
+  public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+  private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes();
+
+  private final PrintStream out;
+  private final byte[] buffer;
+  private final boolean elideRepeatedColors;
+
+  /**
+   * Whether no escape codes are written at all.
+   */
+  private final boolean plain;
+
+  /**
+   * The escape code for each ConsoleColor, indexed by ordinal.
+   */
+  private final String[] codes;
+  private int position;
+
+  /**
+   * The color currently in effect in the output, or null if it is the default color.
+   */
+  private ConsoleColor activeColor;
+
+  /**
+   * Whether a reset was requested but not yet written (only used when eliding).
+   */
+  private boolean pendingReset;
+
+  private long bytesWritten;
+  private long writeCount;
+
+  /**
+   * Constructs an AnsiWriter.
+   *
+   * @param out                 the PrintStream to write to
+   * @param bufferSize          the size of the buffer in bytes
+   * @param elideRepeatedColors if true, only write color codes when the color changes
+   * @throws IllegalArgumentException if bufferSize is less than 64
+   */
+  public AnsiWriter(PrintStream out, int bufferSize, boolean elideRepeatedColors) {
+    this(out, bufferSize, elideRepeatedColors, ColorSupport.BASIC);
+  }
+
+  /**
+   * Constructs an AnsiWriter that writes the escape codes of the given color level.
+   *
+   * @param out                 the PrintStream to write to
+   * @param bufferSize          the size of the buffer in bytes
+   * @param elideRepeatedColors if true, only write color codes when the color changes
+   * @param colorSupport        which escape codes to write; NONE writes none
+   * @throws IllegalArgumentException if bufferSize is less than 64
+   */
+  public AnsiWriter(PrintStream out, int bufferSize, boolean elideRepeatedColors, ColorSupport colorSupport) {
+    if (bufferSize < 64) {
+      throw new IllegalArgumentException("bufferSize must be at least 64: " + bufferSize);
+    }
+    this.out = out;
+    this.buffer = new byte[bufferSize];
+    this.elideRepeatedColors = elideRepeatedColors;
+    this.plain = colorSupport == ColorSupport.NONE;
+    ConsoleColor[] colors = ConsoleColor.values();
+    this.codes = new String[colors.length];
+    for (ConsoleColor color : colors) {
+      codes[color.ordinal()] = colorSupport.codeFor(color);
+    }
+  }
+
+  /**
+   * Writes a message in the given color.
+   *
+   * @param color   the color of the message
+   * @param message the message to write
+   * @param reset   if true, the color is reset after the message
+   */
+  public void write(ConsoleColor color, String message, boolean reset) {
+    startColor(color);
+    writeText(message);
+    endColor(reset);
+  }
+
+  /**
+   * Writes a message followed by a line separator in the given color.
+   *
+   * @param color   the color of the message
+   * @param message the message to write
+   * @param reset   if true, the color is reset after the line separator
+   */
+  public void writeLine(ConsoleColor color, String message, boolean reset) {
+    startColor(color);
+    writeText(message);
+    writeBytes(LINE_SEPARATOR, 0, LINE_SEPARATOR.length);
+    endColor(reset);
+  }
+
+  /**
+   * Writes a line that starts with a precomputed prefix (color code and indentation),
+   * followed by text, a suffix, a line separator, and a reset.
+   * 
+   * When eliding repeated colors and the prefix's color is already active, only the
+   * indentation part of the prefix is written.
+   *
+   * @param prefix the encoded start of the line
+   * @param text   the text after the prefix
+   * @param suffix text after the main text (for example "/"), possibly empty
+   */
+  public void writeLine(LinePrefixes.Prefix prefix, String text, String suffix) {
+    byte[] bytes = prefix.getBytes();
+    if (plain) {
+      int offset = prefix.getIndentOffset();
+      writeBytes(bytes, offset, bytes.length - offset);
+      writeText(text);
+      writeText(suffix);
+      writeBytes(LINE_SEPARATOR, 0, LINE_SEPARATOR.length);
+      return;
+    }
+    if (elideRepeatedColors && prefix.getColor() == activeColor) {
+      int offset = prefix.getIndentOffset();
+      writeBytes(bytes, offset, bytes.length - offset);
+    } else {
+      writeBytes(bytes, 0, bytes.length);
+      activeColor = prefix.getColor();
+    }
+    pendingReset = false;
+    writeText(text);
+    writeText(suffix);
+    writeBytes(LINE_SEPARATOR, 0, LINE_SEPARATOR.length);
+    endColor(true);
+  }
+
+  /**
+   * Writes any pending reset and everything in the buffer to the PrintStream,
+   * then flushes the PrintStream.
+   */
+  @Override
+  public void flush() {
+    if (pendingReset) {
+      writeAscii(codes[ConsoleColor.RESET.ordinal()]);
+      pendingReset = false;
+      activeColor = null;
+    }
+    drain();
+    out.flush();
+  }
+
+  /**
+   * Returns the number of bytes written to the PrintStream so far.
+   *
+   * @return the number of bytes written
+   */
+  public long getBytesWritten() {
+    return bytesWritten;
+  }
+
+  /**
+   * Returns the number of writes made to the PrintStream so far. Each write
+   * hands over a whole buffer (or what was left of it when flushing).
+   *
+   * @return the number of writes
+   */
+  public long getWriteCount() {
+    return writeCount;
+  }
+
+  private void startColor(ConsoleColor color) {
+    if (plain) {
+      return;
+    }
+    if (!elideRepeatedColors) {
+      writeAscii(codes[color.ordinal()]);
+      return;
+    }
+    if (color != activeColor) {
+      // Every color code also resets attributes, so a pending reset is not needed
+      writeAscii(codes[color.ordinal()]);
+      activeColor = color;
+    }
+    pendingReset = false;
+  }
+
+  private void endColor(boolean reset) {
+    if (!reset || plain) {
+      return;
+    }
+    if (elideRepeatedColors) {
+      pendingReset = true;
+    } else {
+      writeAscii(codes[ConsoleColor.RESET.ordinal()]);
+    }
+  }
+
+  /**
+   * Writes text, copying ASCII characters straight into the buffer and only
+   * encoding the text with the PrintStream's charset if it contains anything else.
+   */
+  private void writeText(String text) {
+    int length = text.length();
+    for (int i = 0; i < length; i++) {
+      if (text.charAt(i) >= 0x80) {
+        byte[] encoded = text.getBytes(out.charset());
+        writeBytes(encoded, 0, encoded.length);
+        return;
+      }
+    }
+    writeAscii(text);
+  }
+
+  private void writeAscii(String text) {
+    int length = text.length();
+    int index = 0;
+    while (index < length) {
+      if (position == buffer.length) {
+        drain();
+      }
+      int end = Math.min(length, index + buffer.length - position);
+      while (index < end) {
+        buffer[position++] = (byte) text.charAt(index++);
+      }
+    }
+  }
+
+  private void writeBytes(byte[] bytes, int offset, int length) {
+    if (length > buffer.length - position) {
+      drain();
+      if (length > buffer.length) {
+        writeToStream(bytes, offset, length);
+        return;
+      }
+    }
+    System.arraycopy(bytes, offset, buffer, position, length);
+    position += length;
+  }
+
+  private void drain() {
+    if (position > 0) {
+      writeToStream(buffer, 0, position);
+      position = 0;
+    }
+  }
+
+  private void writeToStream(byte[] bytes, int offset, int length) {
+    out.write(bytes, offset, length);
+    bytesWritten += length;
+    writeCount++;
+  }
+}
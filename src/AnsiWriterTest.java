@@ -0,0 +1,114 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class AnsiWriterTest {
+
+  private static final ConsoleColor[] COLORS = {ConsoleColor.WHITE, ConsoleColor.PURPLE, ConsoleColor.YELLOW};
+
+  @Test
+  void testMatchesColorPrinterWhenNotEliding() {
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    ColorPrinter printer = new ColorPrinter(new PrintStream(expected));
+    ByteArrayOutputStream actual = new ByteArrayOutputStream();
+    AnsiWriter writer = new AnsiWriter(new PrintStream(actual), 64, false);
+
+    for (int i = 0; i < 100; i++) {
+      ConsoleColor color = COLORS[i % COLORS.length];
+      printer.setCurrentColor(color);
+      printer.println("line " + i, i % 2 == 0);
+      printer.print("é", true);
+      writer.writeLine(color, "line " + i, i % 2 == 0);
+      writer.write(color, "é", true);
+    }
+    writer.flush();
+
+    assertEquals(expected.toString(), actual.toString());
+  }
+
+  @Test
+  void testElidesRepeatedColors() {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    AnsiWriter writer = new AnsiWriter(new PrintStream(outputStream), AnsiWriter.DEFAULT_BUFFER_SIZE, true);
+    String nl = System.lineSeparator();
+
+    writer.writeLine(ConsoleColor.RED, "one", true);
+    writer.writeLine(ConsoleColor.RED, "two", true);
+    writer.writeLine(ConsoleColor.BLUE, "three", true);
+    writer.flush();
+
+    String expected = ConsoleColor.RED + "one" + nl + "two" + nl
+        + ConsoleColor.BLUE + "three" + nl + ConsoleColor.RESET;
+    assertEquals(expected, outputStream.toString());
+    assertEquals(1, writer.getWriteCount());
+  }
+
+  @Test
+  void testFewerBytesAndWritesThanUnbuffered() {
+    AnsiWriter plain = new AnsiWriter(new PrintStream(new ByteArrayOutputStream()), 4096, false);
+    AnsiWriter compact = new AnsiWriter(new PrintStream(new ByteArrayOutputStream()), 4096, true);
+
+    for (int i = 0; i < 10000; i++) {
+      ConsoleColor color = COLORS[(i / 10) % COLORS.length];
+      plain.writeLine(color, "   entry" + i + ".txt", true);
+      compact.writeLine(color, "   entry" + i + ".txt", true);
+    }
+    plain.flush();
+    compact.flush();
+
+    assertTrue(compact.getBytesWritten() < plain.getBytesWritten());
+    assertTrue(plain.getWriteCount() < 10000 / 10);
+  }
+
+  @Test
+  void testPrefixedLinesMatchPlainLines() {
+    LinePrefixes prefixes = new LinePrefixes(List.of(COLORS), true, "   ");
+    for (boolean elide : new boolean[] {false, true}) {
+      ByteArrayOutputStream expected = new ByteArrayOutputStream();
+      AnsiWriter plain = new AnsiWriter(new PrintStream(expected), 64, elide);
+      ByteArrayOutputStream actual = new ByteArrayOutputStream();
+      AnsiWriter prefixed = new AnsiWriter(new PrintStream(actual), 64, elide);
+
+      for (int depth : new int[] {0, 1, 1, 5, 40, 40, 2, 0}) {
+        ConsoleColor color = COLORS[depth % COLORS.length];
+        plain.writeLine(color, "   ".repeat(depth) + "entry" + depth + "/", true);
+        prefixed.writeLine(prefixes.get(depth), "entry" + depth, "/");
+      }
+      plain.flush();
+      prefixed.flush();
+
+      assertEquals(expected.toString(), actual.toString());
+    }
+  }
+
+  @Test
+  void testNoColorWritesNoEscapeCodes() {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    AnsiWriter writer = new AnsiWriter(new PrintStream(outputStream), 64, true, ColorSupport.NONE);
+    LinePrefixes prefixes = new LinePrefixes(List.of(COLORS), true, "   ", ColorSupport.NONE);
+    String nl = System.lineSeparator();
+
+    writer.writeLine(prefixes.get(0), "root", "/");
+    writer.writeLine(prefixes.get(1), "child", "");
+    writer.write(ConsoleColor.RED, "red", true);
+    writer.flush();
+
+    assertEquals("root/" + nl + "   child" + nl + "red", outputStream.toString());
+  }
+
+  @Test
+  void testExtendedColorCodes() {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    AnsiWriter writer = new AnsiWriter(new PrintStream(outputStream), 64, false, ColorSupport.PALETTE_256);
+    writer.write(ConsoleColor.PURPLE, "a", true);
+    writer.flush();
+    assertEquals("\033[38;5;141ma\033[0m", outputStream.toString());
+
+    assertEquals("\033[38;2;175;135;255m", ColorSupport.TRUECOLOR.codeFor(ConsoleColor.PURPLE));
+  }
+}
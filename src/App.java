@@ -1,3 +1,8 @@
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+
 public class App {
   
   /**
@@ -13,14 +18,60 @@ public class App {
    * 
    * Usage Example:
    * 
-   * Arguments Format: [-h] [-nc] path
+   * Arguments Format: [-h] [-nc] [-color mode] [-compact] [-p threads] [-spill entries] [-cache file]
+   *                   [-L depth] [-x pattern]... [-i pattern]... [-vt listings]
+   *                   [-format text|ndjson|json] [-du] [-stats] [-watch seconds]
+   *                   [-top count] [-by size|modified] [-follow] [-diff path]
+   *                   [-roots file] [-o file] [-archives] [-page] path...
    * 
    * Flags:
    * - -h   : Show hidden files (defaults to false).
    * - -nc  : Do not use color (color is enabled by default).
+   * - -color: never, basic, 256, truecolor or auto (the default). auto writes no escape
+   *          codes when output is not a terminal, NO_COLOR is set or TERM is dumb, and
+   *          otherwise uses 256 or 24-bit color if TERM or COLORTERM advertise it.
+   * - -compact: Only write color codes when the color changes between lines.
+   * - -p   : Number of threads used to list directories (defaults to 1).
+   * - -spill: Stream the tree with bounded memory, sorting directories with more
+   *           than this many entries using temporary files.
+   * - -cache: Cache directory listings in this file so later runs only list
+   *           directories that changed.
+   * - -L   : Only descend this many levels below the root.
+   * - -x   : Leave out files and directories matching this glob pattern, without
+   *          listing excluded directories. A pattern with a '/' matches paths below
+   *          the root, with ** for any number of directories. May be repeated.
+   * - -i   : Only print files matching this glob pattern and the directories leading
+   *          to them. May be repeated.
+   * - -vt  : List directories on virtual threads with at most this many listings
+   *          in flight, for high-latency file systems.
+   * - -format: Print as text (default), ndjson (one JSON object per entry) or json
+   *          (one nested document).
+   * - -du  : Annotate directories with the total size and number of files below
+   *          them, computed in the same walk.
+   * - -stats: Report listing, sorting and output counters and timings to standard error.
+   * - -watch: Keep checking the tree every this many seconds, printing added and
+   *          removed entries until interrupted.
+   * - -top : Print only this many of the largest files instead of the tree.
+   * - -by  : Rank -top files by size (the default) or modified (newest first).
+   * - -follow: Descend into symbolically linked directories, walking each directory
+   *          only once. Linked directories are not descended into by default.
+   * - -diff: Print only what was added, removed or changed in size since the tree at
+   *          this path. The exit status is 1 if there are differences.
+   * - -roots: Also print the directories listed in this file, one per line, relative
+   *          to the file's directory.
+   * - -o   : Write the output to this file, GZIP compressed if the name ends in .gz.
+   *          Writing and compression run on a background thread during the walk.
+   * - -archives: Print the contents of .zip and .jar files as subtrees, reading only
+   *          each archive's directory.
+   * - -page: On a terminal, show a screenful at a time (Enter for more, q to quit).
+   *          Directories are listed ahead in the background, so the first page
+   *          appears as soon as its lines are known.
    * 
    * Path:
    * - The absolute or relative path to the directory whose contents will be printed.
+   * - Several paths print several trees, one after another in the order given. The
+   *   trees are walked concurrently in this one process, so scripts covering many
+   *   roots do not need to start a JVM for each.
    * 
    * Behavior:
    * - If color is disabled, all text will be printed in white.
@@ -39,11 +90,161 @@ public class App {
    *    → Use color, don't show hidden files.
    * 
    * Error messages will be shown for illegal arguments or a not found file
+   * 
+   * Server Mode:
+   * 
+   * Scripts that print many trees can avoid starting a JVM for each one:
+   * 
+   * - ['-serve', '7878']
+   *    → Run a TruffulaServer on loopback port 7878 until the process is stopped.
+   *      Any local user can connect to a loopback port, so the server writes a random
+   *      token to ~/.truffula/server-7878.token, readable only by its own user, and
+   *      refuses requests without it. Requests read files as the server's user.
+   * 
+   * - ['-connect', '7878', '-nc', '/path/to/directory']
+   *    → Print the tree through the server on port 7878, sending the token from the
+   *      server's token file. The remaining arguments are the same as for a local
+   *      run, and the exit status is the server's. Color is detected for this
+   *      process's terminal, not the server's.
    */
   public static void main(String[] args) throws Exception {
-    // TODO: Implement this
-    // You should create a TruffulaOptions object using the args and
-    // pass it to a new TruffulaPrinter that uses System.out
-    // Then, call printTree on the TruffulaPrinter
+    if (args.length >= 2 && (args[0].equals("-serve") || args[0].equals("-connect"))) {
+      int port;
+      try {
+        port = Integer.parseInt(args[1]);
+      } catch (NumberFormatException e) {
+        System.err.println("Error: Invalid port: " + args[1]);
+        System.exit(1);
+        return;
+      }
+      if (args[0].equals("-serve")) {
+        try (TruffulaServer server = new TruffulaServer(port)) {
+          server.serve();
+        }
+      } else {
+        // The server cannot see this terminal, so auto is resolved here
+        String detected = ColorSupport.detect().getName();
+        String[] forwarded = new String[args.length > 2 ? args.length : 0];
+        if (forwarded.length > 0) {
+          forwarded[0] = "-color";
+          forwarded[1] = detected;
+        }
+        for (int i = 2; i < forwarded.length; i++) {
+          boolean isAuto = args[i - 1].equals("-color") && args[i].equalsIgnoreCase("auto");
+          forwarded[i] = isAuto ? detected : args[i];
+        }
+        boolean paged = System.console() != null && Arrays.asList(forwarded).contains("-page");
+        int status;
+        try {
+          status = TruffulaClient.run(port, forwarded, paged ? pager() : System.out, System.err);
+        } catch (Pager.QuitException e) {
+          status = 0;
+        } catch (IOException e) {
+          System.err.println("Error: " + e.getMessage());
+          status = 1;
+        }
+        if (status != 0) {
+          System.exit(status);
+        }
+      }
+      return;
+    }
+
+    TruffulaOptions options;
+    try {
+      // The terminal is only inspected if -color and -o leave the color level open
+      options = new TruffulaOptions(args, null);
+    } catch (IllegalArgumentException | FileNotFoundException e) {
+      System.err.println("Error: " + e.getMessage());
+      System.err.println("Usage: truffula " + TruffulaOptions.USAGE);
+      System.exit(1);
+      return;
+    }
+
+    PrintStream out = System.out;
+    if (options.isPaged() && System.console() != null) {
+      out = pager();
+    } else if (options.getOutputFile() != null) {
+      try {
+        out = new PrintStream(BackgroundOutputStream.openFile(options.getOutputFile()));
+      } catch (IOException e) {
+        System.err.println("Error: Cannot write " + options.getOutputFile() + ": " + e.getMessage());
+        System.exit(1);
+        return;
+      }
+    }
+
+    int status;
+    try {
+      status = print(options, out);
+    } catch (Pager.QuitException e) {
+      status = 0;
+    }
+    if (options.getOutputFile() != null) {
+      // Waits for the background writer to finish the file
+      out.close();
+      if (out.checkError()) {
+        System.err.println("Error: Could not write " + options.getOutputFile());
+        status = 1;
+      }
+    }
+    if (status != 0) {
+      System.exit(status);
+    }
+  }
+
+  /**
+   * Returns a stream that pages standard output, a screenful at a time.
+   *
+   * @return the paging stream
+   */
+  private static PrintStream pager() {
+    return new PrintStream(new Pager(System.out, System.in, Pager.pageLines(System::getenv)));
+  }
+
+  /**
+   * Prints what the options ask for: a diff, several trees, or one tree (or its top
+   * entries), which is then watched if the options ask for it.
+   *
+   * @param options the parsed options
+   * @param out     the stream to print to
+   * @return the exit status
+   * @throws InterruptedException if interrupted while watching
+   */
+  private static int print(TruffulaOptions options, PrintStream out) throws InterruptedException {
+    if (options.getDiffRoot() != null) {
+      int differences = new TreeDiff(options, options.getDiffRoot(), out).print();
+      return differences > 0 ? 1 : 0;
+    }
+
+    if (options.getRoots().size() > 1) {
+      int failures = new MultiRootPrinter(options, out, System.err).print();
+      return failures > 0 ? 1 : 0;
+    }
+
+    TruffulaPrinter printer = new TruffulaPrinter(options, out);
+    TreeWatcher watcher = null;
+    if (options.isWatch()) {
+      // The watcher starts from the listings the tree is printed from, so the tree is
+      // walked once; streaming keeps no listings, so then it is recorded before printing
+      watcher = new TreeWatcher(options, out, options.isStreaming() ? null : printer);
+    }
+    if (options.getTopCount() > 0) {
+      printer.printTopEntries();
+    } else {
+      printer.printTree();
+    }
+    if (printer.getStats() != null) {
+      printer.getStats().report(System.err);
+    }
+
+    if (watcher != null) {
+      long intervalMillis = options.getWatchIntervalSeconds() * 1000L;
+      while (true) {
+        Thread.sleep(intervalMillis);
+        watcher.poll();
+      }
+    }
+    return 0;
   }
 }
@@ -0,0 +1,261 @@
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * A File standing for a .zip or .jar archive, or for an entry inside one, so the
+ * archive's contents can be walked and printed like a directory.
+ *
+ * The archive itself answers true to isDirectory(), and the entries below it answer
+ * isDirectory(), length() and lastModified() from the archive's central directory.
+ * The central directory is read once, when the archive is wrapped; entry data is
+ * never decompressed. Directories that only appear as part of an entry's name
+ * ("META-INF/MANIFEST.MF" with no "META-INF/" entry) are listed all the same.
+ *
+ * A file whose central directory cannot be read (it only has an archive's name, or it
+ * is damaged) is not wrapped, so it is printed as the plain file it is.
+ *
+ * Example Usage:
+ *
+ * File jar = ArchiveEntry.wrap(new ListedFile(directory, "app.jar"));
+ * for (File child : ((ArchiveEntry) jar).listEntries()) {
+ *   ...
+ * }
+ */
+class ArchiveEntry extends File {
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The entries of one archive, keyed by the path of the directory inside it that
+   * contains them, without a trailing '/'; the archive's top level is "".
+   */
+  private static class Listing {
+    private final Map<String, ArchiveEntry[]> children = new HashMap<>();
+  }
+
+  private static final ArchiveEntry[] NO_ENTRIES = new ArchiveEntry[0];
+
+  /**
+   * The archive this entry belongs to; for the archive itself, this.
+   */
+  private final ArchiveEntry archive;
+
+  /**
+   * The entry's path inside the archive, without a trailing '/'; "" for the archive.
+   */
+  private final String entryPath;
+  private final boolean directory;
+  private final long size;
+  private final long time;
+
+  /**
+   * The archive's entries, read when it is wrapped; only set on the archive.
+   */
+  private transient Listing listing;
+
+  private ArchiveEntry(File file) {
+    super(file.getPath());
+    this.archive = this;
+    this.entryPath = "";
+    this.directory = true;
+    this.size = 0;
+    this.time = 0;
+  }
+
+  private ArchiveEntry(ArchiveEntry parent, String name, boolean directory, long size, long time) {
+    super(parent, name);
+    this.archive = parent.archive;
+    this.entryPath = parent.entryPath.isEmpty() ? name : parent.entryPath + "/" + name;
+    this.directory = directory;
+    this.size = size;
+    this.time = time;
+  }
+
+  /**
+   * Indicates whether a file name is that of an archive this class can list.
+   *
+   * @param name the file name
+   * @return true if the name ends with ".zip" or ".jar", ignoring case; false otherwise
+   */
+  static boolean isArchiveName(String name) {
+    int length = name.length();
+    return length > 4 && (name.regionMatches(true, length - 4, ".zip", 0, 4)
+        || name.regionMatches(true, length - 4, ".jar", 0, 4));
+  }
+
+  /**
+   * Returns the archive a listed file stands for, reading its central directory, or
+   * the file itself if it is not an archive or its central directory cannot be read.
+   *
+   * @param file a listed file
+   * @return an ArchiveEntry for the archive, or file
+   */
+  static File wrap(File file) {
+    if (file instanceof ArchiveEntry || !isArchiveName(file.getName()) || !file.isFile()) {
+      return file;
+    }
+    ArchiveEntry archive = new ArchiveEntry(file);
+    try {
+      archive.listing = archive.readListing();
+    } catch (IOException e) {
+      return file;
+    }
+    return archive;
+  }
+
+  /**
+   * Returns the entries directly inside this directory of the archive, sorted like a
+   * directory listing.
+   *
+   * @return the entries, or an empty array if this is a file
+   */
+  ArchiveEntry[] listEntries() {
+    return entries().clone();
+  }
+
+  /**
+   * Returns the entries directly inside this directory of the archive, as stored in
+   * the listing; callers must not change the array.
+   */
+  private ArchiveEntry[] entries() {
+    if (!directory) {
+      return NO_ENTRIES;
+    }
+    ArchiveEntry[] entries = archive.listing.children.get(entryPath);
+    return entries == null ? NO_ENTRIES : entries;
+  }
+
+  /**
+   * Reads the archive's central directory into a Listing. Names are split on '/', and
+   * empty, "." and ".." parts are skipped, so every entry lands inside the archive; a
+   * name listed twice is only kept once.
+   *
+   * @throws IOException if the central directory cannot be read
+   */
+  private Listing readListing() throws IOException {
+    Listing read = new Listing();
+    Map<String, List<ArchiveEntry>> children = new HashMap<>();
+    Map<String, ArchiveEntry> known = new HashMap<>();
+    try (ZipFile zip = new ZipFile(this)) {
+      Enumeration<? extends ZipEntry> entries = zip.entries();
+      while (entries.hasMoreElements()) {
+        ZipEntry entry = entries.nextElement();
+        String[] names = entry.getName().split("/");
+        int last = names.length - 1;
+        ArchiveEntry parent = this;
+        for (int i = 0; i <= last && parent.directory; i++) {
+          String name = names[i];
+          if (name.isEmpty() || name.equals(".") || name.equals("..")) {
+            continue;
+          }
+          String path = parent.entryPath.isEmpty() ? name : parent.entryPath + "/" + name;
+          ArchiveEntry child = known.get(path);
+          if (child == null) {
+            boolean isDirectory = i < last || entry.isDirectory();
+            child = new ArchiveEntry(parent, name, isDirectory,
+                isDirectory ? 0 : Math.max(entry.getSize(), 0), entry.getTime());
+            known.put(path, child);
+            children.computeIfAbsent(parent.entryPath, key -> new ArrayList<>()).add(child);
+          }
+          parent = child;
+        }
+      }
+    }
+    for (Map.Entry<String, List<ArchiveEntry>> directoryEntries : children.entrySet()) {
+      ArchiveEntry[] sorted = directoryEntries.getValue().toArray(NO_ENTRIES);
+      AlphabeticalFileSorter.sort(sorted);
+      read.children.put(directoryEntries.getKey(), sorted);
+    }
+    return read;
+  }
+
+  @Override
+  public boolean isDirectory() {
+    return directory;
+  }
+
+  @Override
+  public boolean isFile() {
+    return !directory;
+  }
+
+  @Override
+  public boolean exists() {
+    return true;
+  }
+
+  /**
+   * Entries are hidden if their names start with a dot, as on Unix.
+   */
+  @Override
+  public boolean isHidden() {
+    return archive == this ? super.isHidden() : getName().startsWith(".");
+  }
+
+  /**
+   * Returns the uncompressed size recorded for the entry; for the archive itself, its
+   * size on disk.
+   */
+  @Override
+  public long length() {
+    return archive == this ? super.length() : size;
+  }
+
+  @Override
+  public long lastModified() {
+    return archive == this ? super.lastModified() : time;
+  }
+
+  @Override
+  public String[] list() {
+    ArchiveEntry[] entries = entries();
+    String[] names = new String[entries.length];
+    for (int i = 0; i < entries.length; i++) {
+      names[i] = entries[i].getName();
+    }
+    return names;
+  }
+
+  @Override
+  public String[] list(FilenameFilter filter) {
+    List<String> names = new ArrayList<>();
+    for (String name : list()) {
+      if (filter == null || filter.accept(this, name)) {
+        names.add(name);
+      }
+    }
+    return names.toArray(new String[0]);
+  }
+
+  /**
+   * Returns the entry with the given name directly inside this directory of the
+   * archive, found by binary search of the sorted entries.
+   *
+   * @param name the entry's name
+   * @return the entry, or null if there is none
+   */
+  ArchiveEntry getEntry(String name) {
+    ArchiveEntry[] entries = entries();
+    int low = 0;
+    int high = entries.length - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int order = AlphabeticalFileSorter.compareNames(entries[middle].getName(), name);
+      if (order < 0) {
+        low = middle + 1;
+      } else if (order > 0) {
+        high = middle - 1;
+      } else {
+        return entries[middle];
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,229 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * An OutputStream that hands its bytes to a background thread, which writes them to
+ * the real stream. When the real stream compresses, compression then runs alongside
+ * the walk instead of on the thread printing the tree.
+ *
+ * Bytes are collected into chunks; each full chunk is queued for the writer thread.
+ * The queue holds a few chunks, so the printing thread only waits when the writer
+ * has fallen that far behind. flush() waits until everything written so far has
+ * reached the real stream and flushed it; close() does the same and then closes it.
+ *
+ * If the writer thread fails, the IOException is thrown from the next write, flush
+ * or close on the printing thread.
+ *
+ * Example Usage:
+ *
+ * try (OutputStream out = BackgroundOutputStream.openFile(new File("tree.txt.gz"))) {
+ *   out.write(bytes);
+ * }
+ */
+public class BackgroundOutputStream extends OutputStream {
+
+  /**
+   * The size of each chunk handed to the writer thread.
+   */
+  private static final int CHUNK_SIZE = 64 * 1024;
+
+  /**
+   * The number of chunks that can wait for the writer thread.
+   */
+  private static final int QUEUE_CAPACITY = 8;
+
+  /**
+   * Queued after the last chunk to stop the writer thread.
+   */
+  private static final Object END = new Object();
+
+  private final OutputStream target;
+  private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+  private final Thread writer;
+  private volatile IOException failure;
+  private byte[] chunk = new byte[CHUNK_SIZE];
+  private int count;
+  private boolean closed;
+
+  /**
+   * Constructs a BackgroundOutputStream and starts its writer thread.
+   *
+   * @param target the stream the writer thread writes to; only that thread uses it
+   *               from now on
+   */
+  public BackgroundOutputStream(OutputStream target) {
+    this.target = target;
+    this.writer = new Thread(this::drain, "truffula-writer");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  /**
+   * Opens a file for writing in the background, compressing it with GZIP if its
+   * name ends with ".gz".
+   *
+   * @param file the file to write
+   * @return the stream
+   * @throws IOException if the file cannot be created
+   */
+  public static BackgroundOutputStream openFile(File file) throws IOException {
+    OutputStream out = new FileOutputStream(file);
+    if (file.getName().endsWith(".gz")) {
+      try {
+        // Sync flushing, so flush() makes everything so far readable from the file
+        out = new GZIPOutputStream(out, CHUNK_SIZE, true);
+      } catch (IOException e) {
+        out.close();
+        throw e;
+      }
+    }
+    return new BackgroundOutputStream(out);
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    ensureOpen();
+    if (count == chunk.length) {
+      queueChunk();
+    }
+    chunk[count++] = (byte) b;
+  }
+
+  @Override
+  public void write(byte[] bytes, int offset, int length) throws IOException {
+    ensureOpen();
+    while (length > 0) {
+      if (count == chunk.length) {
+        queueChunk();
+      }
+      int copied = Math.min(length, chunk.length - count);
+      System.arraycopy(bytes, offset, chunk, count, copied);
+      count += copied;
+      offset += copied;
+      length -= copied;
+    }
+  }
+
+  /**
+   * Waits until everything written so far has been written to the real stream, then
+   * has the real stream flushed.
+   *
+   * @throws IOException if the writer thread failed
+   */
+  @Override
+  public void flush() throws IOException {
+    ensureOpen();
+    if (count > 0) {
+      queueChunk();
+    }
+    CountDownLatch flushed = new CountDownLatch(1);
+    put(flushed);
+    try {
+      flushed.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while flushing");
+    }
+    checkFailure();
+  }
+
+  /**
+   * Writes everything that is left, then closes the real stream and stops the writer
+   * thread.
+   *
+   * @throws IOException if the writer thread failed
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    if (count > 0) {
+      queueChunk();
+    }
+    closed = true;
+    put(END);
+    try {
+      writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while closing");
+    }
+    checkFailure();
+  }
+
+  private void ensureOpen() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+    checkFailure();
+  }
+
+  private void checkFailure() throws IOException {
+    IOException e = failure;
+    if (e != null) {
+      throw e;
+    }
+  }
+
+  private void queueChunk() throws IOException {
+    byte[] full = count == chunk.length ? chunk : Arrays.copyOf(chunk, count);
+    put(full);
+    chunk = new byte[CHUNK_SIZE];
+    count = 0;
+  }
+
+  private void put(Object item) throws IOException {
+    try {
+      queue.put(item);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while writing");
+    }
+  }
+
+  /**
+   * Runs on the writer thread. After a failure, the rest of the queue is still taken
+   * (and dropped) so the printing thread never waits forever.
+   */
+  private void drain() {
+    try {
+      while (true) {
+        Object item = queue.take();
+        if (item == END) {
+          break;
+        }
+        try {
+          if (failure == null) {
+            if (item instanceof byte[] bytes) {
+              target.write(bytes);
+            } else {
+              target.flush();
+            }
+          }
+        } catch (IOException e) {
+          failure = e;
+        } finally {
+          if (item instanceof CountDownLatch latch) {
+            latch.countDown();
+          }
+        }
+      }
+      target.close();
+    } catch (IOException e) {
+      if (failure == null) {
+        failure = e;
+      }
+    } catch (InterruptedException e) {
+      failure = new InterruptedIOException("Writer thread interrupted");
+    }
+  }
+}
@@ -0,0 +1,63 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class BackgroundOutputStreamTest {
+
+  @Test
+  void testWritesEverythingInOrder() throws IOException {
+    ByteArrayOutputStream target = new ByteArrayOutputStream();
+    StringBuilder expected = new StringBuilder();
+    try (PrintStream out = new PrintStream(new BackgroundOutputStream(target))) {
+      for (int i = 0; i < 50_000; i++) {
+        out.println("line " + i);
+        expected.append("line ").append(i).append(System.lineSeparator());
+      }
+      out.flush();
+      assertEquals(expected.length(), target.size());
+    }
+    assertEquals(expected.toString(), target.toString());
+  }
+
+  @Test
+  void testGzipFile(@TempDir File tempDir) throws IOException {
+    File file = new File(tempDir, "tree.txt.gz");
+    byte[] expected = "myFolder/\n   Documents/\n      notes.txt\n".repeat(10_000).getBytes();
+    try (OutputStream out = BackgroundOutputStream.openFile(file)) {
+      out.write(expected);
+    }
+
+    try (InputStream in = new GZIPInputStream(Files.newInputStream(file.toPath()))) {
+      assertArrayEquals(expected, in.readAllBytes());
+    }
+    assertTrue(file.length() < expected.length / 10);
+  }
+
+  @Test
+  void testWriterFailureIsReported() throws IOException {
+    OutputStream failing = new OutputStream() {
+      @Override
+      public void write(int b) throws IOException {
+        throw new IOException("disk full");
+      }
+    };
+    BackgroundOutputStream out = new BackgroundOutputStream(failing);
+    out.write(new byte[100]);
+    IOException e = assertThrows(IOException.class, out::flush);
+    assertEquals("disk full", e.getMessage());
+    assertThrows(IOException.class, out::close);
+  }
+}
@@ -0,0 +1,189 @@
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * Sorts file names case-insensitively by computing a collation key for each name once,
+ * instead of folding case on every comparison.
+ * 
+ * The case-folded names are packed into a single char array, and an array of indexes
+ * into it is merge sorted. Comparisons only read from these arrays, so sorting does not
+ * allocate anything per comparison and never calls getName() more than once per file.
+ * 
+ * The order is the same as AlphabeticalFileSorter.compareNames: names are compared
+ * ignoring case, and names that only differ in case are compared exactly, so
+ * "Cat.png" comes before "cat.png". The sort is stable.
+ */
+public class CollationKeySorter {
+
+  /**
+   * Ranges this small are sorted with insertion sort rather than merged.
+   */
+  private static final int INSERTION_SORT_THRESHOLD = 16;
+
+  private final String[] names;
+  private final char[] keys;
+  private final int[] keyStart;
+
+  private CollationKeySorter(String[] names, char[] keys, int[] keyStart) {
+    this.names = names;
+    this.keys = keys;
+    this.keyStart = keyStart;
+  }
+
+  /**
+   * Sorts an array of files in place by name.
+   *
+   * @param files the files to sort
+   * @return the same array, sorted
+   */
+  public static File[] sort(File[] files) {
+    int count = files.length;
+    if (count < 2) {
+      return files;
+    }
+    String[] names = new String[count];
+    for (int i = 0; i < count; i++) {
+      names[i] = files[i].getName();
+    }
+    int[] order = sortedOrder(names);
+    File[] sorted = new File[count];
+    for (int i = 0; i < count; i++) {
+      sorted[i] = files[order[i]];
+    }
+    System.arraycopy(sorted, 0, files, 0, count);
+    return files;
+  }
+
+  /**
+   * Sorts an array of names in place.
+   *
+   * @param names the names to sort
+   * @return the same array, sorted
+   */
+  public static String[] sort(String[] names) {
+    int count = names.length;
+    if (count < 2) {
+      return names;
+    }
+    int[] order = sortedOrder(names);
+    String[] sorted = new String[count];
+    for (int i = 0; i < count; i++) {
+      sorted[i] = names[order[i]];
+    }
+    System.arraycopy(sorted, 0, names, 0, count);
+    return names;
+  }
+
+  /**
+   * Returns the indexes of the names in sorted order.
+   *
+   * @param names the names to sort
+   * @return a permutation of 0..names.length-1
+   */
+  private static int[] sortedOrder(String[] names) {
+    int count = names.length;
+    int[] keyStart = new int[count + 1];
+    for (int i = 0; i < count; i++) {
+      keyStart[i + 1] = keyStart[i] + names[i].length();
+    }
+
+    char[] keys = new char[keyStart[count]];
+    int position = 0;
+    for (String name : names) {
+      for (int i = 0; i < name.length(); i++) {
+        char c = name.charAt(i);
+        if (c < 0x80) {
+          keys[position++] = (c >= 'A' && c <= 'Z') ? (char) (c + ('a' - 'A')) : c;
+        } else if (Character.isSurrogate(c)) {
+          // compareToIgnoreCase folds whole code points here; let it do the work
+          return comparatorOrder(names);
+        } else {
+          keys[position++] = Character.toLowerCase(Character.toUpperCase(c));
+        }
+      }
+    }
+
+    int[] order = new int[count];
+    for (int i = 0; i < count; i++) {
+      order[i] = i;
+    }
+    new CollationKeySorter(names, keys, keyStart).mergeSort(order, new int[count], 0, count);
+    return order;
+  }
+
+  /**
+   * Returns the sorted order using AlphabeticalFileSorter.compareNames directly.
+   */
+  private static int[] comparatorOrder(String[] names) {
+    Integer[] boxed = new Integer[names.length];
+    for (int i = 0; i < boxed.length; i++) {
+      boxed[i] = i;
+    }
+    Arrays.sort(boxed, (a, b) -> AlphabeticalFileSorter.compareNames(names[a], names[b]));
+    int[] order = new int[boxed.length];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = boxed[i];
+    }
+    return order;
+  }
+
+  /**
+   * Stable merge sort of order[from, to), using scratch as temporary space.
+   */
+  private void mergeSort(int[] order, int[] scratch, int from, int to) {
+    if (to - from <= INSERTION_SORT_THRESHOLD) {
+      insertionSort(order, from, to);
+      return;
+    }
+    int middle = (from + to) >>> 1;
+    mergeSort(order, scratch, from, middle);
+    mergeSort(order, scratch, middle, to);
+    if (compare(order[middle - 1], order[middle]) <= 0) {
+      return;
+    }
+    System.arraycopy(order, from, scratch, from, to - from);
+    int left = from;
+    int right = middle;
+    for (int i = from; i < to; i++) {
+      if (right >= to || (left < middle && compare(scratch[left], scratch[right]) <= 0)) {
+        order[i] = scratch[left++];
+      } else {
+        order[i] = scratch[right++];
+      }
+    }
+  }
+
+  private void insertionSort(int[] order, int from, int to) {
+    for (int i = from + 1; i < to; i++) {
+      int current = order[i];
+      int j = i - 1;
+      while (j >= from && compare(order[j], current) > 0) {
+        order[j + 1] = order[j];
+        j--;
+      }
+      order[j + 1] = current;
+    }
+  }
+
+  /**
+   * Compares the names at two indexes by collation key, then exactly.
+   */
+  private int compare(int a, int b) {
+    int aStart = keyStart[a];
+    int aLength = keyStart[a + 1] - aStart;
+    int bStart = keyStart[b];
+    int bLength = keyStart[b + 1] - bStart;
+    int length = Math.min(aLength, bLength);
+    for (int i = 0; i < length; i++) {
+      char ca = keys[aStart + i];
+      char cb = keys[bStart + i];
+      if (ca != cb) {
+        return ca - cb;
+      }
+    }
+    if (aLength != bLength) {
+      return aLength - bLength;
+    }
+    return names[a].compareTo(names[b]);
+  }
+}
@@ -0,0 +1,49 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class CollationKeySorterTest {
+
+  @Test
+  void testExactCaseTieBreak() {
+    File dir = new File("images");
+    File[] files = {new File(dir, "cat.png"), new File(dir, "Dog.png"), new File(dir, "Cat.png")};
+
+    AlphabeticalFileSorter.sort(files);
+
+    File[] expected = {new File(dir, "Cat.png"), new File(dir, "cat.png"), new File(dir, "Dog.png")};
+    assertArrayEquals(expected, files);
+  }
+
+  @Test
+  void testMatchesCompareNames() {
+    Random random = new Random(7);
+    String alphabet = "aAbBzZ_.-09éÉßİıΣσς";
+    String[] names = new String[5000];
+    for (int i = 0; i < names.length; i++) {
+      StringBuilder name = new StringBuilder();
+      int length = 1 + random.nextInt(6);
+      for (int j = 0; j < length; j++) {
+        name.append(alphabet.charAt(random.nextInt(alphabet.length())));
+      }
+      names[i] = name.toString();
+    }
+    String[] expected = names.clone();
+    Arrays.sort(expected, AlphabeticalFileSorter::compareNames);
+
+    assertArrayEquals(expected, CollationKeySorter.sort(names));
+  }
+
+  @Test
+  void testSupplementaryCharactersFallBack() {
+    String[] names = {"b𐐀", "B𐐨", "a"};
+    String[] expected = names.clone();
+    Arrays.sort(expected, AlphabeticalFileSorter::compareNames);
+
+    assertArrayEquals(expected, CollationKeySorter.sort(names));
+  }
+}
@@ -16,6 +16,12 @@ import java.io.PrintStream;
  * printer.println("This is red text");
  * 
  * The printed text will appear in the terminal with the specified colors if the terminal supports ANSI codes.
+ * 
+ * A ColorPrinter can be made for a ColorSupport level other than BASIC. With
+ * ColorSupport.NONE, messages are printed as they are, without any escape codes.
+ * 
+ * A ColorPrinter can also be buffered, in which case output goes through an AnsiWriter
+ * and only reaches the PrintStream when the buffer fills up or flush() is called.
  */
 public class ColorPrinter {
   /**
@@ -28,6 +34,16 @@ public class ColorPrinter {
    */
   private final PrintStream printStream;
 
+  /**
+   * The buffered writer used for output, or null if output goes straight to the PrintStream.
+   */
+  private final AnsiWriter writer;
+
+  /**
+   * Which escape codes are printed when output goes straight to the PrintStream.
+   */
+  private final ColorSupport colorSupport;
+
   /**
    * Returns the current color set for the printer.
    * 
@@ -65,7 +81,11 @@ public class ColorPrinter {
    * @param reset   if true, resets the color after printing; if false, keeps the current color
    */
   public void println(String message, boolean reset) {
-    print(message + System.lineSeparator(), reset);
+    if (writer != null) {
+      writer.writeLine(currentColor, message, reset);
+    } else {
+      print(message + System.lineSeparator(), reset);
+    }
   }
 
   /**
@@ -86,7 +106,29 @@ public class ColorPrinter {
    * @param reset   if true, resets the color after printing; if false, keeps the current color
    */
   public void print(String message, boolean reset) {
-    // TODO: Implement this!
+    if (writer != null) {
+      writer.write(currentColor, message, reset);
+      return;
+    }
+    if (colorSupport == ColorSupport.NONE) {
+      printStream.print(message);
+      return;
+    }
+    printStream.print(colorSupport.codeFor(currentColor) + message);
+    if (reset) {
+      printStream.print(colorSupport.codeFor(ConsoleColor.RESET));
+    }
+  }
+
+  /**
+   * Writes any buffered output to the PrintStream and flushes it.
+   */
+  public void flush() {
+    if (writer != null) {
+      writer.flush();
+    } else {
+      printStream.flush();
+    }
   }
 
   /**
@@ -106,7 +148,36 @@ public class ColorPrinter {
    * @param color       the initial ConsoleColor to use for printing
    */
   public ColorPrinter(PrintStream printStream, ConsoleColor color) {
+    this(printStream, color, ColorSupport.BASIC);
+  }
+
+  /**
+   * Constructs a ColorPrinter that prints the escape codes of the given color level.
+   * 
+   * @param printStream  the PrintStream to which output will be written
+   * @param color        the initial ConsoleColor to use for printing
+   * @param colorSupport which escape codes to print; NONE prints none
+   */
+  public ColorPrinter(PrintStream printStream, ConsoleColor color, ColorSupport colorSupport) {
+    this.printStream = printStream;
+    this.currentColor = color;
+    this.writer = null;
+    this.colorSupport = colorSupport;
+  }
+
+  /**
+   * Constructs a buffered ColorPrinter that writes through the given AnsiWriter.
+   * Output is not guaranteed to reach the PrintStream until flush() is called.
+   * The escape codes are those of the writer's ColorSupport.
+   * 
+   * @param printStream the PrintStream the writer writes to
+   * @param color       the initial ConsoleColor to use for printing
+   * @param writer      the buffered writer to print through
+   */
+  public ColorPrinter(PrintStream printStream, ConsoleColor color, AnsiWriter writer) {
     this.printStream = printStream;
     this.currentColor = color;
+    this.writer = writer;
+    this.colorSupport = null;
   }
 }
@@ -26,4 +26,21 @@ class ColorPrinterTest {
     // Assert: Verify the printed output
     assertEquals(expectedOutput, outputStream.toString());
   }
+
+  @Test
+  void testBufferedPrinterWritesOnFlush() {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    PrintStream printStream = new PrintStream(outputStream);
+    AnsiWriter writer = new AnsiWriter(printStream, AnsiWriter.DEFAULT_BUFFER_SIZE, false);
+
+    ColorPrinter printer = new ColorPrinter(printStream, ConsoleColor.WHITE, writer);
+    printer.setCurrentColor(ConsoleColor.GREEN);
+    printer.println("I speak for the trees");
+
+    assertEquals("", outputStream.toString());
+    printer.flush();
+
+    String expectedOutput = ConsoleColor.GREEN + "I speak for the trees" + System.lineSeparator() + ConsoleColor.RESET;
+    assertEquals(expectedOutput, outputStream.toString());
+  }
 }
@@ -0,0 +1,125 @@
+import java.util.function.Function;
+
+/**
+ * Enum representing how much color the output can show, and so which escape codes
+ * are written for each ConsoleColor.
+ *
+ * Supported Levels:
+ * - NONE       : No escape codes at all, for files, pipes and NO_COLOR (name "never")
+ * - BASIC      : The eight basic ANSI colors (name "basic")
+ * - PALETTE_256: Shades from the xterm 256-color palette (name "256")
+ * - TRUECOLOR  : 24-bit RGB colors (name "truecolor")
+ *
+ * detect() works out the level for standard output from the environment.
+ */
+public enum ColorSupport {
+  /**
+   * No escape codes at all.
+   */
+  NONE("never"),
+
+  /**
+   * The eight basic ANSI colors.
+   */
+  BASIC("basic"),
+
+  /**
+   * Shades from the xterm 256-color palette.
+   */
+  PALETTE_256("256"),
+
+  /**
+   * 24-bit RGB colors.
+   */
+  TRUECOLOR("truecolor");
+
+  private final String name;
+
+  ColorSupport(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Returns the name used for this level on the command line.
+   *
+   * @return the name, e.g. "256"
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Returns the level with the given command-line name, ignoring case.
+   *
+   * @param name the name of the level, e.g. "truecolor"
+   * @return the matching level
+   * @throws IllegalArgumentException if no level has that name
+   */
+  public static ColorSupport fromName(String name) {
+    for (ColorSupport support : values()) {
+      if (support.name.equalsIgnoreCase(name)) {
+        return support;
+      }
+    }
+    throw new IllegalArgumentException("Unknown color mode: " + name);
+  }
+
+  /**
+   * Returns the escape code that switches to a color at this level.
+   *
+   * @param color the color, or RESET
+   * @return the escape code; empty for NONE
+   */
+  public String codeFor(ConsoleColor color) {
+    if (this == NONE) {
+      return "";
+    }
+    if (this == BASIC || color == ConsoleColor.RESET) {
+      return color.getCode();
+    }
+    if (this == PALETTE_256) {
+      return "\033[38;5;" + color.getPaletteIndex() + "m";
+    }
+    int rgb = color.getRgb();
+    return "\033[38;2;" + (rgb >> 16) + ";" + ((rgb >> 8) & 0xFF) + ";" + (rgb & 0xFF) + "m";
+  }
+
+  /**
+   * Works out the level for standard output: NONE if it is not a terminal, if
+   * NO_COLOR is set or if TERM is "dumb", otherwise the best level TERM and
+   * COLORTERM claim.
+   *
+   * @return the level for standard output
+   */
+  public static ColorSupport detect() {
+    // System.console() is null when standard input or output is redirected
+    return detect(System.console() != null, System::getenv);
+  }
+
+  /**
+   * Works out the level from whether output is a terminal and the environment.
+   *
+   * @param interactive whether output goes to a terminal
+   * @param environment looks up environment variables, returning null if unset
+   * @return the level
+   */
+  static ColorSupport detect(boolean interactive, Function<String, String> environment) {
+    String noColor = environment.apply("NO_COLOR");
+    if (!interactive || (noColor != null && !noColor.isEmpty())) {
+      return NONE;
+    }
+    String term = environment.apply("TERM");
+    if ("dumb".equals(term)) {
+      return NONE;
+    }
+    String colorTerm = environment.apply("COLORTERM");
+    if ("truecolor".equals(colorTerm) || "24bit".equals(colorTerm)
+        || (term != null && term.endsWith("-direct"))) {
+      return TRUECOLOR;
+    }
+    if (term != null && term.contains("256color")) {
+      return PALETTE_256;
+    }
+    return BASIC;
+  }
+}
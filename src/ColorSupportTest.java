@@ -0,0 +1,28 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+public class ColorSupportTest {
+
+  @Test
+  void testDetect() {
+    assertEquals(ColorSupport.NONE, ColorSupport.detect(false, Map.of("TERM", "xterm-256color")::get));
+    assertEquals(ColorSupport.NONE, ColorSupport.detect(true, Map.of("NO_COLOR", "1")::get));
+    assertEquals(ColorSupport.NONE, ColorSupport.detect(true, Map.of("TERM", "dumb")::get));
+    assertEquals(ColorSupport.BASIC, ColorSupport.detect(true, Map.of("TERM", "xterm", "NO_COLOR", "")::get));
+    assertEquals(ColorSupport.BASIC, ColorSupport.detect(true, Map.<String, String>of()::get));
+    assertEquals(ColorSupport.PALETTE_256, ColorSupport.detect(true, Map.of("TERM", "xterm-256color")::get));
+    assertEquals(ColorSupport.TRUECOLOR,
+        ColorSupport.detect(true, Map.of("TERM", "xterm-256color", "COLORTERM", "truecolor")::get));
+  }
+
+  @Test
+  void testFromName() {
+    assertEquals(ColorSupport.PALETTE_256, ColorSupport.fromName("256"));
+    assertEquals(ColorSupport.NONE, ColorSupport.fromName("Never"));
+    assertThrows(IllegalArgumentException.class, () -> ColorSupport.fromName("auto"));
+  }
+}
@@ -0,0 +1,379 @@
+import java.io.File;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A directory tree held in a handful of primitive arrays instead of a graph of File
+ * objects.
+ *
+ * Every entry is a node numbered in the order it would be printed, with the root as
+ * node 0. For each node the tree stores its parent, first child and next sibling as
+ * ints (-1 if there is none) and the offset of its name in a shared byte arena.
+ * Names are stored once as UTF-8 no matter how many entries share them, so repeated
+ * names like src, README.md or index.html cost only their four-byte reference.
+ * Whether each node is a directory is one bit in a BitSet.
+ *
+ * That comes to about 16 bytes per entry plus its share of the arena, where a File
+ * costs well over 100 bytes (the File, its path String and, once asked for, its name).
+ *
+ * Example Usage:
+ *
+ * CompactTree tree = CompactTree.build(root, Integer.MAX_VALUE, lister);
+ * for (int node = tree.getFirstChild(0); node != -1; node = tree.getNextSibling(node)) {
+ *   System.out.println(tree.getName(node));
+ * }
+ *
+ * The tree is built once and never changes afterwards.
+ */
+public class CompactTree {
+
+  /**
+   * Marks a missing parent, child or sibling.
+   */
+  public static final int NONE = -1;
+
+  private static final int INITIAL_CAPACITY = 256;
+
+  /**
+   * Names are stored with a two-byte length before them.
+   */
+  private static final int MAX_NAME_BYTES = 0xFFFF;
+
+  private final File root;
+  private int size;
+  private int[] parent = new int[INITIAL_CAPACITY];
+  private int[] firstChild = new int[INITIAL_CAPACITY];
+  private int[] nextSibling = new int[INITIAL_CAPACITY];
+  private int[] nameOffset = new int[INITIAL_CAPACITY];
+  private final BitSet directories = new BitSet();
+
+  private byte[] arena = new byte[4096];
+  private int arenaLength;
+
+  /**
+   * Open-addressed table of arena offsets of the names stored so far, used to store
+   * each distinct name once. Empty slots hold NONE.
+   */
+  private int[] internTable = newInternTable(1024);
+  private int internCount;
+
+  /**
+   * Reused buffer for encoding names before they are looked up.
+   */
+  private byte[] scratch = new byte[256];
+
+  private CompactTree(File root) {
+    this.root = root;
+  }
+
+  /**
+   * Builds the tree below a root directory.
+   *
+   * @param root     the root directory
+   * @param maxDepth directories at this depth are added but not listed
+   * @param lister   lists the children of a directory in the order they should be kept,
+   *                 leaving out anything that should not be in the tree
+   * @return the tree
+   */
+  public static CompactTree build(File root, int maxDepth, Function<File, File[]> lister) {
+    CompactTree tree = new CompactTree(root);
+    int rootNode = tree.add(NONE, NONE, root.getName(), true);
+    tree.addChildren(rootNode, root, 1, maxDepth, lister);
+    tree.trim();
+    return tree;
+  }
+
+  /**
+   * Lists a directory and adds its children in order, each followed by its own subtree.
+   * The walk keeps an explicit stack of the listings being added rather than
+   * recursing, so deep trees cannot overflow the thread's stack.
+   */
+  private void addChildren(int node, File directory, int depth, int maxDepth, Function<File, File[]> lister) {
+    if (depth > maxDepth) {
+      return;
+    }
+    // For each open directory: its listing, the next child to add, its node and the
+    // node of the last child added
+    List<File[]> listings = new ArrayList<>();
+    int[] positions = new int[16];
+    int[] parents = new int[16];
+    int[] previous = new int[16];
+    listings.add(lister.apply(directory));
+    parents[0] = node;
+    previous[0] = NONE;
+    while (!listings.isEmpty()) {
+      int top = listings.size() - 1;
+      File[] children = listings.get(top);
+      if (positions[top] == children.length) {
+        listings.remove(top);
+        continue;
+      }
+      File child = children[positions[top]++];
+      boolean isDirectory = child.isDirectory();
+      int added = add(parents[top], previous[top], child.getName(),
+          isDirectory || ListedFile.isUnfollowed(child));
+      previous[top] = added;
+      if (isDirectory && depth + top + 1 <= maxDepth) {
+        int next = listings.size();
+        if (next == positions.length) {
+          positions = Arrays.copyOf(positions, next * 2);
+          parents = Arrays.copyOf(parents, next * 2);
+          previous = Arrays.copyOf(previous, next * 2);
+        }
+        positions[next] = 0;
+        parents[next] = added;
+        previous[next] = NONE;
+        listings.add(lister.apply(child));
+      }
+    }
+  }
+
+  /**
+   * Appends a node and links it to its parent or previous sibling.
+   */
+  private int add(int parentNode, int previousSibling, String name, boolean isDirectory) {
+    if (size == parent.length) {
+      int capacity = size * 2;
+      parent = Arrays.copyOf(parent, capacity);
+      firstChild = Arrays.copyOf(firstChild, capacity);
+      nextSibling = Arrays.copyOf(nextSibling, capacity);
+      nameOffset = Arrays.copyOf(nameOffset, capacity);
+    }
+    int node = size++;
+    parent[node] = parentNode;
+    firstChild[node] = NONE;
+    nextSibling[node] = NONE;
+    nameOffset[node] = intern(name);
+    if (isDirectory) {
+      directories.set(node);
+    }
+    if (previousSibling != NONE) {
+      nextSibling[previousSibling] = node;
+    } else if (parentNode != NONE) {
+      firstChild[parentNode] = node;
+    }
+    return node;
+  }
+
+  /**
+   * Returns the arena offset of a name, storing it first if it is new.
+   */
+  private int intern(String name) {
+    int length = encode(name);
+    if (length > MAX_NAME_BYTES) {
+      throw new IllegalArgumentException("Name too long: " + name);
+    }
+    int mask = internTable.length - 1;
+    int slot = hash(scratch, 0, length) & mask;
+    while (internTable[slot] != NONE) {
+      int offset = internTable[slot];
+      if (Arrays.equals(arena, offset + 2, offset + 2 + nameLength(offset), scratch, 0, length)) {
+        return offset;
+      }
+      slot = (slot + 1) & mask;
+    }
+
+    if (arenaLength + 2 + length > arena.length) {
+      arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaLength + 2 + length));
+    }
+    int offset = arenaLength;
+    arena[offset] = (byte) (length >>> 8);
+    arena[offset + 1] = (byte) length;
+    System.arraycopy(scratch, 0, arena, offset + 2, length);
+    arenaLength += 2 + length;
+
+    internTable[slot] = offset;
+    if (++internCount * 2 > internTable.length) {
+      rehash();
+    }
+    return offset;
+  }
+
+  /**
+   * Encodes a name as UTF-8 into the scratch buffer.
+   *
+   * @return the number of bytes written
+   */
+  private int encode(String name) {
+    if (scratch.length < name.length() * 3) {
+      scratch = new byte[name.length() * 3];
+    }
+    int length = 0;
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+      if (c < 0x80) {
+        scratch[length++] = (byte) c;
+      } else if (c < 0x800) {
+        scratch[length++] = (byte) (0xC0 | (c >> 6));
+        scratch[length++] = (byte) (0x80 | (c & 0x3F));
+      } else if (Character.isHighSurrogate(c) && i + 1 < name.length()
+          && Character.isLowSurrogate(name.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, name.charAt(++i));
+        scratch[length++] = (byte) (0xF0 | (codePoint >> 18));
+        scratch[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+        scratch[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+        scratch[length++] = (byte) (0x80 | (codePoint & 0x3F));
+      } else {
+        // Unpaired surrogates are kept as three bytes so they decode unchanged
+        scratch[length++] = (byte) (0xE0 | (c >> 12));
+        scratch[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        scratch[length++] = (byte) (0x80 | (c & 0x3F));
+      }
+    }
+    return length;
+  }
+
+  private static int hash(byte[] bytes, int from, int to) {
+    int hash = 1;
+    for (int i = from; i < to; i++) {
+      hash = 31 * hash + bytes[i];
+    }
+    return hash ^ (hash >>> 16);
+  }
+
+  private int nameLength(int offset) {
+    return ((arena[offset] & 0xFF) << 8) | (arena[offset + 1] & 0xFF);
+  }
+
+  private void rehash() {
+    int[] table = newInternTable(internTable.length * 2);
+    int mask = table.length - 1;
+    for (int offset : internTable) {
+      if (offset != NONE) {
+        int slot = hash(arena, offset + 2, offset + 2 + nameLength(offset)) & mask;
+        while (table[slot] != NONE) {
+          slot = (slot + 1) & mask;
+        }
+        table[slot] = offset;
+      }
+    }
+    internTable = table;
+  }
+
+  private static int[] newInternTable(int capacity) {
+    int[] table = new int[capacity];
+    Arrays.fill(table, NONE);
+    return table;
+  }
+
+  /**
+   * Drops the spare capacity and the intern table once the tree is complete.
+   */
+  private void trim() {
+    parent = Arrays.copyOf(parent, size);
+    firstChild = Arrays.copyOf(firstChild, size);
+    nextSibling = Arrays.copyOf(nextSibling, size);
+    nameOffset = Arrays.copyOf(nameOffset, size);
+    arena = Arrays.copyOf(arena, arenaLength);
+    internTable = null;
+    scratch = null;
+  }
+
+  /**
+   * Returns the root directory the tree was built from.
+   *
+   * @return the root directory
+   */
+  public File getRoot() {
+    return root;
+  }
+
+  /**
+   * Returns the number of nodes, including the root.
+   *
+   * @return the number of nodes
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns a node's parent.
+   *
+   * @param node the node
+   * @return the parent, or NONE for the root
+   */
+  public int getParent(int node) {
+    return parent[node];
+  }
+
+  /**
+   * Returns a node's first child.
+   *
+   * @param node the node
+   * @return the first child, or NONE if the node has no children
+   */
+  public int getFirstChild(int node) {
+    return firstChild[node];
+  }
+
+  /**
+   * Returns the node after this one in its parent's children.
+   *
+   * @param node the node
+   * @return the next sibling, or NONE if the node is its parent's last child
+   */
+  public int getNextSibling(int node) {
+    return nextSibling[node];
+  }
+
+  /**
+   * Indicates whether a node is a directory.
+   *
+   * @param node the node
+   * @return true if the node is a directory; false otherwise
+   */
+  public boolean isDirectory(int node) {
+    return directories.get(node);
+  }
+
+  /**
+   * Returns a node's name, decoded from the arena.
+   *
+   * @param node the node
+   * @return the name
+   */
+  public String getName(int node) {
+    int offset = nameOffset[node];
+    int end = offset + 2 + nameLength(offset);
+    char[] chars = new char[end - offset - 2];
+    int length = 0;
+    for (int i = offset + 2; i < end; i++) {
+      int b = arena[i] & 0xFF;
+      if (b < 0x80) {
+        chars[length++] = (char) b;
+      } else if (b < 0xE0) {
+        chars[length++] = (char) (((b & 0x1F) << 6) | (arena[++i] & 0x3F));
+      } else if (b < 0xF0) {
+        chars[length++] = (char) (((b & 0x0F) << 12) | ((arena[++i] & 0x3F) << 6) | (arena[++i] & 0x3F));
+      } else {
+        int codePoint = ((b & 0x07) << 18) | ((arena[++i] & 0x3F) << 12)
+            | ((arena[++i] & 0x3F) << 6) | (arena[++i] & 0x3F);
+        chars[length++] = Character.highSurrogate(codePoint);
+        chars[length++] = Character.lowSurrogate(codePoint);
+      }
+    }
+    return new String(chars, 0, length);
+  }
+
+  /**
+   * Returns the number of distinct names stored in the arena.
+   *
+   * @return the number of distinct names
+   */
+  public int getDistinctNameCount() {
+    return internCount;
+  }
+
+  /**
+   * Estimates the memory held by the tree's arrays, not counting object headers.
+   *
+   * @return the estimated size in bytes
+   */
+  public long getFootprintBytes() {
+    return 16L * size + arena.length + directories.size() / 8;
+  }
+}
@@ -0,0 +1,76 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+public class CompactTreeTest {
+
+  /**
+   * A directory that exists only in memory.
+   */
+  private static class FakeDirectory extends File {
+    private static final long serialVersionUID = 1L;
+
+    FakeDirectory(File parent, String name) {
+      super(parent, name);
+    }
+
+    @Override
+    public boolean isDirectory() {
+      return true;
+    }
+  }
+
+  @Test
+  void testLinksAndSharedNames() {
+    File root = new FakeDirectory(null, "root");
+    File a = new FakeDirectory(root, "a");
+    File b = new FakeDirectory(root, "b");
+    Map<File, File[]> listings = Map.of(
+        root, new File[] {a, b, new File(root, "README.md")},
+        a, new File[] {new File(a, "README.md"), new File(a, "café 🌳.txt")},
+        b, new File[0]);
+
+    CompactTree tree = CompactTree.build(root, Integer.MAX_VALUE, listings::get);
+
+    assertEquals(6, tree.size());
+    assertEquals("root", tree.getName(0));
+    assertEquals(CompactTree.NONE, tree.getParent(0));
+    // Nodes are numbered in print order: root, a, a/README.md, a/cafe, b, README.md
+    assertEquals(1, tree.getFirstChild(0));
+    assertEquals("a", tree.getName(1));
+    assertEquals(4, tree.getNextSibling(1));
+    assertEquals("README.md", tree.getName(2));
+    assertEquals("café 🌳.txt", tree.getName(3));
+    assertEquals(1, tree.getParent(3));
+    assertEquals(CompactTree.NONE, tree.getNextSibling(3));
+    assertEquals("b", tree.getName(4));
+    assertTrue(tree.isDirectory(4));
+    assertEquals(CompactTree.NONE, tree.getFirstChild(4));
+    assertEquals(5, tree.getNextSibling(4));
+    assertEquals("README.md", tree.getName(5));
+    assertFalse(tree.isDirectory(5));
+
+    // README.md is stored once
+    assertEquals(5, tree.getDistinctNameCount());
+  }
+
+  @Test
+  void testDepthLimit() {
+    File root = new FakeDirectory(null, "root");
+    File a = new FakeDirectory(root, "a");
+    Map<File, File[]> listings = Map.of(
+        root, new File[] {a},
+        a, new File[] {new File(a, "deep.txt")});
+
+    CompactTree tree = CompactTree.build(root, 1, listings::get);
+
+    assertEquals(2, tree.size());
+    assertTrue(tree.isDirectory(1));
+    assertEquals(CompactTree.NONE, tree.getFirstChild(1));
+  }
+}
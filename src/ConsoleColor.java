@@ -17,62 +17,71 @@
  * - CYAN    : Cyan text
  * - WHITE   : White text
  * - RESET   : Resets the text color to default
+ * 
+ * getCode() is the basic eight-color code. Each color also knows a matching shade in
+ * the 256-color palette and as 24-bit RGB; ColorSupport picks which code is written.
  */
 public enum ConsoleColor {
   /**
    * Black text color (ANSI code: \033[0;30m).
    */
-  BLACK("\033[0;30m"),
+  BLACK("\033[0;30m", 239, 0x4E4E4E),
 
   /**
    * Red text color (ANSI code: \033[0;31m).
    */
-  RED("\033[0;31m"),
+  RED("\033[0;31m", 203, 0xFF5F5F),
 
   /**
    * Green text color (ANSI code: \033[0;32m).
    */
-  GREEN("\033[0;32m"),
+  GREEN("\033[0;32m", 114, 0x87D787),
 
   /**
    * Yellow text color (ANSI code: \033[0;33m).
    */
-  YELLOW("\033[0;33m"),
+  YELLOW("\033[0;33m", 221, 0xFFD75F),
 
   /**
    * Blue text color (ANSI code: \033[0;34m).
    */
-  BLUE("\033[0;34m"),
+  BLUE("\033[0;34m", 75, 0x5FAFFF),
 
   /**
    * Purple text color (ANSI code: \033[0;35m).
    */
-  PURPLE("\033[0;35m"),
+  PURPLE("\033[0;35m", 141, 0xAF87FF),
 
   /**
    * Cyan text color (ANSI code: \033[0;36m).
    */
-  CYAN("\033[0;36m"),
+  CYAN("\033[0;36m", 80, 0x5FD7D7),
 
   /**
    * White text color (ANSI code: \033[0;37m).
    */
-  WHITE("\033[0;37m"),
+  WHITE("\033[0;37m", 252, 0xD0D0D0),
 
   /**
    * Resets the text color to the terminal's default color (ANSI code: \033[0m).
    */
-  RESET("\033[0m");
+  RESET("\033[0m", -1, 0);
 
   private final String code;
+  private final int paletteIndex;
+  private final int rgb;
 
   /**
    * Constructs a ConsoleColor with the given ANSI escape code.
    *
-   * @param code the ANSI escape code for the color
+   * @param code         the ANSI escape code for the color
+   * @param paletteIndex the closest color in the 256-color palette, or -1 for RESET
+   * @param rgb          the same color as 0xRRGGBB, for terminals with 24-bit color
    */
-  ConsoleColor(String code) {
+  ConsoleColor(String code, int paletteIndex, int rgb) {
     this.code = code;
+    this.paletteIndex = paletteIndex;
+    this.rgb = rgb;
   }
 
   /**
@@ -84,6 +93,26 @@ public enum ConsoleColor {
     return code;
   }
 
+  /**
+   * Returns the index of this color in the xterm 256-color palette. The palette has
+   * softer shades than the eight basic colors, which terminals render in whatever
+   * colors their theme picks.
+   *
+   * @return the palette index, or -1 for RESET
+   */
+  public int getPaletteIndex() {
+    return paletteIndex;
+  }
+
+  /**
+   * Returns this color as 0xRRGGBB. It is the same shade as getPaletteIndex().
+   *
+   * @return the color's red, green and blue components
+   */
+  public int getRgb() {
+    return rgb;
+  }
+
   /**
    * Returns the ANSI escape code as a String. This allows the enum to be used
    * directly in print statements.
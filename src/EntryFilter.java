@@ -0,0 +1,187 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decides which entries of a directory listing belong in the tree, given the exclude
+ * and include patterns from the options.
+ *
+ * A pattern without a '/' is a GlobPattern matched against the entry's name, at any
+ * depth. A pattern with a '/' is a PathPattern matched against the entry's path
+ * relative to the root, so "build/tmp" excludes only the tmp directory directly
+ * inside build.
+ *
+ * An entry is left out if it matches any exclude pattern. When there are include
+ * patterns, a file is only kept if it matches one of them. Directories are kept as
+ * long as they may contain a match: always when there is an include pattern without a
+ * '/', otherwise only if some path include can still match below them, so whole
+ * subtrees that cannot match are never listed. Which kept directories end up printed
+ * is up to the printer, which only prints those with a matching file below them.
+ *
+ * Path patterns are matched one name at a time; the state of every path pattern for a
+ * directory is computed once, by statesOf, before its listing is filtered.
+ *
+ * Example Usage:
+ *
+ * EntryFilter filter = new EntryFilter(List.of("build"), List.of("src/*.java"));
+ * long[] states = filter.statesOf(root, directory);
+ * for (String name : directory.list()) {
+ *   if (!filter.isExcluded(states, name)
+ *       && filter.isIncluded(states, name, new File(directory, name).isDirectory())) {
+ *     ...
+ *   }
+ * }
+ */
+public class EntryFilter {
+
+  private final GlobPattern[] excludeNames;
+  private final GlobPattern[] includeNames;
+
+  /**
+   * The path patterns, excludes first. The state sets passed around hold one entry
+   * for each of them, in the same order.
+   */
+  private final PathPattern[] paths;
+  private final int excludePathCount;
+
+  /**
+   * Constructs an EntryFilter.
+   *
+   * @param excludePatterns patterns of entries to leave out
+   * @param includePatterns patterns of files to keep; if empty, every file is kept
+   * @throws IllegalArgumentException if a pattern is invalid
+   */
+  public EntryFilter(List<String> excludePatterns, List<String> includePatterns) {
+    List<GlobPattern> excludes = new ArrayList<>();
+    List<GlobPattern> includes = new ArrayList<>();
+    List<PathPattern> pathPatterns = new ArrayList<>();
+    for (String pattern : excludePatterns) {
+      if (PathPattern.isPathPattern(pattern)) {
+        pathPatterns.add(new PathPattern(pattern));
+      } else {
+        excludes.add(new GlobPattern(pattern));
+      }
+    }
+    excludePathCount = pathPatterns.size();
+    for (String pattern : includePatterns) {
+      if (PathPattern.isPathPattern(pattern)) {
+        pathPatterns.add(new PathPattern(pattern));
+      } else {
+        includes.add(new GlobPattern(pattern));
+      }
+    }
+    excludeNames = excludes.toArray(new GlobPattern[0]);
+    includeNames = includes.toArray(new GlobPattern[0]);
+    paths = pathPatterns.toArray(new PathPattern[0]);
+  }
+
+  /**
+   * Indicates whether the filter has no patterns at all, so every entry is kept.
+   *
+   * @return true if there are no patterns; false otherwise
+   */
+  public boolean isEmpty() {
+    return excludeNames.length == 0 && includeNames.length == 0 && paths.length == 0;
+  }
+
+  /**
+   * Indicates whether there are include patterns, so only some files are kept.
+   *
+   * @return true if there are include patterns; false otherwise
+   */
+  public boolean hasIncludes() {
+    return includeNames.length > 0 || paths.length > excludePathCount;
+  }
+
+  /**
+   * Returns the path pattern states of a directory, found by matching its path
+   * relative to the root one name at a time.
+   *
+   * @param root      the root of the tree
+   * @param directory the root or a directory below it
+   * @return the states, one per path pattern, to pass to isExcluded and isIncluded
+   */
+  public long[] statesOf(File root, File directory) {
+    long[] states = new long[paths.length];
+    if (states.length == 0) {
+      return states;
+    }
+    for (int i = 0; i < paths.length; i++) {
+      states[i] = paths[i].start();
+    }
+    String rootPath = root.getPath();
+    String path = directory.getPath();
+    if (!path.startsWith(rootPath)) {
+      return states;
+    }
+    int start = rootPath.length();
+    while (start < path.length()) {
+      int end = path.indexOf(File.separatorChar, start);
+      if (end < 0) {
+        end = path.length();
+      }
+      if (end > start) {
+        String name = path.substring(start, end);
+        for (int i = 0; i < paths.length; i++) {
+          states[i] = paths[i].advance(states[i], name);
+        }
+      }
+      start = end + 1;
+    }
+    return states;
+  }
+
+  /**
+   * Indicates whether an entry matches an exclude pattern.
+   *
+   * @param states the states of the directory containing the entry
+   * @param name   the entry's name
+   * @return true if the entry should be left out; false otherwise
+   */
+  public boolean isExcluded(long[] states, String name) {
+    for (GlobPattern pattern : excludeNames) {
+      if (pattern.matches(name)) {
+        return true;
+      }
+    }
+    for (int i = 0; i < excludePathCount; i++) {
+      if (paths[i].isMatch(paths[i].advance(states[i], name))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Indicates whether an entry that is not excluded should be kept because of the
+   * include patterns: a file must match one, and a directory must be able to contain
+   * a match. Always true when there are no include patterns.
+   *
+   * @param states      the states of the directory containing the entry
+   * @param name        the entry's name
+   * @param isDirectory whether the entry is a directory
+   * @return true if the entry should be kept; false otherwise
+   */
+  public boolean isIncluded(long[] states, String name, boolean isDirectory) {
+    if (!hasIncludes()) {
+      return true;
+    }
+    if (isDirectory && includeNames.length > 0) {
+      return true;
+    }
+    if (!isDirectory) {
+      for (GlobPattern pattern : includeNames) {
+        if (pattern.matches(name)) {
+          return true;
+        }
+      }
+    }
+    for (int i = excludePathCount; i < paths.length; i++) {
+      long next = paths[i].advance(states[i], name);
+      if (isDirectory ? paths[i].canMatchBelow(next) : paths[i].isMatch(next)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
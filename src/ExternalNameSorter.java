@@ -0,0 +1,277 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts a stream of file names while keeping at most a fixed number of names in memory.
+ * 
+ * Names are collected with add(). Whenever the number of names held in memory reaches
+ * the limit, they are sorted and written to a temporary file (a "run"). Once every name
+ * has been added, next() returns the names in sorted order by merging the runs.
+ * If only a few names were added, no temporary files are ever created.
+ * 
+ * Example Usage:
+ * 
+ * try (ExternalNameSorter sorter = new ExternalNameSorter(10000, AlphabeticalFileSorter::compareNames)) {
+ *   for (String name : directory.list()) {
+ *     sorter.add(name);
+ *   }
+ *   for (String name = sorter.next(); name != null; name = sorter.next()) {
+ *     ...
+ *   }
+ * }
+ * 
+ * Temporary files are deleted when the sorter is closed.
+ */
+public class ExternalNameSorter implements Closeable {
+
+  /**
+   * The maximum number of runs merged at once. If there are more runs than this,
+   * groups of runs are first merged into larger runs.
+   */
+  private static final int MAX_MERGE_WIDTH = 64;
+
+  /**
+   * Size of the buffers used to read and write runs.
+   */
+  private static final int IO_BUFFER_SIZE = 64 * 1024;
+
+  private final int maxInMemory;
+  private final Comparator<String> order;
+  private final List<String> buffer = new ArrayList<>();
+  private final List<File> runs = new ArrayList<>();
+
+  /**
+   * Names being returned from memory when nothing was spilled, or null.
+   */
+  private List<String> inMemory;
+  private int inMemoryIndex;
+
+  /**
+   * Runs being merged, ordered by their next name, or null.
+   */
+  private PriorityQueue<RunReader> merge;
+
+  private boolean finished;
+
+  /**
+   * Constructs an ExternalNameSorter.
+   *
+   * @param maxInMemory the maximum number of names held in memory before spilling to disk
+   * @param order       the order to sort names in
+   * @throws IllegalArgumentException if maxInMemory is less than 1
+   */
+  public ExternalNameSorter(int maxInMemory, Comparator<String> order) {
+    if (maxInMemory < 1) {
+      throw new IllegalArgumentException("maxInMemory must be at least 1: " + maxInMemory);
+    }
+    this.maxInMemory = maxInMemory;
+    this.order = order;
+  }
+
+  /**
+   * Adds a name to be sorted. May write a run to disk.
+   *
+   * @param name the name to add
+   * @throws IOException if a run cannot be written
+   * @throws IllegalStateException if next() has already been called
+   */
+  public void add(String name) throws IOException {
+    if (finished) {
+      throw new IllegalStateException("Cannot add names after reading has started");
+    }
+    buffer.add(name);
+    if (buffer.size() >= maxInMemory) {
+      spill();
+    }
+  }
+
+  /**
+   * Returns the number of runs written to disk so far.
+   *
+   * @return the number of runs
+   */
+  public int getRunCount() {
+    return runs.size();
+  }
+
+  /**
+   * Returns the next name in sorted order. No more names can be added once this
+   * has been called.
+   *
+   * @return the next name, or null if every name has been returned
+   * @throws IOException if a run cannot be read
+   */
+  public String next() throws IOException {
+    if (!finished) {
+      finish();
+    }
+    if (inMemory != null) {
+      return inMemoryIndex < inMemory.size() ? inMemory.get(inMemoryIndex++) : null;
+    }
+    RunReader smallest = merge.poll();
+    if (smallest == null) {
+      return null;
+    }
+    String name = smallest.head;
+    if (smallest.advance()) {
+      merge.add(smallest);
+    } else {
+      smallest.close();
+    }
+    return name;
+  }
+
+  /**
+   * Closes any open runs and deletes the temporary files.
+   */
+  @Override
+  public void close() {
+    if (merge != null) {
+      for (RunReader reader : merge) {
+        reader.close();
+      }
+      merge.clear();
+    }
+    for (File run : runs) {
+      run.delete();
+    }
+    runs.clear();
+    buffer.clear();
+  }
+
+  /**
+   * Switches from adding to reading. Everything stays in memory if nothing was spilled,
+   * otherwise the remaining names are spilled and the runs are opened for merging.
+   */
+  private void finish() throws IOException {
+    finished = true;
+    if (runs.isEmpty()) {
+      buffer.sort(order);
+      inMemory = buffer;
+      return;
+    }
+    if (!buffer.isEmpty()) {
+      spill();
+    }
+    while (runs.size() > MAX_MERGE_WIDTH) {
+      mergeGroups();
+    }
+    merge = openRuns(runs);
+  }
+
+  /**
+   * Sorts the names in memory and writes them to a new run.
+   */
+  private void spill() throws IOException {
+    buffer.sort(order);
+    File run = File.createTempFile("truffula-run", ".tmp");
+    runs.add(run);
+    try (DataOutputStream out = openForWriting(run)) {
+      out.writeInt(buffer.size());
+      for (String name : buffer) {
+        out.writeUTF(name);
+      }
+    }
+    buffer.clear();
+  }
+
+  /**
+   * Merges groups of MAX_MERGE_WIDTH runs into single larger runs.
+   */
+  private void mergeGroups() throws IOException {
+    List<File> merged = new ArrayList<>();
+    for (int start = 0; start < runs.size(); start += MAX_MERGE_WIDTH) {
+      List<File> group = runs.subList(start, Math.min(start + MAX_MERGE_WIDTH, runs.size()));
+      File run = File.createTempFile("truffula-run", ".tmp");
+      merged.add(run);
+      PriorityQueue<RunReader> queue = openRuns(group);
+      int count = 0;
+      for (RunReader reader : queue) {
+        count += reader.remaining + 1;
+      }
+      try (DataOutputStream out = openForWriting(run)) {
+        out.writeInt(count);
+        while (!queue.isEmpty()) {
+          RunReader smallest = queue.poll();
+          out.writeUTF(smallest.head);
+          if (smallest.advance()) {
+            queue.add(smallest);
+          } else {
+            smallest.close();
+          }
+        }
+      }
+      for (File old : group) {
+        old.delete();
+      }
+    }
+    runs.clear();
+    runs.addAll(merged);
+  }
+
+  private PriorityQueue<RunReader> openRuns(List<File> files) throws IOException {
+    PriorityQueue<RunReader> queue = new PriorityQueue<>(Math.max(1, files.size()),
+        (a, b) -> order.compare(a.head, b.head));
+    for (File file : files) {
+      RunReader reader = new RunReader(file);
+      if (reader.advance()) {
+        queue.add(reader);
+      } else {
+        reader.close();
+      }
+    }
+    return queue;
+  }
+
+  private static DataOutputStream openForWriting(File file) throws IOException {
+    return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), IO_BUFFER_SIZE));
+  }
+
+  /**
+   * Reads the names of one run in order.
+   */
+  private static class RunReader {
+    private final DataInputStream in;
+    private int remaining;
+    private String head;
+
+    RunReader(File file) throws IOException {
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), IO_BUFFER_SIZE));
+      remaining = in.readInt();
+    }
+
+    /**
+     * Moves to the next name in the run.
+     *
+     * @return true if there was another name, false if the run is exhausted
+     */
+    boolean advance() throws IOException {
+      if (remaining == 0) {
+        head = null;
+        return false;
+      }
+      remaining--;
+      head = in.readUTF();
+      return true;
+    }
+
+    void close() {
+      try {
+        in.close();
+      } catch (IOException e) {
+        // Nothing left to read; the file is deleted by the sorter
+      }
+    }
+  }
+}
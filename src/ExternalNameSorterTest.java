@@ -0,0 +1,56 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class ExternalNameSorterTest {
+
+  private static List<String> drain(ExternalNameSorter sorter) throws IOException {
+    List<String> names = new ArrayList<>();
+    for (String name = sorter.next(); name != null; name = sorter.next()) {
+      names.add(name);
+    }
+    return names;
+  }
+
+  @Test
+  void testSmallInputStaysInMemory() throws IOException {
+    try (ExternalNameSorter sorter = new ExternalNameSorter(10, AlphabeticalFileSorter::compareNames)) {
+      sorter.add("zebra.txt");
+      sorter.add("Apple.txt");
+      sorter.add("banana.txt");
+
+      assertEquals(List.of("Apple.txt", "banana.txt", "zebra.txt"), drain(sorter));
+      assertEquals(0, sorter.getRunCount());
+      assertNull(sorter.next());
+    }
+  }
+
+  @Test
+  void testSpilledRunsAreMergedInOrder() throws IOException {
+    // Enough names for more runs than can be merged at once
+    Random random = new Random(42);
+    List<String> expected = new ArrayList<>();
+    try (ExternalNameSorter sorter = new ExternalNameSorter(7, AlphabeticalFileSorter::compareNames)) {
+      for (int i = 0; i < 1000; i++) {
+        String name = (random.nextBoolean() ? "File" : "file") + random.nextInt(100000);
+        expected.add(name);
+        sorter.add(name);
+      }
+      assertTrue(sorter.getRunCount() > 64);
+
+      expected.sort(AlphabeticalFileSorter::compareNames);
+      List<String> actual = drain(sorter);
+      assertEquals(expected.size(), actual.size());
+      for (int i = 0; i < expected.size(); i++) {
+        assertEquals(0, AlphabeticalFileSorter.compareNames(expected.get(i), actual.get(i)));
+      }
+    }
+  }
+}
@@ -0,0 +1,133 @@
+/**
+ * A glob-style pattern for matching file names.
+ * 
+ * Supported wildcards:
+ * - *  : matches any sequence of characters, including none
+ * - ?  : matches exactly one character
+ * 
+ * Every other character matches itself, case-sensitively. The pattern must match the
+ * whole name, so "target" matches only "target", while "*.log" matches "build.log".
+ * 
+ * Patterns are compiled when constructed. The common shapes (a literal name, "*.ext",
+ * "prefix*", "*part*" and "*") are matched with a single equals, endsWith,
+ * startsWith or contains; only other patterns use the general backtracking matcher.
+ * 
+ * Example Usage:
+ * 
+ * GlobPattern pattern = new GlobPattern("node_modules");
+ * pattern.matches("node_modules"); // true
+ */
+public class GlobPattern {
+
+  /**
+   * The shapes of pattern that have a fast path.
+   */
+  private enum Kind {
+    LITERAL, PREFIX, SUFFIX, CONTAINS, ANY, GENERAL
+  }
+
+  private final String pattern;
+  private final Kind kind;
+
+  /**
+   * The literal part of the pattern for the fast paths, without its stars.
+   */
+  private final String literal;
+
+  /**
+   * Constructs a GlobPattern.
+   *
+   * @param pattern the glob pattern
+   * @throws IllegalArgumentException if the pattern is empty
+   */
+  public GlobPattern(String pattern) {
+    if (pattern.isEmpty()) {
+      throw new IllegalArgumentException("Pattern must not be empty");
+    }
+    this.pattern = pattern;
+
+    boolean leadingStar = pattern.startsWith("*");
+    boolean trailingStar = pattern.length() > 1 && pattern.endsWith("*");
+    String middle = pattern.substring(leadingStar ? 1 : 0, pattern.length() - (trailingStar ? 1 : 0));
+    if (middle.indexOf('*') >= 0 || middle.indexOf('?') >= 0) {
+      kind = Kind.GENERAL;
+    } else if (middle.isEmpty()) {
+      kind = Kind.ANY;
+    } else if (leadingStar && trailingStar) {
+      kind = Kind.CONTAINS;
+    } else if (leadingStar) {
+      kind = Kind.SUFFIX;
+    } else if (trailingStar) {
+      kind = Kind.PREFIX;
+    } else {
+      kind = Kind.LITERAL;
+    }
+    literal = middle;
+  }
+
+  /**
+   * Returns the pattern this was constructed with.
+   *
+   * @return the glob pattern
+   */
+  public String getPattern() {
+    return pattern;
+  }
+
+  /**
+   * Indicates whether the whole name matches the pattern.
+   *
+   * @param name the file name to match
+   * @return true if the name matches; false otherwise
+   */
+  public boolean matches(String name) {
+    switch (kind) {
+      case LITERAL:
+        return name.equals(literal);
+      case PREFIX:
+        return name.startsWith(literal);
+      case SUFFIX:
+        return name.endsWith(literal);
+      case CONTAINS:
+        return name.contains(literal);
+      case ANY:
+        return true;
+      default:
+        return matchesGeneral(name);
+    }
+  }
+
+  /**
+   * Matches any pattern, backtracking to the most recent * when the rest stops matching.
+   */
+  private boolean matchesGeneral(String name) {
+    int p = 0;
+    int n = 0;
+    // Where to resume if the characters after the last * stop matching
+    int starPattern = -1;
+    int starName = 0;
+    while (n < name.length()) {
+      if (p < pattern.length() && (pattern.charAt(p) == '?' || pattern.charAt(p) == name.charAt(n))) {
+        p++;
+        n++;
+      } else if (p < pattern.length() && pattern.charAt(p) == '*') {
+        starPattern = p++;
+        starName = n;
+      } else if (starPattern >= 0) {
+        p = starPattern + 1;
+        n = ++starName;
+      } else {
+        return false;
+      }
+    }
+    while (p < pattern.length() && pattern.charAt(p) == '*') {
+      p++;
+    }
+    return p == pattern.length();
+  }
+
+  @Override
+  public String toString() {
+    return pattern;
+  }
+}
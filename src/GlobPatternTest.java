@@ -0,0 +1,39 @@
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class GlobPatternTest {
+
+  @Test
+  void testLiteralMatchesWholeName() {
+    GlobPattern pattern = new GlobPattern("target");
+    assertTrue(pattern.matches("target"));
+    assertFalse(pattern.matches("targets"));
+    assertFalse(pattern.matches("Target"));
+  }
+
+  @Test
+  void testWildcards() {
+    assertTrue(new GlobPattern("*.log").matches("build.log"));
+    assertTrue(new GlobPattern("*.log").matches(".log"));
+    assertFalse(new GlobPattern("*.log").matches("build.log.gz"));
+    assertTrue(new GlobPattern("a*b*c").matches("aXXbYYbc"));
+    assertTrue(new GlobPattern("?at.png").matches("Cat.png"));
+    assertFalse(new GlobPattern("?at.png").matches("at.png"));
+    assertTrue(new GlobPattern("*").matches(""));
+  }
+
+  @Test
+  void testFastPathShapes() {
+    assertTrue(new GlobPattern("Make*").matches("Makefile"));
+    assertFalse(new GlobPattern("Make*").matches("makefile"));
+    assertTrue(new GlobPattern("*test*").matches("latest.txt"));
+    assertFalse(new GlobPattern("*test*").matches("tes"));
+    assertTrue(new GlobPattern("**").matches("anything"));
+    assertTrue(new GlobPattern("*?").matches("a"));
+    assertFalse(new GlobPattern("*?").matches(""));
+    assertTrue(new GlobPattern("*a*b").matches("xaxb"));
+    assertFalse(new GlobPattern("*a*b").matches("xbxa"));
+  }
+}
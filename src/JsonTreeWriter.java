@@ -0,0 +1,283 @@
+import java.io.File;
+import java.io.Flushable;
+import java.io.PrintStream;
+
+/**
+ * Writes a directory tree as JSON, one entry at a time, straight into a byte buffer.
+ * 
+ * Two formats are supported:
+ * - NDJSON: one JSON object per line for every entry, e.g. for the root /home/me/myFolder
+ *   {"path":"/home/me/myFolder/Documents/notes.txt","depth":2,"type":"file","size":120}
+ *   The path is the entry's File path, so it starts with the root's path as given.
+ *   Directories have no size, but can carry "totalSize" and "fileCount" fields with the
+ *   cumulative size and number of files below them. The root's totals are only known
+ *   once the walk is done, so they follow the last entry as a record of their own:
+ *   {"path":"/home/me/myFolder","depth":0,"type":"totals","totalSize":123,"fileCount":2}
+ * - JSON: a single nested document, e.g.
+ *   {"name":"myFolder","type":"directory","children":[{"name":"Apple.txt","type":"file","size":3}]}
+ *   The root's totals, if given, are written after its children array.
+ * 
+ * Entries must be given in tree order (a directory followed by its subtree), as
+ * TruffulaPrinter produces them. The nested format works out where directories end
+ * from the depth of the following entries, so nothing needs to be buffered besides
+ * the stack of open directories.
+ * 
+ * The encoder writes UTF-8 directly into a reusable byte buffer without building
+ * intermediate strings, so millions of entries can be written with very little
+ * allocation. Call finish() once the last entry has been written.
+ */
+public class JsonTreeWriter implements Flushable {
+
+  private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+  private final PrintStream out;
+  private final OutputFormat format;
+  private final byte[] buffer;
+  private int position;
+
+  /**
+   * Depths of the directories whose children array is still open (JSON only).
+   */
+  private int[] openDepths = new int[16];
+  private int openCount;
+
+  /**
+   * Whether the innermost open children array already has an element (JSON only).
+   */
+  private boolean needsComma;
+
+  /**
+   * The root entry, for the record of its totals (NDJSON only).
+   */
+  private File root;
+
+  /**
+   * Constructs a JsonTreeWriter.
+   *
+   * @param out        the stream to write to
+   * @param format     the format to write, either NDJSON or JSON
+   * @param bufferSize the size of the buffer in bytes
+   * @throws IllegalArgumentException if the format is TEXT or bufferSize is less than 64
+   */
+  public JsonTreeWriter(PrintStream out, OutputFormat format, int bufferSize) {
+    if (format == OutputFormat.TEXT) {
+      throw new IllegalArgumentException("JsonTreeWriter cannot write " + format);
+    }
+    if (bufferSize < 64) {
+      throw new IllegalArgumentException("bufferSize must be at least 64: " + bufferSize);
+    }
+    this.out = out;
+    this.format = format;
+    this.buffer = new byte[bufferSize];
+  }
+
+  /**
+   * Writes one entry of the tree.
+   *
+   * @param file        the file or directory
+   * @param isDirectory whether it is a directory
+   * @param depth       its depth below the root (0 for the root)
+   */
+  public void entry(File file, boolean isDirectory, int depth) {
+    entry(file, isDirectory, depth, null);
+  }
+
+  /**
+   * Writes one entry of the tree, including a directory's cumulative totals.
+   *
+   * @param file        the file or directory
+   * @param isDirectory whether it is a directory
+   * @param depth       its depth below the root (0 for the root)
+   * @param totals      the directory's totals, or null to leave them out
+   */
+  public void entry(File file, boolean isDirectory, int depth, SizeAggregator.Totals totals) {
+    if (format == OutputFormat.NDJSON) {
+      if (depth == 0) {
+        root = file;
+      }
+      writeAscii("{\"path\":");
+      writeString(file.getPath());
+      writeAscii(",\"depth\":");
+      writeLong(depth);
+      writeType(isDirectory);
+      writeTotals(totals);
+      if (!isDirectory) {
+        writeAscii(",\"size\":");
+        writeLong(file.length());
+      }
+      writeAscii("}\n");
+      return;
+    }
+
+    closeDirectoriesAtOrBelow(depth);
+    if (needsComma) {
+      writeByte(',');
+    }
+    writeAscii("{\"name\":");
+    writeString(file.getName());
+    writeType(isDirectory);
+    writeTotals(totals);
+    if (isDirectory) {
+      writeAscii(",\"children\":[");
+      if (openCount == openDepths.length) {
+        int[] grown = new int[openCount * 2];
+        System.arraycopy(openDepths, 0, grown, 0, openCount);
+        openDepths = grown;
+      }
+      openDepths[openCount++] = depth;
+      needsComma = false;
+    } else {
+      writeAscii(",\"size\":");
+      writeLong(file.length());
+      writeByte('}');
+      needsComma = true;
+    }
+  }
+
+  /**
+   * Closes any open directories and flushes. No entries can be written afterwards.
+   */
+  public void finish() {
+    finish(null);
+  }
+
+  /**
+   * Closes any open directories, writes the root's totals and flushes. No entries can
+   * be written afterwards.
+   *
+   * @param rootTotals the root's totals, or null to leave them out
+   */
+  public void finish(SizeAggregator.Totals rootTotals) {
+    if (format == OutputFormat.JSON) {
+      closeDirectoriesAtOrBelow(1);
+      if (openCount > 0) {
+        openCount = 0;
+        writeByte(']');
+        writeTotals(rootTotals);
+        writeByte('}');
+      }
+      writeByte('\n');
+    } else if (rootTotals != null && root != null) {
+      writeAscii("{\"path\":");
+      writeString(root.getPath());
+      writeAscii(",\"depth\":0,\"type\":\"totals\"");
+      writeTotals(rootTotals);
+      writeAscii("}\n");
+    }
+    flush();
+  }
+
+  /**
+   * Writes everything in the buffer to the stream and flushes it.
+   */
+  @Override
+  public void flush() {
+    drain();
+    out.flush();
+  }
+
+  private void closeDirectoriesAtOrBelow(int depth) {
+    while (openCount > 0 && openDepths[openCount - 1] >= depth) {
+      openCount--;
+      writeAscii("]}");
+      needsComma = true;
+    }
+  }
+
+  private void writeTotals(SizeAggregator.Totals totals) {
+    if (totals != null) {
+      writeAscii(",\"totalSize\":");
+      writeLong(totals.getSize());
+      writeAscii(",\"fileCount\":");
+      writeLong(totals.getFileCount());
+    }
+  }
+
+  private void writeType(boolean isDirectory) {
+    writeAscii(isDirectory ? ",\"type\":\"directory\"" : ",\"type\":\"file\"");
+  }
+
+  /**
+   * Writes a quoted JSON string, escaping as required and encoding as UTF-8.
+   */
+  private void writeString(String value) {
+    writeByte('"');
+    int length = value.length();
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        writeByte('\\');
+        writeByte(c);
+      } else if (c < 0x20) {
+        writeByte('\\');
+        writeByte('u');
+        writeByte('0');
+        writeByte('0');
+        writeByte(HEX[c >> 4]);
+        writeByte(HEX[c & 0xf]);
+      } else if (c < 0x80) {
+        writeByte(c);
+      } else if (c < 0x800) {
+        writeByte(0xc0 | (c >> 6));
+        writeByte(0x80 | (c & 0x3f));
+      } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, value.charAt(++i));
+        writeByte(0xf0 | (codePoint >> 18));
+        writeByte(0x80 | ((codePoint >> 12) & 0x3f));
+        writeByte(0x80 | ((codePoint >> 6) & 0x3f));
+        writeByte(0x80 | (codePoint & 0x3f));
+      } else if (Character.isSurrogate(c)) {
+        // An unpaired surrogate cannot be encoded; use the replacement character
+        writeByte(0xef);
+        writeByte(0xbf);
+        writeByte(0xbd);
+      } else {
+        writeByte(0xe0 | (c >> 12));
+        writeByte(0x80 | ((c >> 6) & 0x3f));
+        writeByte(0x80 | (c & 0x3f));
+      }
+    }
+    writeByte('"');
+  }
+
+  private void writeLong(long value) {
+    if (value < 0) {
+      writeByte('-');
+      value = -value;
+    }
+    if (buffer.length - position < 20) {
+      drain();
+    }
+    int start = position;
+    do {
+      buffer[position++] = (byte) ('0' + (value % 10));
+      value /= 10;
+    } while (value > 0);
+    // Digits were written least significant first
+    for (int i = start, j = position - 1; i < j; i++, j--) {
+      byte digit = buffer[i];
+      buffer[i] = buffer[j];
+      buffer[j] = digit;
+    }
+  }
+
+  private void writeAscii(String text) {
+    for (int i = 0; i < text.length(); i++) {
+      writeByte(text.charAt(i));
+    }
+  }
+
+  private void writeByte(int b) {
+    if (position == buffer.length) {
+      drain();
+    }
+    buffer[position++] = (byte) b;
+  }
+
+  private void drain() {
+    if (position > 0) {
+      out.write(buffer, 0, position);
+      position = 0;
+    }
+  }
+}
@@ -0,0 +1,111 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class JsonTreeWriterTest {
+
+  private static File createFile(File parent, String name, int size) throws IOException {
+    File file = new File(parent, name);
+    try (PrintStream out = new PrintStream(file)) {
+      out.print("x".repeat(size));
+    }
+    return file;
+  }
+
+  private static String print(File root, String format, String... flags) throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    String[] args = new String[flags.length + 3];
+    System.arraycopy(flags, 0, args, 0, flags.length);
+    args[flags.length] = "-format";
+    args[flags.length + 1] = format;
+    args[flags.length + 2] = root.getPath();
+    new TruffulaPrinter(new TruffulaOptions(args), new PrintStream(baos)).printTree();
+    return baos.toString("UTF-8");
+  }
+
+  @Test
+  void testNdjson(@TempDir File tempDir) throws IOException {
+    File root = new File(tempDir, "root");
+    File docs = new File(root, "Docs");
+    docs.mkdirs();
+    createFile(root, "a.txt", 3);
+    createFile(docs, "n\"ote.txt", 5);
+
+    String p = root.getPath();
+    String expected = "{\"path\":\"" + p + "\",\"depth\":0,\"type\":\"directory\"}\n"
+        + "{\"path\":\"" + p + "/a.txt\",\"depth\":1,\"type\":\"file\",\"size\":3}\n"
+        + "{\"path\":\"" + p + "/Docs\",\"depth\":1,\"type\":\"directory\"}\n"
+        + "{\"path\":\"" + p + "/Docs/n\\\"ote.txt\",\"depth\":2,\"type\":\"file\",\"size\":5}\n";
+    assertEquals(expected.replace("/", File.separator), print(root, "ndjson"));
+  }
+
+  @Test
+  void testNestedJson(@TempDir File tempDir) throws IOException {
+    File root = new File(tempDir, "root");
+    File docs = new File(root, "Docs");
+    File images = new File(docs, "images");
+    images.mkdirs();
+    createFile(root, "zebra.txt", 1);
+    createFile(docs, "notes.txt", 2);
+    createFile(images, "cat.png", 0);
+
+    String expected = "{\"name\":\"root\",\"type\":\"directory\",\"children\":["
+        + "{\"name\":\"Docs\",\"type\":\"directory\",\"children\":["
+        + "{\"name\":\"images\",\"type\":\"directory\",\"children\":["
+        + "{\"name\":\"cat.png\",\"type\":\"file\",\"size\":0}]},"
+        + "{\"name\":\"notes.txt\",\"type\":\"file\",\"size\":2}]},"
+        + "{\"name\":\"zebra.txt\",\"type\":\"file\",\"size\":1}]}\n";
+    assertEquals(expected, print(root, "json"));
+  }
+
+  @Test
+  void testNdjsonRootTotals(@TempDir File tempDir) throws IOException {
+    File root = new File(tempDir, "root");
+    File docs = new File(root, "Docs");
+    docs.mkdirs();
+    createFile(root, "a.txt", 3);
+    createFile(docs, "b.txt", 5);
+
+    String p = root.getPath();
+    String expected = "{\"path\":\"" + p + "\",\"depth\":0,\"type\":\"directory\"}\n"
+        + "{\"path\":\"" + p + "/a.txt\",\"depth\":1,\"type\":\"file\",\"size\":3}\n"
+        + "{\"path\":\"" + p + "/Docs\",\"depth\":1,\"type\":\"directory\",\"totalSize\":5,\"fileCount\":1}\n"
+        + "{\"path\":\"" + p + "/Docs/b.txt\",\"depth\":2,\"type\":\"file\",\"size\":5}\n"
+        + "{\"path\":\"" + p + "\",\"depth\":0,\"type\":\"totals\",\"totalSize\":8,\"fileCount\":2}\n";
+    assertEquals(expected.replace("/", File.separator), print(root, "ndjson", "-du"));
+  }
+
+  @Test
+  void testNestedJsonRootTotals(@TempDir File tempDir) throws IOException {
+    File root = new File(tempDir, "root");
+    File docs = new File(root, "Docs");
+    docs.mkdirs();
+    createFile(root, "a.txt", 3);
+    createFile(docs, "b.txt", 5);
+
+    String expected = "{\"name\":\"root\",\"type\":\"directory\",\"children\":["
+        + "{\"name\":\"a.txt\",\"type\":\"file\",\"size\":3},"
+        + "{\"name\":\"Docs\",\"type\":\"directory\",\"totalSize\":5,\"fileCount\":1,\"children\":["
+        + "{\"name\":\"b.txt\",\"type\":\"file\",\"size\":5}]}"
+        + "],\"totalSize\":8,\"fileCount\":2}\n";
+    assertEquals(expected, print(root, "json", "-du"));
+  }
+
+  @Test
+  void testEscapesAndEncodesNames() throws UnsupportedEncodingException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    JsonTreeWriter writer = new JsonTreeWriter(new PrintStream(baos), OutputFormat.JSON, 64);
+
+    writer.entry(new File("tab\there\\ça😀"), false, 0);
+    writer.finish();
+
+    assertEquals("{\"name\":\"tab\\u0009here\\\\ça😀\",\"type\":\"file\",\"size\":0}\n", baos.toString("UTF-8"));
+  }
+}
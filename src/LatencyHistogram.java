@@ -0,0 +1,86 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe histogram of durations in nanoseconds, for reporting percentiles.
+ * 
+ * Durations are counted in logarithmic buckets: each power of two is split into
+ * 8 sub-buckets, so a reported percentile is within 12.5% of the true value while the
+ * histogram takes a fixed, small amount of memory no matter how many values are
+ * recorded. Recording a value is a single atomic increment.
+ */
+public class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(64 * SUB_BUCKETS);
+
+  /**
+   * Records a duration.
+   *
+   * @param nanos the duration in nanoseconds; negative values are recorded as 0
+   */
+  public void record(long nanos) {
+    counts.incrementAndGet(bucketFor(Math.max(0, nanos)));
+  }
+
+  /**
+   * Returns the number of recorded durations.
+   *
+   * @return the count
+   */
+  public long getCount() {
+    long total = 0;
+    for (int i = 0; i < counts.length(); i++) {
+      total += counts.get(i);
+    }
+    return total;
+  }
+
+  /**
+   * Returns an approximation of the given percentile: the upper bound of the
+   * bucket containing it.
+   *
+   * @param percentile the percentile, between 0 and 100
+   * @return the approximate duration in nanoseconds, or 0 if nothing was recorded
+   */
+  public long getPercentile(double percentile) {
+    long total = getCount();
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+    long seen = 0;
+    for (int i = 0; i < counts.length(); i++) {
+      seen += counts.get(i);
+      if (seen >= rank) {
+        return upperBound(i);
+      }
+    }
+    return upperBound(counts.length() - 1);
+  }
+
+  /**
+   * Values below SUB_BUCKETS get a bucket each; above that, the bucket is chosen by
+   * the position of the highest set bit and the SUB_BUCKET_BITS bits below it.
+   */
+  private static int bucketFor(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int highestBit = 63 - Long.numberOfLeadingZeros(value);
+    int shift = highestBit - SUB_BUCKET_BITS;
+    int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+    return (shift + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  private static long upperBound(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int shift = bucket / SUB_BUCKETS - 1;
+    int subBucket = bucket % SUB_BUCKETS;
+    long lowest = ((long) (SUB_BUCKETS + subBucket)) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+}
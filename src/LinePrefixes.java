@@ -0,0 +1,150 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A lazily grown table of the bytes that start each printed line of a tree, one
+ * entry per depth.
+ * 
+ * Every line at a given depth starts with the same color code and the same
+ * indentation, so they are encoded once and reused. Printing a line is then a bulk
+ * copy of the prefix bytes followed by the name, rather than building an indentation
+ * string and looking up a color for every line.
+ * 
+ * The table only grows as deep as the deepest line printed so far.
+ * 
+ * The color codes are those of the table's ColorSupport; with ColorSupport.NONE a
+ * prefix is only the indentation. A table may also put the same text (a diff marker,
+ * for example) between the color code and the indentation of every line.
+ */
+public class LinePrefixes {
+
+  /**
+   * The encoded start of every line at one depth.
+   */
+  public static class Prefix {
+    private final ConsoleColor color;
+    private final byte[] bytes;
+    private final int indentOffset;
+
+    private Prefix(ConsoleColor color, byte[] bytes, int indentOffset) {
+      this.color = color;
+      this.bytes = bytes;
+      this.indentOffset = indentOffset;
+    }
+
+    /**
+     * Returns the color of lines at this depth.
+     *
+     * @return the color
+     */
+    public ConsoleColor getColor() {
+      return color;
+    }
+
+    /**
+     * Returns the color code followed by the indentation (after the table's lead
+     * text, if any), encoded as bytes.
+     * The array must not be modified.
+     *
+     * @return the encoded prefix
+     */
+    public byte[] getBytes() {
+      return bytes;
+    }
+
+    /**
+     * Returns where the indentation (or the lead text before it) starts within
+     * getBytes(), i.e. the length of the color code.
+     *
+     * @return the offset of the indentation
+     */
+    public int getIndentOffset() {
+      return indentOffset;
+    }
+  }
+
+  private final List<ConsoleColor> colorSequence;
+  private final boolean useColor;
+  private final String indent;
+  private final ColorSupport colorSupport;
+  private final String lead;
+  private final List<Prefix> prefixes = new ArrayList<>();
+
+  /**
+   * Constructs a LinePrefixes table.
+   *
+   * @param colorSequence the colors to cycle through by depth
+   * @param useColor      if false, every depth is white
+   * @param indent        the indentation added for each level
+   */
+  public LinePrefixes(List<ConsoleColor> colorSequence, boolean useColor, String indent) {
+    this(colorSequence, useColor, indent, ColorSupport.BASIC);
+  }
+
+  /**
+   * Constructs a LinePrefixes table that encodes colors for the given color level.
+   *
+   * @param colorSequence the colors to cycle through by depth
+   * @param useColor      if false, every depth is white
+   * @param indent        the indentation added for each level
+   * @param colorSupport  which escape codes to encode; NONE encodes none
+   */
+  public LinePrefixes(List<ConsoleColor> colorSequence, boolean useColor, String indent,
+      ColorSupport colorSupport) {
+    this(colorSequence, useColor, indent, colorSupport, "");
+  }
+
+  /**
+   * Constructs a LinePrefixes table whose lines all start with the same text, written
+   * after the color code and before the indentation.
+   *
+   * @param colorSequence the colors to cycle through by depth
+   * @param useColor      if false, every depth is white
+   * @param indent        the indentation added for each level
+   * @param colorSupport  which escape codes to encode; NONE encodes none
+   * @param lead          the text at the start of every line
+   */
+  public LinePrefixes(List<ConsoleColor> colorSequence, boolean useColor, String indent,
+      ColorSupport colorSupport, String lead) {
+    this.colorSequence = colorSequence;
+    this.useColor = useColor;
+    this.indent = indent;
+    this.colorSupport = colorSupport;
+    this.lead = lead;
+  }
+
+  /**
+   * Returns the prefix for lines at the given depth, building it (and any
+   * shallower ones) the first time.
+   *
+   * @param depth the depth below the root
+   * @return the prefix for that depth
+   */
+  public Prefix get(int depth) {
+    while (prefixes.size() <= depth) {
+      int next = prefixes.size();
+      ConsoleColor color = colorFor(next);
+      byte[] code = colorSupport.codeFor(color).getBytes();
+      byte[] indentBytes = (lead + indent.repeat(next)).getBytes();
+      byte[] bytes = new byte[code.length + indentBytes.length];
+      System.arraycopy(code, 0, bytes, 0, code.length);
+      System.arraycopy(indentBytes, 0, bytes, code.length, indentBytes.length);
+      prefixes.add(new Prefix(color, bytes, code.length));
+    }
+    return prefixes.get(depth);
+  }
+
+  /**
+   * Returns the color used for entries at the given depth. Colors cycle through
+   * the color sequence, or are always white if color is disabled.
+   *
+   * @param depth the depth below the root
+   * @return the color for that depth
+   */
+  public ConsoleColor colorFor(int depth) {
+    if (!useColor) {
+      return ConsoleColor.WHITE;
+    }
+    return colorSequence.get(depth % colorSequence.size());
+  }
+}
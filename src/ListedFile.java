@@ -0,0 +1,120 @@
+import java.io.File;
+
+/**
+ * A File produced while listing a directory, which remembers whether it is a directory
+ * and, for directories, its canonical path.
+ * 
+ * Listing checks whether every child is a directory in order to spot symbolic links,
+ * and printing asks again; caching the answer means each entry is only looked up on
+ * disk once. A directory that should not be descended into (a symbolic link that is
+ * not followed, or a directory already visited) is listed as "unfollowed": it answers
+ * false to both isDirectory() and isFile() and has a length of 0, so every walk
+ * treats it as an empty leaf. It is still printed with a directory's trailing "/".
+ */
+class ListedFile extends File {
+  private static final long serialVersionUID = 1L;
+
+  private static final byte UNKNOWN = 0;
+  private static final byte NOT_DIRECTORY = 1;
+  private static final byte DIRECTORY = 2;
+  private static final byte UNFOLLOWED = 3;
+
+  /**
+   * What is known about the file; written at most once after construction, and
+   * always to the same value, so racing threads are harmless.
+   */
+  private byte type;
+  private final String canonicalPath;
+
+  /**
+   * Creates an entry whose type is looked up the first time it is needed.
+   *
+   * @param parent the directory containing the entry
+   * @param name   the entry's name
+   */
+  ListedFile(File parent, String name) {
+    super(parent, name);
+    this.type = UNKNOWN;
+    this.canonicalPath = null;
+  }
+
+  /**
+   * Creates a directory entry.
+   *
+   * @param file          the directory
+   * @param canonicalPath the directory's canonical path
+   * @param follow        whether walks should descend into it
+   */
+  ListedFile(File file, String canonicalPath, boolean follow) {
+    super(file.getPath());
+    this.type = follow ? DIRECTORY : UNFOLLOWED;
+    this.canonicalPath = canonicalPath;
+  }
+
+  /**
+   * Returns the canonical path recorded when the directory was listed.
+   *
+   * @return the canonical path, or null if none was recorded
+   */
+  String getCanonicalPathIfKnown() {
+    return canonicalPath;
+  }
+
+  /**
+   * Indicates whether this is a directory that was not descended into.
+   *
+   * @return true if the entry is an unfollowed directory; false otherwise
+   */
+  boolean isUnfollowed() {
+    return type == UNFOLLOWED;
+  }
+
+  /**
+   * Indicates whether a listed file is an unfollowed directory, which is printed like
+   * a directory but not descended into.
+   *
+   * @param file a listed file
+   * @return true if the file is an unfollowed ListedFile; false otherwise
+   */
+  static boolean isUnfollowed(File file) {
+    return file instanceof ListedFile && ((ListedFile) file).isUnfollowed();
+  }
+
+  /**
+   * Indicates whether a directory is reached through a symbolic link somewhere, i.e.
+   * its canonical path is not its parent's canonical path followed by its name.
+   *
+   * @param parentCanonicalPath the canonical path of the directory it was listed in
+   * @param canonicalPath       the directory's own canonical path
+   * @param name                the directory's name
+   * @return true if the directory is a link; false otherwise
+   */
+  static boolean isLink(String parentCanonicalPath, String canonicalPath, String name) {
+    String expected = parentCanonicalPath.endsWith(File.separator)
+        ? parentCanonicalPath + name
+        : parentCanonicalPath + File.separator + name;
+    return !canonicalPath.equals(expected);
+  }
+
+  @Override
+  public boolean isDirectory() {
+    if (type == UNKNOWN) {
+      type = super.isDirectory() ? DIRECTORY : NOT_DIRECTORY;
+    }
+    return type == DIRECTORY;
+  }
+
+  @Override
+  public boolean isFile() {
+    return type != UNFOLLOWED && !isDirectory() && super.isFile();
+  }
+
+  /**
+   * Returns the file's length, or 0 for an unfollowed directory so it adds nothing to
+   * size totals.
+   */
+  @Override
+  public long length() {
+    return type == UNFOLLOWED ? 0 : super.length();
+  }
+}
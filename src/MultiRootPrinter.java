@@ -0,0 +1,132 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Prints the trees of several roots in one run, walking them concurrently on a single
+ * shared ForkJoinPool while keeping the output in the order the roots were given.
+ *
+ * Every root is printed by its own TruffulaPrinter, as a task on the pool, into a
+ * section buffer of its own: one for standard output and one for stats. The sections
+ * are copied to the real streams in root order, each as soon as it and every root
+ * before it are done, so a slow root only holds back the roots after it.
+ *
+ * The pool has as many threads as the options' parallelism, or one per processor if
+ * the options do not ask for parallel listing. When they do, each root's directories
+ * are listed on the same pool rather than on a pool per root, so the number of
+ * threads stays bounded no matter how many roots there are.
+ *
+ * A root that fails (one that cannot be read, say) does not stop the others: what was
+ * printed of it is kept, an error is written into its stats section, and the next
+ * root is printed as usual.
+ *
+ * Example Usage:
+ *
+ * TruffulaOptions options = new TruffulaOptions(new String[] {"-p", "8", "projectA", "projectB"});
+ * int failures = new MultiRootPrinter(options, System.out, System.err).print();
+ */
+public class MultiRootPrinter {
+
+  /**
+   * The output of one root.
+   */
+  private static class Section {
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+    private boolean failed;
+  }
+
+  private final TruffulaOptions options;
+  private final PrintStream out;
+  private final PrintStream err;
+
+  /**
+   * Constructs a MultiRootPrinter.
+   *
+   * @param options the options, naming every root to print
+   * @param out     the stream the trees are printed to
+   * @param err     the stream stats and errors are reported to
+   */
+  public MultiRootPrinter(TruffulaOptions options, PrintStream out, PrintStream err) {
+    this.options = options;
+    this.out = out;
+    this.err = err;
+  }
+
+  /**
+   * Prints every root's tree (or top entries), in order.
+   *
+   * @return the number of roots that could not be printed in full
+   */
+  public int print() {
+    boolean parallelListing = options.getParallelism() > 1;
+    int threads = parallelListing ? options.getParallelism() : Runtime.getRuntime().availableProcessors();
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    try {
+      int failures = 0;
+      List<ForkJoinTask<Section>> tasks = new ArrayList<>();
+      for (File root : options.getRoots()) {
+        tasks.add(pool.submit(() -> printSection(options.forRoot(root), parallelListing ? pool : null)));
+      }
+      for (ForkJoinTask<Section> task : tasks) {
+        Section section = task.join();
+        out.writeBytes(section.out.toByteArray());
+        err.writeBytes(section.err.toByteArray());
+        if (section.failed) {
+          failures++;
+        }
+      }
+      return failures;
+    } finally {
+      pool.shutdownNow();
+      out.flush();
+      err.flush();
+    }
+  }
+
+  /**
+   * Prints one root into a section buffer. If printing fails, the error is written
+   * into the section after whatever was printed before it.
+   *
+   * @param rootOptions the options for the root alone
+   * @param listingPool the pool to list directories on, or null to list sequentially
+   * @return the root's output
+   */
+  private Section printSection(TruffulaOptions rootOptions, ForkJoinPool listingPool) {
+    Section section = new Section();
+    PrintStream err = new PrintStream(section.err);
+    try {
+      printRoot(rootOptions, listingPool, new PrintStream(section.out), err);
+    } catch (RuntimeException e) {
+      section.failed = true;
+      err.println("Error: Cannot print " + rootOptions.getRoot().getPath() + ": " + e.getMessage());
+    }
+    err.flush();
+    return section;
+  }
+
+  /**
+   * Prints one root's tree (or top entries), and its stats if the options ask for them.
+   *
+   * @param rootOptions the options for the root alone
+   * @param listingPool the pool to list directories on, or null to list sequentially
+   * @param rootOut     the stream the tree is printed to
+   * @param rootErr     the stream stats are reported to
+   */
+  void printRoot(TruffulaOptions rootOptions, ForkJoinPool listingPool, PrintStream rootOut, PrintStream rootErr) {
+    TruffulaPrinter printer = new TruffulaPrinter(rootOptions, rootOut);
+    printer.setListingPool(listingPool);
+    if (rootOptions.getTopCount() > 0) {
+      printer.printTopEntries();
+    } else {
+      printer.printTree();
+    }
+    if (printer.getStats() != null) {
+      printer.getStats().report(rootErr);
+    }
+  }
+}
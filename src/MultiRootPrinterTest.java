@@ -0,0 +1,111 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class MultiRootPrinterTest {
+
+  private static File makeRoot(File parent, String name, int files) throws IOException {
+    File root = new File(parent, name);
+    File nested = new File(root, "nested");
+    assertTrue(nested.mkdirs());
+    for (int i = 0; i < files; i++) {
+      new File(i % 2 == 0 ? root : nested, name + "-" + i + ".txt").createNewFile();
+    }
+    return root;
+  }
+
+  private static String printOne(File root) throws FileNotFoundException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    new TruffulaPrinter(new TruffulaOptions(new String[] {root.getPath()}), new PrintStream(baos)).printTree();
+    return baos.toString();
+  }
+
+  @Test
+  void testPrintsRootsInArgumentOrder(@TempDir File tempDir) throws IOException {
+    File big = makeRoot(tempDir, "big", 200);
+    File small = makeRoot(tempDir, "small", 2);
+    File medium = makeRoot(tempDir, "medium", 20);
+    String expected = printOne(big) + printOne(small) + printOne(medium);
+
+    for (String threads : new String[] {"1", "4"}) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      TruffulaOptions options = new TruffulaOptions(new String[] {"-p", threads, big.getPath(), small.getPath(),
+          medium.getPath()});
+      new MultiRootPrinter(options, new PrintStream(out), new PrintStream(new ByteArrayOutputStream())).print();
+      assertEquals(expected, out.toString());
+    }
+  }
+
+  @Test
+  void testRootsFile(@TempDir File tempDir) throws IOException {
+    File first = makeRoot(tempDir, "first", 1);
+    File second = makeRoot(tempDir, "second", 1);
+    File third = makeRoot(tempDir, "third", 1);
+    File list = new File(tempDir, "roots.txt");
+    try (PrintStream out = new PrintStream(list)) {
+      out.println("# projects");
+      out.println(second.getPath());
+      out.println();
+      out.println(third.getPath());
+    }
+
+    TruffulaOptions options = new TruffulaOptions(new String[] {first.getPath(), "-roots", list.getPath()});
+    assertEquals(List.of(first, second, third), options.getRoots());
+    assertEquals(first, options.getRoot());
+    assertEquals(List.of(second), options.forRoot(second).getRoots());
+
+    // Relative entries are relative to the roots file, not the working directory
+    File projects = new File(tempDir, "projects");
+    File fourth = makeRoot(projects, "fourth", 1);
+    File relativeList = new File(projects, "roots.txt");
+    try (PrintStream out = new PrintStream(relativeList)) {
+      out.println("fourth");
+      out.println("../third");
+    }
+    options = new TruffulaOptions(new String[] {"-roots", relativeList.getPath()});
+    assertEquals(List.of(fourth, new File(projects, "../third")), options.getRoots());
+    assertTrue(options.getRoots().get(1).isDirectory());
+
+    assertThrows(IllegalArgumentException.class,
+        () -> new TruffulaOptions(new String[] {"-cache", "x.idx", first.getPath(), second.getPath()}));
+    assertThrows(FileNotFoundException.class,
+        () -> new TruffulaOptions(new String[] {"-roots", new File(tempDir, "missing.txt").getPath()}));
+  }
+
+  @Test
+  void testFailedRootDoesNotStopTheOthers(@TempDir File tempDir) throws IOException {
+    File first = makeRoot(tempDir, "first", 1);
+    File broken = makeRoot(tempDir, "broken", 1);
+    File last = makeRoot(tempDir, "last", 1);
+    TruffulaOptions options = new TruffulaOptions(new String[] {first.getPath(), broken.getPath(), last.getPath()});
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    MultiRootPrinter printer = new MultiRootPrinter(options, new PrintStream(out), new PrintStream(err)) {
+      @Override
+      void printRoot(TruffulaOptions rootOptions, ForkJoinPool listingPool, PrintStream rootOut,
+          PrintStream rootErr) {
+        if (rootOptions.getRoot().equals(broken)) {
+          rootOut.println("partial");
+          throw new IllegalStateException("disk on fire");
+        }
+        super.printRoot(rootOptions, listingPool, rootOut, rootErr);
+      }
+    };
+
+    assertEquals(1, printer.print());
+    assertEquals(printOne(first) + "partial" + System.lineSeparator() + printOne(last), out.toString());
+    assertEquals("Error: Cannot print " + broken.getPath() + ": disk on fire" + System.lineSeparator(),
+        err.toString());
+  }
+}
@@ -0,0 +1,40 @@
+/**
+ * Enum representing the formats a directory tree can be printed in.
+ * 
+ * Supported Formats:
+ * - TEXT   : Indented, optionally colored text (the default)
+ * - NDJSON : One JSON object per line for every entry
+ * - JSON   : A single nested JSON document
+ */
+public enum OutputFormat {
+  /**
+   * Indented, optionally colored text.
+   */
+  TEXT,
+
+  /**
+   * One JSON object per line for every entry.
+   */
+  NDJSON,
+
+  /**
+   * A single nested JSON document.
+   */
+  JSON;
+
+  /**
+   * Returns the format with the given name, ignoring case.
+   *
+   * @param name the name of the format, e.g. "ndjson"
+   * @return the matching format
+   * @throws IllegalArgumentException if no format has that name
+   */
+  public static OutputFormat fromName(String name) {
+    for (OutputFormat format : values()) {
+      if (format.name().equalsIgnoreCase(name)) {
+        return format;
+      }
+    }
+    throw new IllegalArgumentException("Unknown format: " + name);
+  }
+}
@@ -0,0 +1,168 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.function.Function;
+
+/**
+ * An OutputStream that shows its output a page at a time, like more. After every
+ * page of lines it flushes, prompts, and waits for a line of input: an empty line
+ * (Enter) shows the next page, and q quits. Once input ends, the rest of the output
+ * is shown without stopping.
+ *
+ * Quitting throws a QuitException from the write that reached the page boundary, so
+ * whatever is producing the output stops there; anything written afterwards is
+ * dropped.
+ *
+ * The prompt is erased once answered, so the pages join up as if nothing had been
+ * paused.
+ *
+ * Example Usage:
+ *
+ * PrintStream out = new PrintStream(new Pager(System.out, System.in, Pager.pageLines(System::getenv)));
+ * try {
+ *   new TruffulaPrinter(options, out).printTree();
+ * } catch (Pager.QuitException e) {
+ *   // the user has seen enough
+ * }
+ */
+public class Pager extends OutputStream {
+
+  /**
+   * Thrown when the user quits, to stop whatever is writing to the pager.
+   */
+  public static class QuitException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    QuitException() {
+      super("Paging stopped by the user");
+    }
+  }
+
+  /**
+   * The page height used when the terminal's is unknown.
+   */
+  static final int DEFAULT_ROWS = 24;
+
+  private static final byte[] PROMPT = "-- more -- (Enter: next page, q: quit)".getBytes();
+
+  /**
+   * Moves up to the prompt's line, which the user's Enter left behind, and clears it.
+   */
+  private static final byte[] ERASE_PROMPT = "\033[1A\r\033[K".getBytes();
+
+  private final OutputStream out;
+  private final InputStream in;
+  private final int pageLines;
+  private int lines;
+  private boolean paging = true;
+  private boolean quit;
+
+  /**
+   * Constructs a Pager.
+   *
+   * @param out       the terminal's output
+   * @param in        the terminal's input
+   * @param pageLines the number of lines to show at a time
+   */
+  public Pager(OutputStream out, InputStream in, int pageLines) {
+    this.out = out;
+    this.in = in;
+    this.pageLines = pageLines;
+  }
+
+  /**
+   * Returns how many lines of output fit on the terminal with the prompt below them,
+   * from the LINES environment variable.
+   *
+   * @param environment looks up environment variables, returning null if unset
+   * @return the page height in lines, at least 1
+   */
+  public static int pageLines(Function<String, String> environment) {
+    int rows = DEFAULT_ROWS;
+    String value = environment.apply("LINES");
+    if (value != null) {
+      try {
+        rows = Integer.parseInt(value.trim());
+      } catch (NumberFormatException e) {
+        // Keep the default
+      }
+    }
+    return Math.max(rows - 1, 1);
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    write(new byte[] {(byte) b}, 0, 1);
+  }
+
+  /**
+   * Writes the bytes, pausing at each page boundary among them.
+   *
+   * @throws QuitException if the user quits at a page boundary
+   */
+  @Override
+  public void write(byte[] bytes, int offset, int length) throws IOException {
+    if (quit) {
+      return;
+    }
+    if (!paging) {
+      out.write(bytes, offset, length);
+      return;
+    }
+    int end = offset + length;
+    int start = offset;
+    for (int i = offset; i < end; i++) {
+      if (bytes[i] == '\n' && ++lines == pageLines) {
+        out.write(bytes, start, i + 1 - start);
+        start = i + 1;
+        lines = 0;
+        pause();
+        if (!paging) {
+          break;
+        }
+      }
+    }
+    out.write(bytes, start, end - start);
+  }
+
+  @Override
+  public void flush() throws IOException {
+    if (!quit) {
+      out.flush();
+    }
+  }
+
+  /**
+   * Prompts and waits for the user to ask for the next page or to quit.
+   */
+  private void pause() throws IOException {
+    out.write(PROMPT);
+    out.flush();
+    int answer = -1;
+    boolean answered = false;
+    int b;
+    while ((b = in.read()) != -1) {
+      if (b == '\n') {
+        answered = true;
+        break;
+      }
+      if (answer == -1 && b != ' ' && b != '\r') {
+        answer = b;
+      }
+    }
+    if (!answered) {
+      // Input has ended, so nobody can ask for more pages
+      out.write('\n');
+      paging = false;
+      return;
+    }
+    out.write(ERASE_PROMPT);
+    if (answer == 'q' || answer == 'Q') {
+      // The page may have ended inside a color
+      out.write(ConsoleColor.RESET.getCode().getBytes());
+      out.flush();
+      quit = true;
+      throw new QuitException();
+    }
+  }
+}
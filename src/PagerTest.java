@@ -0,0 +1,66 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+public class PagerTest {
+
+  private static final String PROMPT = "-- more -- (Enter: next page, q: quit)";
+  private static final String ERASE = "\033[1A\r\033[K";
+
+  private static String lines(int from, int to) {
+    StringBuilder text = new StringBuilder();
+    for (int i = from; i < to; i++) {
+      text.append("line ").append(i).append('\n');
+    }
+    return text.toString();
+  }
+
+  @Test
+  void testPausesAfterEveryPage() throws IOException {
+    ByteArrayOutputStream terminal = new ByteArrayOutputStream();
+    Pager pager = new Pager(terminal, new ByteArrayInputStream("\n\n".getBytes()), 3);
+    pager.write(lines(0, 7).getBytes());
+    pager.flush();
+
+    assertEquals(lines(0, 3) + PROMPT + ERASE + lines(3, 6) + PROMPT + ERASE + lines(6, 7), terminal.toString());
+  }
+
+  @Test
+  void testQuitStopsTheWriter() {
+    ByteArrayOutputStream terminal = new ByteArrayOutputStream();
+    PrintStream out = new PrintStream(new Pager(terminal, new ByteArrayInputStream("q\n".getBytes()), 2));
+
+    assertThrows(Pager.QuitException.class, () -> {
+      for (int i = 0; i < 100; i++) {
+        out.print("line " + i + "\n");
+      }
+    });
+    out.print("more\n");
+    out.flush();
+    assertEquals(lines(0, 2) + PROMPT + ERASE + ConsoleColor.RESET.getCode(), terminal.toString());
+  }
+
+  @Test
+  void testEndOfInputShowsTheRest() throws IOException {
+    ByteArrayOutputStream terminal = new ByteArrayOutputStream();
+    Pager pager = new Pager(terminal, new ByteArrayInputStream(new byte[0]), 2);
+    pager.write(lines(0, 10).getBytes());
+
+    assertEquals(lines(0, 2) + PROMPT + "\n" + lines(2, 10), terminal.toString());
+  }
+
+  @Test
+  void testPageLines() {
+    assertEquals(Pager.DEFAULT_ROWS - 1, Pager.pageLines(name -> null));
+    assertEquals(49, Pager.pageLines(Map.of("LINES", "50")::get));
+    assertEquals(Pager.DEFAULT_ROWS - 1, Pager.pageLines(Map.of("LINES", "tall")::get));
+    assertEquals(1, Pager.pageLines(Map.of("LINES", "1")::get));
+  }
+}
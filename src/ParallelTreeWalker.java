@@ -0,0 +1,474 @@
+import java.io.File;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+/**
+ * Lists a directory tree in parallel.
+ * 
+ * Every directory is listed by its own task. As soon as a directory has been listed,
+ * a task is started for each of its subdirectories, so whole subtrees are listed and
+ * sorted concurrently. The caller then consumes the tree in order, starting from the
+ * root, and only waits on a subdirectory when it is that subdirectory's turn.
+ * This means output can start before the whole tree has been listed, and the order
+ * of the output is exactly the same as a sequential walk.
+ * 
+ * Three execution modes are available:
+ * - forkJoin: listings run on a ForkJoinPool with a fixed number of threads. This
+ *   suits local disks, where listing is mostly CPU and cache bound.
+ * - virtualThreads: every listing runs on its own virtual thread, with a semaphore
+ *   limiting how many listings are in flight. This suits network and FUSE file
+ *   systems, where each listing mostly waits on the link and thousands of
+ *   outstanding listings can overlap.
+ * - prefetching: listings wait in a queue ordered by where their directory is
+ *   printed, and a few background threads take them from the front, staying at most
+ *   a fixed number of directories ahead of the caller. A directory the caller
+ *   reaches before it was taken is listed on the caller's thread straight away.
+ *   This suits interactive use: the first lines only wait for the directories they
+ *   need, and a caller that stops reading (a pager waiting for a key) does not have
+ *   the whole tree listed behind its back.
+ * 
+ * Directories deeper than the maximum depth are never listed; their nodes have no children.
+ * 
+ * Example Usage:
+ * 
+ * try (ParallelTreeWalker walker = ParallelTreeWalker.forkJoin(4, Integer.MAX_VALUE, dir -> dir.listFiles())) {
+ *   ParallelTreeWalker.Node root = walker.walk(new File("."));
+ *   ...
+ * }
+ */
+public class ParallelTreeWalker implements AutoCloseable {
+
+  /**
+   * The pool when running in fork/join mode, or null.
+   */
+  private final ForkJoinPool pool;
+
+  /**
+   * Whether the pool was created for this walker, and is shut down with it.
+   */
+  private final boolean ownsPool;
+
+  /**
+   * The executor when running on virtual threads, or null.
+   */
+  private final ExecutorService virtualThreads;
+
+  /**
+   * Limits the number of listings in flight on virtual threads, or null.
+   */
+  private final Semaphore listingPermits;
+
+  /**
+   * Lists the children of a directory, already filtered and sorted.
+   */
+  private final Function<File, File[]> lister;
+
+  /**
+   * Directories at this depth or deeper are not listed.
+   */
+  private final int maxDepth;
+
+  /**
+   * The listings not yet started when prefetching, first in print order; guarded by
+   * this walker. Listings the caller already ran itself are skipped when taken.
+   */
+  private final PriorityQueue<PrefetchListing> prefetchQueue = new PriorityQueue<>();
+
+  /**
+   * The background threads when prefetching, or null.
+   */
+  private final Thread[] prefetchThreads;
+
+  /**
+   * The most directories the background threads may have listed that the caller has
+   * not reached yet.
+   */
+  private final int lookahead;
+
+  /**
+   * The number of directories listed in the background that the caller has not
+   * reached yet; guarded by this walker.
+   */
+  private int listedAhead;
+  private boolean closed;
+
+  private ParallelTreeWalker(ForkJoinPool pool, boolean ownsPool, ExecutorService virtualThreads,
+      Semaphore listingPermits, int maxDepth, Function<File, File[]> lister) {
+    this(pool, ownsPool, virtualThreads, listingPermits, maxDepth, lister, 0, 0);
+  }
+
+  private ParallelTreeWalker(ForkJoinPool pool, boolean ownsPool, ExecutorService virtualThreads,
+      Semaphore listingPermits, int maxDepth, Function<File, File[]> lister, int prefetchThreadCount,
+      int lookahead) {
+    this.pool = pool;
+    this.ownsPool = ownsPool;
+    this.virtualThreads = virtualThreads;
+    this.listingPermits = listingPermits;
+    this.maxDepth = maxDepth;
+    this.lister = lister;
+    this.lookahead = lookahead;
+    if (prefetchThreadCount > 0) {
+      prefetchThreads = new Thread[prefetchThreadCount];
+      for (int i = 0; i < prefetchThreadCount; i++) {
+        prefetchThreads[i] = new Thread(this::prefetch, "truffula-prefetch-" + i);
+        prefetchThreads[i].setDaemon(true);
+        prefetchThreads[i].start();
+      }
+    } else {
+      prefetchThreads = null;
+    }
+  }
+
+  /**
+   * Creates a walker that lists directories on a ForkJoinPool.
+   *
+   * @param parallelism the number of threads used to list directories
+   * @param maxDepth    directories at this depth below the root or deeper are not listed
+   * @param lister      returns the (filtered and sorted) children of a directory
+   * @return the walker
+   */
+  public static ParallelTreeWalker forkJoin(int parallelism, int maxDepth, Function<File, File[]> lister) {
+    return new ParallelTreeWalker(new ForkJoinPool(parallelism), true, null, null, maxDepth, lister);
+  }
+
+  /**
+   * Creates a walker that lists directories on an existing ForkJoinPool, which may be
+   * shared with other walkers and work. Closing the walker leaves the pool running.
+   *
+   * @param pool     the pool to list directories on
+   * @param maxDepth directories at this depth below the root or deeper are not listed
+   * @param lister   returns the (filtered and sorted) children of a directory
+   * @return the walker
+   */
+  public static ParallelTreeWalker forkJoin(ForkJoinPool pool, int maxDepth, Function<File, File[]> lister) {
+    return new ParallelTreeWalker(pool, false, null, null, maxDepth, lister);
+  }
+
+  /**
+   * Creates a walker that lists every directory on its own virtual thread.
+   *
+   * @param maxListings the maximum number of directory listings in flight at once
+   * @param maxDepth    directories at this depth below the root or deeper are not listed
+   * @param lister      returns the (filtered and sorted) children of a directory
+   * @return the walker
+   */
+  public static ParallelTreeWalker virtualThreads(int maxListings, int maxDepth, Function<File, File[]> lister) {
+    return new ParallelTreeWalker(null, false, Executors.newVirtualThreadPerTaskExecutor(),
+        new Semaphore(maxListings), maxDepth, lister);
+  }
+
+  /**
+   * Creates a walker that lists directories ahead of the caller, in the order they
+   * are printed, on a few background threads.
+   *
+   * @param threads   the number of background threads
+   * @param lookahead the most directories listed ahead of the caller
+   * @param maxDepth  directories at this depth below the root or deeper are not listed
+   * @param lister    returns the (filtered and sorted) children of a directory
+   * @return the walker
+   */
+  public static ParallelTreeWalker prefetching(int threads, int lookahead, int maxDepth,
+      Function<File, File[]> lister) {
+    return new ParallelTreeWalker(null, false, null, null, maxDepth, lister, threads, lookahead);
+  }
+
+  /**
+   * Starts listing the tree below the given directory and waits for the
+   * directory itself to be listed. Subdirectories continue to be listed in the
+   * background.
+   *
+   * @param root the directory at the top of the tree
+   * @return the listed root directory
+   */
+  public Node walk(File root) {
+    if (pool != null) {
+      return pool.invoke(new ListTask(root, 0));
+    }
+    if (prefetchThreads != null) {
+      return listAhead(root, 0, new int[0]);
+    }
+    return await(virtualThreads.submit(() -> listOnVirtualThread(root, 0)));
+  }
+
+  /**
+   * Shuts down the worker threads, unless the pool is shared. Listings still in
+   * progress are abandoned.
+   */
+  @Override
+  public void close() {
+    if (pool != null) {
+      if (ownsPool) {
+        pool.shutdownNow();
+      }
+    } else if (prefetchThreads != null) {
+      synchronized (this) {
+        closed = true;
+        prefetchQueue.clear();
+        notifyAll();
+      }
+    } else {
+      virtualThreads.shutdownNow();
+    }
+  }
+
+  /**
+   * Lists one directory for the prefetching mode, then queues a listing for each of
+   * its subdirectories.
+   *
+   * @param directory the directory to list
+   * @param depth     its depth below the root
+   * @param order     the directory's position in print order: the index of each
+   *                  directory on the way to it within its parent's children
+   */
+  private Node listAhead(File directory, int depth, int[] order) {
+    File[] children = depth < maxDepth ? lister.apply(directory) : new File[0];
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    Future<Node>[] subdirectories = new Future[children.length];
+    synchronized (this) {
+      for (int i = 0; i < children.length; i++) {
+        if (children[i].isDirectory()) {
+          int[] childOrder = Arrays.copyOf(order, order.length + 1);
+          childOrder[order.length] = i;
+          PrefetchListing listing = new PrefetchListing(children[i], depth + 1, childOrder);
+          subdirectories[i] = listing;
+          if (!closed) {
+            prefetchQueue.add(listing);
+          }
+        }
+      }
+      notifyAll();
+    }
+    return new Node(directory, children, subdirectories);
+  }
+
+  /**
+   * Runs on each background thread while prefetching: takes the first listing in
+   * print order whenever fewer than lookahead directories are waiting for the
+   * caller, and lists it.
+   */
+  private void prefetch() {
+    while (true) {
+      PrefetchListing listing;
+      synchronized (this) {
+        while (!closed && (prefetchQueue.isEmpty() || listedAhead >= lookahead)) {
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            return;
+          }
+        }
+        if (closed) {
+          return;
+        }
+        listing = prefetchQueue.poll();
+        if (!listing.start()) {
+          continue;
+        }
+        listedAhead++;
+      }
+      listing.run();
+    }
+  }
+
+  /**
+   * A listing for the prefetching mode, started either by a background thread or
+   * by the caller when it gets there first.
+   */
+  private class PrefetchListing extends FutureTask<Node> implements Comparable<PrefetchListing> {
+    private final int[] order;
+    private boolean started;
+
+    PrefetchListing(File directory, int depth, int[] order) {
+      super(() -> listAhead(directory, depth, order));
+      this.order = order;
+    }
+
+    /**
+     * Claims the listing for whoever calls this first.
+     *
+     * @return true if the caller should run the listing; false if it was started
+     */
+    boolean start() {
+      synchronized (ParallelTreeWalker.this) {
+        if (started) {
+          return false;
+        }
+        started = true;
+        return true;
+      }
+    }
+
+    /**
+     * Returns the listed directory to the caller, listing it on the caller's thread
+     * if no background thread has started it.
+     */
+    Node await() {
+      if (start()) {
+        run();
+        return ParallelTreeWalker.await(this);
+      }
+      Node node = ParallelTreeWalker.await(this);
+      synchronized (ParallelTreeWalker.this) {
+        listedAhead--;
+        ParallelTreeWalker.this.notifyAll();
+      }
+      return node;
+    }
+
+    @Override
+    public int compareTo(PrefetchListing other) {
+      return Arrays.compare(order, other.order);
+    }
+  }
+
+  /**
+   * Lists one directory from a virtual thread, holding a permit while listing,
+   * then submits a virtual thread for each of its subdirectories.
+   */
+  private Node listOnVirtualThread(File directory, int depth) throws InterruptedException {
+    File[] children;
+    if (depth < maxDepth) {
+      listingPermits.acquire();
+      try {
+        children = lister.apply(directory);
+      } finally {
+        listingPermits.release();
+      }
+    } else {
+      children = new File[0];
+    }
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    Future<Node>[] subdirectories = new Future[children.length];
+    for (int i = 0; i < children.length; i++) {
+      if (children[i].isDirectory()) {
+        File child = children[i];
+        subdirectories[i] = virtualThreads.submit(() -> listOnVirtualThread(child, depth + 1));
+      }
+    }
+    return new Node(directory, children, subdirectories);
+  }
+
+  /**
+   * Waits for a listing to finish, rethrowing anything it threw.
+   */
+  private static Node await(Future<Node> listing) {
+    try {
+      return listing.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for a directory listing", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException("Directory listing failed", cause);
+    }
+  }
+
+  /**
+   * A directory whose children have been listed.
+   */
+  public static class Node {
+    private final File directory;
+    private final File[] children;
+    private final Future<Node>[] subdirectories;
+
+    private Node(File directory, File[] children, Future<Node>[] subdirectories) {
+      this.directory = directory;
+      this.children = children;
+      this.subdirectories = subdirectories;
+    }
+
+    /**
+     * Returns the directory this node represents.
+     *
+     * @return the directory
+     */
+    public File getDirectory() {
+      return directory;
+    }
+
+    /**
+     * Returns the children of the directory in the order given by the lister.
+     *
+     * @return the children of the directory
+     */
+    public File[] getChildren() {
+      return children;
+    }
+
+    /**
+     * Waits for the child at the given index to be listed if it is a directory.
+     * 
+     * Each child can only be awaited once; the node does not keep a reference to
+     * the subtree afterwards so that printed subtrees can be garbage collected.
+     *
+     * @param index the index of the child within getChildren()
+     * @return the listed subdirectory, or null if the child is not a directory
+     */
+    public Node awaitSubdirectory(int index) {
+      Future<Node> listing = subdirectories[index];
+      if (listing == null) {
+        return null;
+      }
+      subdirectories[index] = null;
+      if (listing instanceof ParallelTreeWalker.PrefetchListing prefetch) {
+        return prefetch.await();
+      }
+      return await(listing);
+    }
+
+    /**
+     * Indicates whether awaitSubdirectory(index) would return without waiting for,
+     * or doing, any listing.
+     *
+     * @param index the index of the child within getChildren()
+     * @return true if the child is not a directory or has been listed; false otherwise
+     */
+    public boolean isSubdirectoryListed(int index) {
+      Future<Node> listing = subdirectories[index];
+      return listing == null || listing.isDone();
+    }
+  }
+
+  /**
+   * Lists one directory and forks a task for each of its subdirectories.
+   */
+  private class ListTask extends RecursiveTask<Node> {
+    private static final long serialVersionUID = 1L;
+
+    private final File directory;
+    private final int depth;
+
+    ListTask(File directory, int depth) {
+      this.directory = directory;
+      this.depth = depth;
+    }
+
+    @Override
+    protected Node compute() {
+      File[] children = depth < maxDepth ? lister.apply(directory) : new File[0];
+      @SuppressWarnings({"unchecked", "rawtypes"})
+      Future<Node>[] subdirectories = new Future[children.length];
+      for (int i = 0; i < children.length; i++) {
+        if (children[i].isDirectory()) {
+          subdirectories[i] = new ListTask(children[i], depth + 1).fork();
+        }
+      }
+      return new Node(directory, children, subdirectories);
+    }
+  }
+}
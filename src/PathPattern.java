@@ -0,0 +1,162 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A glob pattern matched against a path relative to the root, one name at a time.
+ *
+ * The pattern is split at '/' into segments. Each segment is a GlobPattern matched
+ * against one name, except "**", which matches any number of names, including none.
+ * So "src/*.java" matches src/App.java only, while "src/** /*.java" (without the
+ * space, which only keeps this comment open) matches every .java file anywhere below
+ * src.
+ *
+ * The pattern is compiled once into a small automaton with one state per segment.
+ * A walk carries the set of states it can be in as a long bit set, advancing it by
+ * one name per directory level, so matching a path costs one step per name instead of
+ * re-matching the whole path. A directory whose state set is empty cannot contain a
+ * match and does not need to be listed.
+ *
+ * Example Usage:
+ *
+ * PathPattern pattern = new PathPattern("src/*.java");
+ * long states = pattern.advance(pattern.start(), "src");
+ * states = pattern.advance(states, "App.java");
+ * pattern.isMatch(states); // true
+ */
+public class PathPattern {
+
+  /**
+   * The largest number of segments a pattern can have, one bit of the state set each.
+   */
+  private static final int MAX_SEGMENTS = 63;
+
+  private final String pattern;
+
+  /**
+   * The segments of the pattern; null stands for "**".
+   */
+  private final GlobPattern[] segments;
+
+  /**
+   * Constructs a PathPattern.
+   *
+   * @param pattern the pattern, with segments separated by '/'
+   * @throws IllegalArgumentException if the pattern or one of its segments is empty,
+   *                                  or if it has more than 63 segments
+   */
+  public PathPattern(String pattern) {
+    List<GlobPattern> parsed = new ArrayList<>();
+    int start = 0;
+    while (start <= pattern.length()) {
+      int end = pattern.indexOf('/', start);
+      if (end < 0) {
+        end = pattern.length();
+      }
+      String segment = pattern.substring(start, end);
+      if (segment.isEmpty()) {
+        throw new IllegalArgumentException("Empty segment in pattern: " + pattern);
+      }
+      if (segment.equals("**")) {
+        // Consecutive ** match the same paths as one
+        if (parsed.isEmpty() || parsed.get(parsed.size() - 1) != null) {
+          parsed.add(null);
+        }
+      } else {
+        parsed.add(new GlobPattern(segment));
+      }
+      start = end + 1;
+    }
+    if (parsed.size() > MAX_SEGMENTS) {
+      throw new IllegalArgumentException("Too many segments in pattern: " + pattern);
+    }
+    this.pattern = pattern;
+    this.segments = parsed.toArray(new GlobPattern[0]);
+  }
+
+  /**
+   * Indicates whether a pattern should be matched against paths rather than names.
+   *
+   * @param pattern the pattern
+   * @return true if the pattern contains a '/'; false otherwise
+   */
+  public static boolean isPathPattern(String pattern) {
+    return pattern.indexOf('/') >= 0;
+  }
+
+  /**
+   * Returns the original pattern string.
+   *
+   * @return the pattern
+   */
+  public String getPattern() {
+    return pattern;
+  }
+
+  /**
+   * Returns the state set at the root, before any name has been matched.
+   *
+   * @return the initial state set
+   */
+  public long start() {
+    return closure(1L);
+  }
+
+  /**
+   * Advances a state set by one name.
+   *
+   * @param states the state set of the directory containing the name
+   * @param name   the name of the entry
+   * @return the state set of the entry; 0 if no path through it can match
+   */
+  public long advance(long states, String name) {
+    long next = 0;
+    for (int i = 0; i < segments.length; i++) {
+      if ((states & (1L << i)) == 0) {
+        continue;
+      }
+      if (segments[i] == null) {
+        next |= 1L << i;
+      } else if (segments[i].matches(name)) {
+        next |= 1L << (i + 1);
+      }
+    }
+    return closure(next);
+  }
+
+  /**
+   * Indicates whether the path that led to a state set matches the whole pattern.
+   *
+   * @param states the state set of an entry
+   * @return true if the entry matches; false otherwise
+   */
+  public boolean isMatch(long states) {
+    return (states & (1L << segments.length)) != 0;
+  }
+
+  /**
+   * Indicates whether an entry below the one with this state set can still match.
+   *
+   * @param states the state set of a directory
+   * @return true if the directory may contain a match; false if it need not be listed
+   */
+  public boolean canMatchBelow(long states) {
+    return (states & ((1L << segments.length) - 1)) != 0;
+  }
+
+  /**
+   * Adds the states reachable without consuming a name, i.e. skipping past "**".
+   */
+  private long closure(long states) {
+    for (int i = 0; i < segments.length; i++) {
+      if (segments[i] == null && (states & (1L << i)) != 0) {
+        states |= 1L << (i + 1);
+      }
+    }
+    return states;
+  }
+
+  @Override
+  public String toString() {
+    return pattern;
+  }
+}
@@ -0,0 +1,71 @@
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class PathPatternTest {
+
+  private static long walk(PathPattern pattern, String... names) {
+    long states = pattern.start();
+    for (String name : names) {
+      states = pattern.advance(states, name);
+    }
+    return states;
+  }
+
+  @Test
+  void testSegmentsMatchOneNameEach() {
+    PathPattern pattern = new PathPattern("src/*.java");
+    assertTrue(pattern.isMatch(walk(pattern, "src", "App.java")));
+    assertFalse(pattern.isMatch(walk(pattern, "src", "deep", "App.java")));
+    assertFalse(pattern.isMatch(walk(pattern, "test", "App.java")));
+    assertTrue(pattern.canMatchBelow(walk(pattern, "src")));
+    assertFalse(pattern.canMatchBelow(walk(pattern, "test")));
+  }
+
+  @Test
+  void testDoubleStarMatchesAnyNumberOfNames() {
+    PathPattern pattern = new PathPattern("src/**/*.java");
+    assertTrue(pattern.isMatch(walk(pattern, "src", "App.java")));
+    assertTrue(pattern.isMatch(walk(pattern, "src", "a", "b", "App.java")));
+    assertFalse(pattern.isMatch(walk(pattern, "lib", "a", "App.java")));
+    assertFalse(pattern.canMatchBelow(walk(pattern, "lib")));
+
+    PathPattern anywhere = new PathPattern("**/tmp");
+    assertTrue(anywhere.isMatch(walk(anywhere, "tmp")));
+    assertTrue(anywhere.isMatch(walk(anywhere, "build", "x", "tmp")));
+    assertTrue(anywhere.canMatchBelow(walk(anywhere, "build")));
+  }
+
+  @Test
+  void testInvalidPatterns() {
+    assertThrows(IllegalArgumentException.class, () -> new PathPattern("src//a"));
+    assertThrows(IllegalArgumentException.class, () -> new PathPattern("src/"));
+  }
+
+  @Test
+  void testEntryFilterPrunesDirectoriesWithoutMatches() {
+    File root = new File("root");
+    EntryFilter filter = new EntryFilter(List.of("src/gen"), List.of("src/**/*.java"));
+    long[] rootStates = filter.statesOf(root, root);
+    assertTrue(filter.isIncluded(rootStates, "src", true));
+    assertFalse(filter.isIncluded(rootStates, "docs", true));
+    assertFalse(filter.isIncluded(rootStates, "Main.java", false));
+
+    long[] srcStates = filter.statesOf(root, new File(root, "src"));
+    assertTrue(filter.isExcluded(srcStates, "gen"));
+    assertFalse(filter.isExcluded(rootStates, "gen"));
+    assertTrue(filter.isIncluded(srcStates, "Main.java", false));
+    assertFalse(filter.isIncluded(srcStates, "notes.txt", false));
+
+    EntryFilter byName = new EntryFilter(List.of(), List.of("*.md"));
+    long[] none = byName.statesOf(root, root);
+    assertTrue(byName.isIncluded(none, "docs", true));
+    assertTrue(byName.isIncluded(none, "README.md", false));
+    assertFalse(byName.isIncluded(none, "notes.txt", false));
+  }
+}
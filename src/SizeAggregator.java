@@ -0,0 +1,178 @@
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Adds up the size and number of files below every directory while a tree is being
+ * printed, so directories can be annotated with their totals without a second walk.
+ * 
+ * Entries are given to the aggregator in tree order (a directory followed by its
+ * subtree), the same order they are printed in. A directory's totals are only known
+ * once its whole subtree has been seen, so its line is deferred: it is queued along
+ * with every line after it, and the queue is released up to the next incomplete
+ * directory as soon as a directory completes. A directory is complete when an entry
+ * at the same depth or shallower arrives, or when finish() is called.
+ * 
+ * The root is passed through right away without totals, so the output still streams
+ * one top-level subtree at a time; the root's totals are available from
+ * getRootTotals() once finish() has been called.
+ * 
+ * Links to directories that were not followed are printed as directories without
+ * totals and count as neither files nor bytes.
+ * 
+ * Each file's size is added to its innermost directory only, and a directory's totals
+ * are added to its parent when it completes, so every file costs O(1).
+ */
+public class SizeAggregator {
+
+  /**
+   * Receives lines once they are ready to be printed.
+   */
+  public interface LineSink {
+    /**
+     * Prints one entry.
+     *
+     * @param file        the file or directory
+     * @param isDirectory whether it is a directory
+     * @param depth       its depth below the root
+     * @param totals      the totals of the directory, or null for files and the root
+     */
+    void emit(File file, boolean isDirectory, int depth, Totals totals);
+  }
+
+  /**
+   * The cumulative size and file count of a directory.
+   */
+  public static class Totals {
+    private final int depth;
+    private long size;
+    private long fileCount;
+    private boolean complete;
+
+    Totals(int depth) {
+      this.depth = depth;
+    }
+
+    /**
+     * Returns the total size in bytes of all files below the directory.
+     *
+     * @return the total size
+     */
+    public long getSize() {
+      return size;
+    }
+
+    /**
+     * Returns the number of files below the directory, at any depth.
+     *
+     * @return the file count
+     */
+    public long getFileCount() {
+      return fileCount;
+    }
+  }
+
+  /**
+   * A line waiting for the directory totals it (or an earlier line) depends on.
+   */
+  private static class PendingLine {
+    private final File file;
+    private final boolean isDirectory;
+    private final int depth;
+    private final Totals totals;
+
+    PendingLine(File file, boolean isDirectory, int depth, Totals totals) {
+      this.file = file;
+      this.isDirectory = isDirectory;
+      this.depth = depth;
+      this.totals = totals;
+    }
+  }
+
+  private final LineSink sink;
+  private final ArrayDeque<PendingLine> pending = new ArrayDeque<>();
+  private final List<Totals> open = new ArrayList<>();
+  private Totals rootTotals;
+
+  /**
+   * Constructs a SizeAggregator.
+   *
+   * @param sink receives lines, in order, once their totals are known
+   */
+  public SizeAggregator(LineSink sink) {
+    this.sink = sink;
+  }
+
+  /**
+   * Adds the next entry of the tree.
+   *
+   * @param file        the file or directory
+   * @param isDirectory whether it is a directory
+   * @param isLink      whether it is a link to a directory that was not followed;
+   *                    it prints as a directory but adds nothing to the totals
+   * @param depth       its depth below the root (0 for the root)
+   */
+  public void add(File file, boolean isDirectory, boolean isLink, int depth) {
+    closeDirectoriesAtOrBelow(depth);
+    if (depth == 0) {
+      rootTotals = new Totals(0);
+      open.add(rootTotals);
+      sink.emit(file, isDirectory, depth, null);
+      return;
+    }
+    if (isLink) {
+      pending.add(new PendingLine(file, true, depth, null));
+    } else if (isDirectory) {
+      Totals totals = new Totals(depth);
+      open.add(totals);
+      pending.add(new PendingLine(file, true, depth, totals));
+    } else {
+      Totals parent = open.get(open.size() - 1);
+      parent.size += file.length();
+      parent.fileCount++;
+      pending.add(new PendingLine(file, false, depth, null));
+    }
+    release();
+  }
+
+  /**
+   * Completes every directory that is still open and releases all pending lines.
+   */
+  public void finish() {
+    closeDirectoriesAtOrBelow(0);
+    release();
+  }
+
+  /**
+   * Returns the totals of the root directory.
+   *
+   * @return the root's totals, or null if no root was added
+   */
+  public Totals getRootTotals() {
+    return rootTotals;
+  }
+
+  private void closeDirectoriesAtOrBelow(int depth) {
+    while (!open.isEmpty() && open.get(open.size() - 1).depth >= depth) {
+      Totals closed = open.remove(open.size() - 1);
+      closed.complete = true;
+      if (!open.isEmpty()) {
+        Totals parent = open.get(open.size() - 1);
+        parent.size += closed.size;
+        parent.fileCount += closed.fileCount;
+      }
+    }
+  }
+
+  private void release() {
+    while (!pending.isEmpty()) {
+      PendingLine line = pending.peek();
+      if (line.totals != null && !line.totals.complete) {
+        return;
+      }
+      pending.poll();
+      sink.emit(line.file, line.isDirectory, line.depth, line.totals);
+    }
+  }
+}
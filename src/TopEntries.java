@@ -0,0 +1,339 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+/**
+ * Finds the K largest or most recently modified files below a directory in a single
+ * walk, without sorting or keeping the rest of the tree.
+ *
+ * Every file is offered to a bounded min-heap holding the best K files seen so far,
+ * so the smallest of them is at the top. A file only enters the heap if it beats that
+ * smallest one, so the walk takes O(n log K) time and O(K) memory for n files.
+ * Ties are broken by path, so the result does not depend on listing order.
+ *
+ * With more than one thread, directories are listed on a ForkJoinPool and every
+ * thread fills its own heap; the heaps are merged once the walk is done, so the
+ * threads never contend on a shared heap.
+ *
+ * Links to directories that the lister did not follow (see ListedFile) are neither
+ * files nor directories to walk, so they are skipped.
+ *
+ * Neither walk recurses per directory level: the sequential walk keeps an explicit
+ * stack of listings, and each parallel task forks its subdirectories and returns
+ * without waiting for them, so deep trees cannot overflow a thread's stack.
+ *
+ * Example Usage:
+ *
+ * TopEntries top = TopEntries.collect(root, 10, TopEntries.Key.SIZE, Integer.MAX_VALUE, 1, File::listFiles);
+ * for (int i = 0; i < top.size(); i++) {
+ *   System.out.println(top.getKey(i) + " " + top.getFile(i));
+ * }
+ */
+public class TopEntries {
+
+  /**
+   * What files are ranked by.
+   */
+  public enum Key {
+    /**
+     * The file's length in bytes, largest first.
+     */
+    SIZE,
+
+    /**
+     * The file's last modification time, newest first.
+     */
+    MODIFIED;
+
+    /**
+     * Returns the key with the given name, ignoring case.
+     *
+     * @param name the name of the key, e.g. "size"
+     * @return the matching key
+     * @throws IllegalArgumentException if no key has that name
+     */
+    public static Key fromName(String name) {
+      for (Key key : values()) {
+        if (key.name().equalsIgnoreCase(name)) {
+          return key;
+        }
+      }
+      throw new IllegalArgumentException("Unknown key: " + name);
+    }
+
+    long of(File file) {
+      return this == SIZE ? file.length() : file.lastModified();
+    }
+  }
+
+  private final int capacity;
+  private final long[] keys;
+  private final File[] files;
+  private int size;
+
+  private TopEntries(int capacity) {
+    this.capacity = capacity;
+    this.keys = new long[capacity];
+    this.files = new File[capacity];
+  }
+
+  /**
+   * Walks the tree below root and returns the best files, sorted best first.
+   *
+   * @param root        the directory to search
+   * @param count       the number of files to keep
+   * @param key         what files are ranked by
+   * @param maxDepth    directories at this depth below the root are not listed
+   * @param parallelism the number of threads listing directories
+   * @param lister      returns the children of a directory, leaving out anything that
+   *                    should not be considered; the order does not matter
+   * @return the best files
+   * @throws IllegalArgumentException if count is less than 1
+   */
+  public static TopEntries collect(File root, int count, Key key, int maxDepth, int parallelism,
+      Function<File, File[]> lister) {
+    if (count < 1) {
+      throw new IllegalArgumentException("count must be at least 1: " + count);
+    }
+    if (parallelism <= 1) {
+      TopEntries top = new TopEntries(count);
+      top.walk(root, key, maxDepth, lister);
+      top.sort();
+      return top;
+    }
+
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      return collect(root, count, key, maxDepth, pool, lister);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Walks the tree below root on an existing ForkJoinPool, which may be shared with
+   * other work, and returns the best files, sorted best first. The pool is left
+   * running.
+   *
+   * @param root     the directory to search
+   * @param count    the number of files to keep
+   * @param key      what files are ranked by
+   * @param maxDepth directories at this depth below the root are not listed
+   * @param pool     the pool to list directories on
+   * @param lister   returns the children of a directory, leaving out anything that
+   *                 should not be considered; the order does not matter
+   * @return the best files
+   * @throws IllegalArgumentException if count is less than 1
+   */
+  public static TopEntries collect(File root, int count, Key key, int maxDepth, ForkJoinPool pool,
+      Function<File, File[]> lister) {
+    if (count < 1) {
+      throw new IllegalArgumentException("count must be at least 1: " + count);
+    }
+    List<TopEntries> heaps = new ArrayList<>();
+    ThreadLocal<TopEntries> threadHeap = ThreadLocal.withInitial(() -> {
+      TopEntries heap = new TopEntries(count);
+      synchronized (heaps) {
+        heaps.add(heap);
+      }
+      return heap;
+    });
+    pool.invoke(new WalkTask(null, root, 1, key, maxDepth, lister, threadHeap));
+
+    TopEntries top = new TopEntries(count);
+    for (TopEntries heap : heaps) {
+      for (int i = 0; i < heap.size; i++) {
+        top.offer(heap.keys[i], heap.files[i]);
+      }
+    }
+    top.sort();
+    return top;
+  }
+
+  /**
+   * Lists one directory in parallel mode, offering its files to the current thread's
+   * heap and forking a task for each subdirectory. A task completes once all the
+   * tasks it forked have, without any task waiting on another.
+   */
+  private static class WalkTask extends CountedCompleter<Void> {
+    private static final long serialVersionUID = 1L;
+
+    private final File directory;
+    private final int depth;
+    private final Key key;
+    private final int maxDepth;
+    private final transient Function<File, File[]> lister;
+    private final transient ThreadLocal<TopEntries> threadHeap;
+
+    WalkTask(WalkTask parent, File directory, int depth, Key key, int maxDepth, Function<File, File[]> lister,
+        ThreadLocal<TopEntries> threadHeap) {
+      super(parent);
+      this.directory = directory;
+      this.depth = depth;
+      this.key = key;
+      this.maxDepth = maxDepth;
+      this.lister = lister;
+      this.threadHeap = threadHeap;
+    }
+
+    @Override
+    public void compute() {
+      if (depth <= maxDepth) {
+        TopEntries heap = threadHeap.get();
+        for (File child : lister.apply(directory)) {
+          if (child.isDirectory()) {
+            addToPendingCount(1);
+            new WalkTask(this, child, depth + 1, key, maxDepth, lister, threadHeap).fork();
+          } else if (!ListedFile.isUnfollowed(child)) {
+            heap.offer(key.of(child), child);
+          }
+        }
+      }
+      tryComplete();
+    }
+  }
+
+  /**
+   * Offers every file below the root to the heap, keeping an explicit stack of the
+   * listings being walked rather than recursing.
+   */
+  private void walk(File root, Key key, int maxDepth, Function<File, File[]> lister) {
+    if (maxDepth < 1) {
+      return;
+    }
+    // The listing at index i holds entries at depth i + 1
+    List<File[]> listings = new ArrayList<>();
+    int[] positions = new int[16];
+    listings.add(lister.apply(root));
+    while (!listings.isEmpty()) {
+      int top = listings.size() - 1;
+      File[] children = listings.get(top);
+      if (positions[top] == children.length) {
+        listings.remove(top);
+        continue;
+      }
+      File child = children[positions[top]++];
+      if (ListedFile.isUnfollowed(child)) {
+        continue;
+      } else if (!child.isDirectory()) {
+        offer(key.of(child), child);
+      } else if (top + 2 <= maxDepth) {
+        if (listings.size() == positions.length) {
+          positions = Arrays.copyOf(positions, positions.length * 2);
+        }
+        positions[listings.size()] = 0;
+        listings.add(lister.apply(child));
+      }
+    }
+  }
+
+  /**
+   * Offers a file to the heap. It is kept if the heap is not full yet or if it beats
+   * the worst file kept so far, which is then dropped.
+   *
+   * @param key  the file's key; larger keys are better
+   * @param file the file
+   */
+  private void offer(long key, File file) {
+    if (size < capacity) {
+      keys[size] = key;
+      files[size] = file;
+      siftUp(size++);
+    } else if (key > keys[0] || (key == keys[0] && file.getPath().compareTo(files[0].getPath()) < 0)) {
+      keys[0] = key;
+      files[0] = file;
+      siftDown(0, size);
+    }
+  }
+
+  /**
+   * Indicates whether entry i is worse than entry j: a smaller key, or the same key
+   * and a path that sorts later.
+   */
+  private boolean isWorse(int i, int j) {
+    return keys[i] < keys[j] || (keys[i] == keys[j] && files[i].getPath().compareTo(files[j].getPath()) > 0);
+  }
+
+  private void siftUp(int i) {
+    while (i > 0) {
+      int parent = (i - 1) / 2;
+      if (!isWorse(i, parent)) {
+        return;
+      }
+      swap(i, parent);
+      i = parent;
+    }
+  }
+
+  private void siftDown(int i, int end) {
+    while (true) {
+      int worst = i;
+      int left = 2 * i + 1;
+      int right = left + 1;
+      if (left < end && isWorse(left, worst)) {
+        worst = left;
+      }
+      if (right < end && isWorse(right, worst)) {
+        worst = right;
+      }
+      if (worst == i) {
+        return;
+      }
+      swap(i, worst);
+      i = worst;
+    }
+  }
+
+  private void swap(int i, int j) {
+    long key = keys[i];
+    keys[i] = keys[j];
+    keys[j] = key;
+    File file = files[i];
+    files[i] = files[j];
+    files[j] = file;
+  }
+
+  /**
+   * Sorts the kept files best first, in place. Heap sort on the min-heap moves the
+   * worst remaining entry to the end on every step, so no extra space is needed.
+   */
+  private void sort() {
+    for (int end = size - 1; end > 0; end--) {
+      swap(0, end);
+      siftDown(0, end);
+    }
+  }
+
+  /**
+   * Returns the number of files kept, at most the capacity.
+   *
+   * @return the number of files
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the i-th best file.
+   *
+   * @param i the rank, starting at 0 for the best file
+   * @return the file
+   */
+  public File getFile(int i) {
+    return files[i];
+  }
+
+  /**
+   * Returns the key of the i-th best file.
+   *
+   * @param i the rank, starting at 0 for the best file
+   * @return the key
+   */
+  public long getKey(int i) {
+    return keys[i];
+  }
+}
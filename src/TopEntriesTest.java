@@ -0,0 +1,98 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TopEntriesTest {
+
+  private static File writeBytes(File file, int count) throws IOException {
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(new byte[count]);
+    }
+    return file;
+  }
+
+  @Test
+  void testLargestFilesSequentialAndParallel(@TempDir File tempDir) throws IOException {
+    File root = new File(tempDir, "root");
+    for (int d = 0; d < 5; d++) {
+      File dir = new File(root, "dir" + d);
+      assertTrue(dir.mkdirs());
+      for (int f = 0; f < 20; f++) {
+        writeBytes(new File(dir, "file" + f), d * 20 + f);
+      }
+    }
+    // Ties with the fourth largest file are broken by path
+    writeBytes(new File(root, "a-tie"), 96);
+
+    for (int parallelism : new int[] {1, 4}) {
+      TopEntries top = TopEntries.collect(root, 4, TopEntries.Key.SIZE, Integer.MAX_VALUE, parallelism,
+          File::listFiles);
+      assertEquals(4, top.size());
+      assertEquals(99, top.getKey(0));
+      assertEquals("file19", top.getFile(0).getName());
+      assertEquals(98, top.getKey(1));
+      assertEquals(97, top.getKey(2));
+      assertEquals(96, top.getKey(3));
+      assertEquals("a-tie", top.getFile(3).getName());
+    }
+  }
+
+  @Test
+  void testReportRespectsOptions(@TempDir File tempDir) throws IOException {
+    File root = new File(tempDir, "myFolder");
+    File docs = new File(root, "Documents");
+    assertTrue(docs.mkdirs());
+    writeBytes(new File(root, "small.txt"), 10);
+    writeBytes(new File(docs, "big.bin"), 2048);
+    writeBytes(new File(docs, "skip.log"), 4096);
+    writeBytes(new File(root, ".hidden"), 8192);
+
+    TruffulaOptions options = new TruffulaOptions(new String[] {"-nc", "-top", "5", "-x", "*.log", root.getPath()});
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    new TruffulaPrinter(options, new PrintStream(baos)).printTopEntries();
+
+    String nl = System.lineSeparator();
+    String expected = "   2.0 KiB  myFolder/Documents/big.bin" + nl
+        + "      10 B  myFolder/small.txt" + nl;
+    String plain = baos.toString().replace(ConsoleColor.WHITE.getCode(), "").replace(ConsoleColor.RESET.getCode(), "");
+    assertEquals(expected, plain);
+  }
+
+  @Test
+  void testUnfollowedLinksAreNotRanked(@TempDir File tempDir) throws IOException {
+    File root = new File(tempDir, "root");
+    File external = new File(tempDir, "external");
+    assertTrue(root.mkdirs());
+    assertTrue(external.mkdirs());
+    File old = writeBytes(new File(root, "old.txt"), 10);
+    writeBytes(new File(external, "b.txt"), 4096);
+    assertTrue(old.setLastModified(System.currentTimeMillis() - 60_000));
+    try {
+      Files.createSymbolicLink(new File(root, "link").toPath(), external.toPath());
+    } catch (UnsupportedOperationException | IOException e) {
+      // Symbolic links are not available (e.g. Windows without privileges)
+      return;
+    }
+
+    // The link is newer than the only file, but it is neither ranked nor walked
+    for (String threads : new String[] {"1", "4"}) {
+      TruffulaOptions options = new TruffulaOptions(
+          new String[] {"-nc", "-top", "5", "-by", "modified", "-p", threads, root.getPath()});
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      new TruffulaPrinter(options, new PrintStream(baos)).printTopEntries();
+      String plain = baos.toString().replace(ConsoleColor.WHITE.getCode(), "").replace(ConsoleColor.RESET.getCode(), "");
+      String[] lines = plain.trim().split(System.lineSeparator());
+      assertEquals(1, lines.length, plain);
+      assertTrue(lines[0].endsWith("  root/old.txt"), lines[0]);
+    }
+  }
+}
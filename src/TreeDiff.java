@@ -0,0 +1,345 @@
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+
+/**
+ * Compares two directory trees and prints only what differs, in the indented tree
+ * format with a marker before each line:
+ *
+ * + an entry only in the new tree (green)
+ * - an entry only in the old tree (red)
+ * ~ a file in both trees whose size differs (yellow)
+ *
+ * Directories in both trees are printed without a marker, in the usual colors, when
+ * something below them differs, so every difference is shown in context:
+ *
+ *   myFolder/
+ *      Documents/
+ * +       new.txt
+ * ~       notes.txt
+ * -    zebra.txt
+ *
+ * Both trees are walked in lockstep. Each directory's children are listed sorted, as
+ * they are for printing, so matching them up is a single merge over the two sorted
+ * listings rather than a comparison of every pair. An entry only in one tree is
+ * printed along with everything below it; a name that is a file in one tree and a
+ * directory in the other is printed as removed, then added. The walk keeps an
+ * explicit stack of listing pairs instead of recursing, and lines are written as
+ * they are found; a directory in both trees is held back until something below it
+ * differs.
+ *
+ * With a parallelism above 1, subdirectories in both trees are compared on a
+ * ForkJoinPool; each comparison collects its own lines, and they are printed in
+ * order once all are done.
+ *
+ * Example Usage:
+ *
+ * TreeDiff diff = new TreeDiff(options, new File("release-1.0"), System.out);
+ * int differences = diff.print();
+ */
+public class TreeDiff {
+
+  /**
+   * Receives the lines of the diff in print order.
+   */
+  private interface LineSink {
+
+    /**
+     * Takes one line.
+     *
+     * @param marker      '+', '-' or '~' for a difference; ' ' for a directory in both
+     *                    trees; '?' for a directory in both trees compared by a task
+     * @param name        the entry's name
+     * @param isDirectory whether the entry is a directory
+     * @param depth       the depth below the roots
+     */
+    void add(char marker, String name, boolean isDirectory, int depth);
+  }
+
+  /**
+   * One line of the diff, at a depth below the roots.
+   */
+  private static class Line {
+    private final char marker;
+    private final String name;
+    private final boolean isDirectory;
+    private final int depth;
+
+    Line(char marker, String name, boolean isDirectory, int depth) {
+      this.marker = marker;
+      this.name = name;
+      this.isDirectory = isDirectory;
+      this.depth = depth;
+    }
+  }
+
+  private static final File[] NO_FILES = new File[0];
+
+  private final File oldRoot;
+  private final File newRoot;
+  private final int maxDepth;
+  private final int parallelism;
+  private final Function<File, File[]> oldLister;
+  private final Function<File, File[]> newLister;
+  private final AnsiWriter writer;
+  private final LinePrefixes unchanged;
+  private final LinePrefixes added;
+  private final LinePrefixes removed;
+  private final LinePrefixes changed;
+
+  /**
+   * Names of the directories in both trees on the path to the current line that have
+   * not been printed yet, or have; the one at index i is at depth i + 1.
+   */
+  private final List<String> pendingDirectories = new ArrayList<>();
+
+  /**
+   * The pending directories at depths below this have already been printed.
+   */
+  private int printedDepth = 1;
+  private int differences;
+
+  /**
+   * Constructs a TreeDiff.
+   *
+   * @param options   the options for the new tree; hidden files, exclude and include
+   *                  patterns, the depth limit, parallelism and colors apply to both
+   * @param oldRoot   the root of the tree to compare against
+   * @param outStream the stream the differences are printed to
+   */
+  public TreeDiff(TruffulaOptions options, File oldRoot, PrintStream outStream) {
+    this.oldRoot = oldRoot;
+    this.newRoot = options.getRoot();
+    this.maxDepth = options.getMaxDepth();
+    this.parallelism = options.getParallelism();
+    this.oldLister = TruffulaPrinter.lister(options, oldRoot)::listChildren;
+    this.newLister = TruffulaPrinter.lister(options, newRoot)::listChildren;
+    boolean useColor = options.isUseColor();
+    ColorSupport colorSupport = options.getColorSupport();
+    this.writer = new AnsiWriter(outStream, AnsiWriter.DEFAULT_BUFFER_SIZE, options.isCompactColor(),
+        colorSupport);
+    this.unchanged = new LinePrefixes(TruffulaPrinter.DEFAULT_COLOR_SEQUENCE, useColor, TruffulaPrinter.INDENT,
+        colorSupport, "  ");
+    this.added = new LinePrefixes(List.of(ConsoleColor.GREEN), useColor, TruffulaPrinter.INDENT,
+        colorSupport, "+ ");
+    this.removed = new LinePrefixes(List.of(ConsoleColor.RED), useColor, TruffulaPrinter.INDENT,
+        colorSupport, "- ");
+    this.changed = new LinePrefixes(List.of(ConsoleColor.YELLOW), useColor, TruffulaPrinter.INDENT,
+        colorSupport, "~ ");
+  }
+
+  /**
+   * Compares the trees and prints the differences, after a line for the new root.
+   *
+   * @return the number of added, removed and changed entries
+   */
+  public int print() {
+    writeLine(' ', newRoot.getName(), true, 0);
+    if (parallelism > 1) {
+      List<Line> lines;
+      ForkJoinPool pool = new ForkJoinPool(parallelism);
+      try {
+        lines = pool.invoke(new DiffTask(oldRoot, newRoot, 1));
+      } finally {
+        pool.shutdown();
+      }
+      for (Line line : lines) {
+        emit(line.marker, line.name, line.isDirectory, line.depth);
+      }
+    } else {
+      compare(oldRoot, newRoot, 1, null, this::emit);
+    }
+    writer.flush();
+    return differences;
+  }
+
+  /**
+   * Compares a subdirectory pair on the pool, forking a task for each of their own
+   * subdirectories in both trees.
+   */
+  private class DiffTask extends RecursiveTask<List<Line>> {
+    private static final long serialVersionUID = 1L;
+
+    private final File oldDirectory;
+    private final File newDirectory;
+    private final int depth;
+
+    DiffTask(File oldDirectory, File newDirectory, int depth) {
+      this.oldDirectory = oldDirectory;
+      this.newDirectory = newDirectory;
+      this.depth = depth;
+    }
+
+    @Override
+    protected List<Line> compute() {
+      List<DiffTask> subdirectories = new ArrayList<>();
+      List<Line> lines = new ArrayList<>();
+      compare(oldDirectory, newDirectory, depth, subdirectories,
+          (marker, name, isDirectory, lineDepth) -> lines.add(new Line(marker, name, isDirectory, lineDepth)));
+      invokeAll(subdirectories);
+      // Each subdirectory's lines go right after its own line, which holds its index
+      List<Line> merged = new ArrayList<>(lines.size());
+      int next = 0;
+      for (Line line : lines) {
+        if (line.marker == '?') {
+          List<Line> below = subdirectories.get(next++).join();
+          if (!below.isEmpty()) {
+            merged.add(new Line(' ', line.name, true, line.depth));
+            merged.addAll(below);
+          }
+        } else {
+          merged.add(line);
+        }
+      }
+      return merged;
+    }
+  }
+
+  /**
+   * Merges the sorted listings of a directory in both trees, and of the directories
+   * below it, into the lines of the diff. An entry only in one tree is merged against
+   * nothing, so it and everything below it come out with its tree's marker.
+   *
+   * @param oldDirectory   the directory in the old tree
+   * @param newDirectory   the directory in the new tree
+   * @param depth          the depth of the children
+   * @param subdirectories null to compare subdirectories in both trees as part of
+   *                       this walk; otherwise they are added to it as tasks, and a
+   *                       placeholder line with marker '?' is given in place of each
+   * @param sink           receives the lines, in print order
+   */
+  private void compare(File oldDirectory, File newDirectory, int depth, List<DiffTask> subdirectories,
+      LineSink sink) {
+    if (depth > maxDepth) {
+      return;
+    }
+    List<File[]> oldListings = new ArrayList<>();
+    List<File[]> newListings = new ArrayList<>();
+    int[] oldPositions = new int[16];
+    int[] newPositions = new int[16];
+    oldListings.add(oldLister.apply(oldDirectory));
+    newListings.add(newLister.apply(newDirectory));
+    while (!oldListings.isEmpty()) {
+      int top = oldListings.size() - 1;
+      File[] oldChildren = oldListings.get(top);
+      File[] newChildren = newListings.get(top);
+      int o = oldPositions[top];
+      int n = newPositions[top];
+      if (o == oldChildren.length && n == newChildren.length) {
+        oldListings.remove(top);
+        newListings.remove(top);
+        continue;
+      }
+      int order;
+      if (o == oldChildren.length) {
+        order = 1;
+      } else if (n == newChildren.length) {
+        order = -1;
+      } else {
+        order = AlphabeticalFileSorter.compareNames(oldChildren[o].getName(), newChildren[n].getName());
+      }
+      int childDepth = depth + top;
+      File oldChild = order <= 0 ? oldChildren[o] : null;
+      File newChild = order >= 0 ? newChildren[n] : null;
+      boolean oldIsDirectory = oldChild != null && oldChild.isDirectory();
+      boolean newIsDirectory = newChild != null && newChild.isDirectory();
+      if (order == 0 && oldIsDirectory != newIsDirectory) {
+        // Removed now; the next step finds the new entry unmatched and adds it
+        newChild = null;
+        newIsDirectory = false;
+      }
+      if (oldChild != null) {
+        oldPositions[top]++;
+      }
+      if (newChild != null) {
+        newPositions[top]++;
+      }
+      File[] oldListing = null;
+      File[] newListing = null;
+      if (newChild == null) {
+        sink.add('-', oldChild.getName(), oldIsDirectory, childDepth);
+        if (oldIsDirectory && childDepth < maxDepth) {
+          oldListing = oldLister.apply(oldChild);
+          newListing = NO_FILES;
+        }
+      } else if (oldChild == null) {
+        sink.add('+', newChild.getName(), newIsDirectory, childDepth);
+        if (newIsDirectory && childDepth < maxDepth) {
+          oldListing = NO_FILES;
+          newListing = newLister.apply(newChild);
+        }
+      } else if (!oldIsDirectory) {
+        if (oldChild.length() != newChild.length()) {
+          sink.add('~', newChild.getName(), false, childDepth);
+        }
+      } else if (subdirectories != null) {
+        subdirectories.add(new DiffTask(oldChild, newChild, childDepth + 1));
+        sink.add('?', newChild.getName(), true, childDepth);
+      } else {
+        sink.add(' ', newChild.getName(), true, childDepth);
+        if (childDepth < maxDepth) {
+          oldListing = oldLister.apply(oldChild);
+          newListing = newLister.apply(newChild);
+        }
+      }
+      if (oldListing != null) {
+        int next = oldListings.size();
+        if (next == oldPositions.length) {
+          oldPositions = Arrays.copyOf(oldPositions, next * 2);
+          newPositions = Arrays.copyOf(newPositions, next * 2);
+        }
+        oldPositions[next] = 0;
+        newPositions[next] = 0;
+        oldListings.add(oldListing);
+        newListings.add(newListing);
+      }
+    }
+  }
+
+  /**
+   * Prints a line of the diff. A directory in both trees is only remembered; it is
+   * printed before the first difference found below it, and not at all if there is
+   * none.
+   */
+  private void emit(char marker, String name, boolean isDirectory, int depth) {
+    // A line at this depth or shallower ends the pending directories at its depth and deeper
+    printedDepth = Math.min(printedDepth, depth);
+    while (pendingDirectories.size() >= depth) {
+      pendingDirectories.remove(pendingDirectories.size() - 1);
+    }
+    if (marker == ' ') {
+      pendingDirectories.add(name);
+      return;
+    }
+    for (; printedDepth < depth; printedDepth++) {
+      writeLine(' ', pendingDirectories.get(printedDepth - 1), true, printedDepth);
+    }
+    writeLine(marker, name, isDirectory, depth);
+    // Lines below an entry only in one tree have no directories in both trees above them to print
+    printedDepth = depth + 1;
+    differences++;
+  }
+
+  /**
+   * Writes a line using the prebuilt prefix for its marker and depth, which holds the
+   * color code, the marker and the indentation.
+   */
+  private void writeLine(char marker, String name, boolean isDirectory, int depth) {
+    LinePrefixes prefixes;
+    if (marker == '+') {
+      prefixes = added;
+    } else if (marker == '-') {
+      prefixes = removed;
+    } else if (marker == '~') {
+      prefixes = changed;
+    } else {
+      prefixes = unchanged;
+    }
+    writer.writeLine(prefixes.get(depth), name, isDirectory ? "/" : "");
+  }
+}
@@ -0,0 +1,81 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TreeDiffTest {
+
+  private static void write(File file, String content) throws IOException {
+    try (PrintStream out = new PrintStream(file)) {
+      out.print(content);
+    }
+  }
+
+  @Test
+  void testPrintsOnlyDifferences(@TempDir File tempDir) throws IOException {
+    File oldRoot = new File(tempDir, "old");
+    File newRoot = new File(tempDir, "new");
+    for (File root : new File[] {oldRoot, newRoot}) {
+      assertTrue(new File(root, "docs/images").mkdirs());
+      assertTrue(new File(root, "same").mkdirs());
+      write(new File(root, "docs/images/Cat.png"), "cat");
+      write(new File(root, "same/a.txt"), "a");
+    }
+    write(new File(oldRoot, "docs/notes.txt"), "old notes");
+    write(new File(newRoot, "docs/notes.txt"), "new notes, longer");
+    write(new File(oldRoot, "docs/images/Dog.png"), "dog");
+    assertTrue(new File(newRoot, "lib").mkdir());
+    write(new File(newRoot, "lib/util.jar"), "jar");
+    write(new File(oldRoot, "switch"), "file");
+    assertTrue(new File(newRoot, "switch").mkdir());
+
+    String nl = System.lineSeparator();
+    String expected = "  new/" + nl
+        + "     docs/" + nl
+        + "        images/" + nl
+        + "-          Dog.png" + nl
+        + "~       notes.txt" + nl
+        + "+    lib/" + nl
+        + "+       util.jar" + nl
+        + "-    switch" + nl
+        + "+    switch/" + nl;
+
+    for (String threads : new String[] {"1", "3"}) {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      TruffulaOptions options = new TruffulaOptions(new String[] {"-p", threads, "-color", "never",
+          "-diff", oldRoot.getPath(), newRoot.getPath()});
+      int differences = new TreeDiff(options, options.getDiffRoot(), new PrintStream(baos)).print();
+      assertEquals(expected, baos.toString());
+      assertEquals(6, differences);
+    }
+  }
+
+  @Test
+  void testColorsEachLineAfterItsMarker(@TempDir File tempDir) throws IOException {
+    File oldRoot = new File(tempDir, "old");
+    File newRoot = new File(tempDir, "new");
+    assertTrue(new File(oldRoot, "a").mkdirs());
+    assertTrue(new File(newRoot, "a").mkdirs());
+    write(new File(oldRoot, "a/f"), "x");
+    write(new File(newRoot, "a/g"), "y");
+
+    String nl = System.lineSeparator();
+    String reset = ConsoleColor.RESET.getCode();
+    String expected = ConsoleColor.WHITE.getCode() + "  new/" + nl + reset
+        + TruffulaPrinter.DEFAULT_COLOR_SEQUENCE.get(1).getCode() + "     a/" + nl + reset
+        + ConsoleColor.RED.getCode() + "-       f" + nl + reset
+        + ConsoleColor.GREEN.getCode() + "+       g" + nl + reset;
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    TruffulaOptions options = new TruffulaOptions(new String[] {"-color", "basic",
+        "-diff", oldRoot.getPath(), newRoot.getPath()});
+    new TreeDiff(options, options.getDiffRoot(), new PrintStream(baos)).print();
+    assertEquals(expected, baos.toString());
+  }
+}
@@ -0,0 +1,353 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A persistent cache of directory listings for a single root directory.
+ * 
+ * For every directory that was listed, the index records the directory's lastModified
+ * time and its sorted children, including whether each child is a directory and
+ * whether it is hidden. When the same directory is listed again and its lastModified
+ * time has not changed, its children are replayed from the index instead of being
+ * read from disk. Adding, removing or renaming an entry changes the lastModified time
+ * of its directory, so only directories that actually changed are listed again.
+ * 
+ * The replayed children are File objects that answer isDirectory() and isHidden()
+ * from the index, and also record whether each subdirectory is a symbolic link, so
+ * printing a replayed directory does not touch its children either.
+ * 
+ * Example Usage:
+ * 
+ * TreeIndex index = TreeIndex.load(new File("tree.idx"), root);
+ * File[] children = index.listChildren(root);
+ * ...
+ * index.save();
+ * 
+ * The index is saved in a compact binary format: a header with the root's path,
+ * followed by one record per directory (path relative to the root, lastModified,
+ * time recorded, and the children's flags and names). An index file that is missing,
+ * unreadable, or was written for a different root is ignored.
+ * 
+ * The index is safe to use from several threads at once.
+ */
+public class TreeIndex {
+
+  private static final int MAGIC = 0x54524545; // "TREE"
+  private static final int VERSION = 2;
+
+  /**
+   * Listings recorded less than this long after the directory was modified are not
+   * trusted, since a further change within the same timestamp tick would go unnoticed.
+   */
+  private static final long MODIFICATION_GRANULARITY_MILLIS = 2000;
+
+  private static final int DIRECTORY_FLAG = 1;
+  private static final int HIDDEN_FLAG = 2;
+  private static final int LINK_FLAG = 4;
+
+  private final File indexFile;
+  private final File root;
+  private final String rootPath;
+
+  /**
+   * Listings loaded from the index file, keyed by path relative to the root.
+   */
+  private final Map<String, Listing> previous;
+
+  /**
+   * Listings used during this run, which are what gets saved.
+   */
+  private final Map<String, Listing> current = new ConcurrentHashMap<>();
+
+  private int replayedCount;
+  private int listedCount;
+
+  private TreeIndex(File indexFile, File root, Map<String, Listing> previous) {
+    this.indexFile = indexFile;
+    this.root = root;
+    this.rootPath = root.getAbsolutePath();
+    this.previous = previous;
+  }
+
+  /**
+   * Loads the index for the given root from a file. If the file does not exist, cannot
+   * be read, or belongs to a different root, an empty index is returned.
+   *
+   * @param indexFile the file the index is stored in
+   * @param root      the root directory of the tree
+   * @return the loaded index
+   */
+  public static TreeIndex load(File indexFile, File root) {
+    Map<String, Listing> listings = new ConcurrentHashMap<>();
+    if (indexFile.isFile()) {
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+        if (in.readInt() == MAGIC && in.readInt() == VERSION
+            && in.readUTF().equals(root.getAbsolutePath())) {
+          int directoryCount = in.readInt();
+          for (int i = 0; i < directoryCount; i++) {
+            String path = in.readUTF();
+            listings.put(path, Listing.read(in));
+          }
+        }
+      } catch (IOException e) {
+        // A damaged index is only a missed optimization; start over
+        listings.clear();
+      }
+    }
+    return new TreeIndex(indexFile, root, listings);
+  }
+
+  /**
+   * Creates an empty index for the given root that is only kept in memory. It cannot
+   * be saved; use next() to carry its listings over to another run.
+   *
+   * @param root the root directory of the tree
+   * @return an empty index
+   */
+  public static TreeIndex inMemory(File root) {
+    return new TreeIndex(null, root, new ConcurrentHashMap<>());
+  }
+
+  /**
+   * Returns an index for the next run over the same root, whose recorded listings are
+   * the ones used since this index was created. This is what saving and loading the
+   * index would produce, without going through the index file.
+   *
+   * @return the index for the next run
+   */
+  public TreeIndex next() {
+    return new TreeIndex(indexFile, root, new ConcurrentHashMap<>(current));
+  }
+
+  /**
+   * Returns all children of a directory, including hidden ones, sorted with
+   * AlphabeticalFileSorter. The children are replayed from the index if the
+   * directory has not been modified since it was recorded, and listed from disk
+   * otherwise.
+   *
+   * @param directory a directory within the root
+   * @return the sorted children, or an empty array if the directory cannot be read
+   */
+  public File[] listChildren(File directory) {
+    String key = keyFor(directory);
+    long lastModified = directory.lastModified();
+    Listing listing = previous.get(key);
+    if (listing != null && listing.lastModified == lastModified
+        && listing.recordedAt - lastModified >= MODIFICATION_GRANULARITY_MILLIS) {
+      synchronized (this) {
+        replayedCount++;
+      }
+    } else {
+      listing = Listing.of(directory, lastModified);
+      synchronized (this) {
+        listedCount++;
+      }
+    }
+    current.put(key, listing);
+    return listing.toFiles(directory);
+  }
+
+  /**
+   * Writes the listings used since the index was loaded to the index file. Directories
+   * that were not visited (for example because they were deleted) are dropped.
+   * 
+   * The index is written to a temporary file first and then renamed, so an interrupted
+   * save never leaves a truncated index behind.
+   *
+   * @throws IOException if the index cannot be written
+   * @throws IllegalStateException if the index is only kept in memory
+   */
+  public void save() throws IOException {
+    if (indexFile == null) {
+      throw new IllegalStateException("In-memory index cannot be saved");
+    }
+    File temp = new File(indexFile.getAbsoluteFile().getParentFile(), indexFile.getName() + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeUTF(rootPath);
+      out.writeInt(current.size());
+      for (Map.Entry<String, Listing> entry : current.entrySet()) {
+        out.writeUTF(entry.getKey());
+        entry.getValue().write(out);
+      }
+    }
+    indexFile.delete();
+    if (!temp.renameTo(indexFile)) {
+      throw new IOException("Could not replace " + indexFile);
+    }
+  }
+
+  /**
+   * Returns the number of directories whose children were replayed from the index.
+   *
+   * @return the number of replayed directories
+   */
+  public synchronized int getReplayedCount() {
+    return replayedCount;
+  }
+
+  /**
+   * Returns the number of directories whose children were listed from disk.
+   *
+   * @return the number of listed directories
+   */
+  public synchronized int getListedCount() {
+    return listedCount;
+  }
+
+  /**
+   * Returns the root directory of the index.
+   *
+   * @return the root directory
+   */
+  public File getRoot() {
+    return root;
+  }
+
+  private String keyFor(File directory) {
+    String path = directory.getAbsolutePath();
+    if (path.startsWith(rootPath)) {
+      return path.substring(rootPath.length());
+    }
+    return path;
+  }
+
+  /**
+   * The recorded children of one directory.
+   */
+  private static class Listing {
+    private final long lastModified;
+    private final long recordedAt;
+    private final String[] names;
+    private final byte[] flags;
+
+    private Listing(long lastModified, long recordedAt, String[] names, byte[] flags) {
+      this.lastModified = lastModified;
+      this.recordedAt = recordedAt;
+      this.names = names;
+      this.flags = flags;
+    }
+
+    static Listing of(File directory, long lastModified) {
+      long recordedAt = System.currentTimeMillis();
+      File[] children = directory.listFiles();
+      if (children == null) {
+        children = new File[0];
+      }
+      AlphabeticalFileSorter.sort(children);
+      String[] names = new String[children.length];
+      byte[] flags = new byte[children.length];
+      String canonicalPath = null;
+      for (int i = 0; i < children.length; i++) {
+        names[i] = children[i].getName();
+        boolean isDirectory = children[i].isDirectory();
+        if (isDirectory && canonicalPath == null) {
+          canonicalPath = canonicalPathOf(directory);
+        }
+        flags[i] = (byte) ((isDirectory ? DIRECTORY_FLAG : 0)
+            | (children[i].isHidden() ? HIDDEN_FLAG : 0)
+            | (isDirectory && isLink(canonicalPath, children[i]) ? LINK_FLAG : 0));
+      }
+      return new Listing(lastModified, recordedAt, names, flags);
+    }
+
+    /**
+     * Indicates whether a subdirectory is a symbolic link; one whose canonical path
+     * cannot be worked out is treated as one, so it is never descended into.
+     */
+    private static boolean isLink(String parentCanonicalPath, File directory) {
+      String canonicalPath = canonicalPathOf(directory);
+      return parentCanonicalPath.isEmpty() || canonicalPath.isEmpty()
+          || ListedFile.isLink(parentCanonicalPath, canonicalPath, directory.getName());
+    }
+
+    /**
+     * Returns a file's canonical path, or "" if it cannot be determined.
+     */
+    private static String canonicalPathOf(File file) {
+      try {
+        return file.getCanonicalPath();
+      } catch (IOException e) {
+        return "";
+      }
+    }
+
+    static Listing read(DataInputStream in) throws IOException {
+      long lastModified = in.readLong();
+      long recordedAt = in.readLong();
+      int count = in.readInt();
+      String[] names = new String[count];
+      byte[] flags = new byte[count];
+      for (int i = 0; i < count; i++) {
+        flags[i] = in.readByte();
+        names[i] = in.readUTF();
+      }
+      return new Listing(lastModified, recordedAt, names, flags);
+    }
+
+    void write(DataOutputStream out) throws IOException {
+      out.writeLong(lastModified);
+      out.writeLong(recordedAt);
+      out.writeInt(names.length);
+      for (int i = 0; i < names.length; i++) {
+        out.writeByte(flags[i]);
+        out.writeUTF(names[i]);
+      }
+    }
+
+    File[] toFiles(File directory) {
+      File[] files = new File[names.length];
+      for (int i = 0; i < names.length; i++) {
+        files[i] = new IndexedFile(directory, names[i], flags[i]);
+      }
+      return files;
+    }
+  }
+
+  /**
+   * A File whose type, hidden attribute and whether it is a link come from the index
+   * rather than the disk.
+   */
+  static class IndexedFile extends File {
+    private static final long serialVersionUID = 1L;
+
+    private final byte flags;
+
+    IndexedFile(File parent, String name, byte flags) {
+      super(parent, name);
+      this.flags = flags;
+    }
+
+    @Override
+    public boolean isDirectory() {
+      return (flags & DIRECTORY_FLAG) != 0;
+    }
+
+    @Override
+    public boolean isFile() {
+      return (flags & DIRECTORY_FLAG) == 0;
+    }
+
+    @Override
+    public boolean isHidden() {
+      return (flags & HIDDEN_FLAG) != 0;
+    }
+
+    /**
+     * Indicates whether the entry is a directory reached through a symbolic link.
+     *
+     * @return true if the index recorded the directory as a link; false otherwise
+     */
+    boolean isLink() {
+      return (flags & LINK_FLAG) != 0;
+    }
+  }
+}
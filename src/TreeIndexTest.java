@@ -0,0 +1,141 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TreeIndexTest {
+
+  /**
+   * Pretends the directory was last modified a while ago, so its listing is trusted.
+   */
+  private static void age(File directory) {
+    assertTrue(directory.setLastModified(System.currentTimeMillis() - 60_000));
+  }
+
+  private static String print(File root, File cacheFile) {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    String[] args = {"-cache", cacheFile.getPath(), root.getPath()};
+    try {
+      new TruffulaPrinter(new TruffulaOptions(args), new PrintStream(baos)).printTree();
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    }
+    return baos.toString();
+  }
+
+  @Test
+  void testUnchangedDirectoriesAreReplayed(@TempDir File tempDir) throws IOException {
+    File root = new File(tempDir, "root");
+    File docs = new File(root, "Documents");
+    File images = new File(docs, "images");
+    assertTrue(images.mkdirs());
+    new File(root, "zebra.txt").createNewFile();
+    new File(docs, "notes.txt").createNewFile();
+    new File(images, "Cat.png").createNewFile();
+    age(root);
+    age(docs);
+    age(images);
+    File cacheFile = new File(tempDir, "tree.idx");
+
+    TreeIndex first = TreeIndex.load(cacheFile, root);
+    first.listChildren(root);
+    first.listChildren(docs);
+    first.listChildren(images);
+    first.save();
+    assertEquals(3, first.getListedCount());
+
+    // A new file only changes the modification time of its own directory
+    new File(docs, "README.md").createNewFile();
+
+    TreeIndex second = TreeIndex.load(cacheFile, root);
+    File[] rootChildren = second.listChildren(root);
+    File[] docsChildren = second.listChildren(docs);
+    second.listChildren(images);
+    assertEquals(2, second.getReplayedCount());
+    assertEquals(1, second.getListedCount());
+    assertTrue(rootChildren[0].isDirectory());
+    assertEquals(3, docsChildren.length);
+  }
+
+  @Test
+  void testCachedOutputMatchesUncached(@TempDir File tempDir) throws IOException {
+    File root = new File(tempDir, "root");
+    File sub = new File(root, "sub");
+    assertTrue(sub.mkdirs());
+    new File(root, "b.txt").createNewFile();
+    new File(sub, "A.txt").createNewFile();
+    new File(root, ".hidden").createNewFile();
+    age(root);
+    age(sub);
+    File cacheFile = new File(tempDir, "tree.idx");
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    new TruffulaPrinter(new TruffulaOptions(root, false, true), new PrintStream(baos)).printTree();
+    String expected = baos.toString();
+
+    assertEquals(expected, print(root, cacheFile));
+    assertTrue(cacheFile.isFile());
+    assertEquals(expected, print(root, cacheFile));
+  }
+
+  @Test
+  void testIndexForOtherRootIsIgnored(@TempDir File tempDir) throws IOException {
+    File one = new File(tempDir, "one");
+    File two = new File(tempDir, "two");
+    assertTrue(one.mkdir());
+    assertTrue(two.mkdir());
+    age(one);
+    File cacheFile = new File(tempDir, "tree.idx");
+
+    TreeIndex index = TreeIndex.load(cacheFile, one);
+    index.listChildren(one);
+    index.save();
+
+    TreeIndex other = TreeIndex.load(cacheFile, two);
+    other.listChildren(two);
+    assertEquals(0, other.getReplayedCount());
+  }
+
+  @Test
+  void testReplayedLinksAreNotFollowed(@TempDir File tempDir) throws IOException {
+    File root = new File(tempDir, "root");
+    File docs = new File(root, "docs");
+    File external = new File(tempDir, "external");
+    assertTrue(docs.mkdirs());
+    assertTrue(external.mkdirs());
+    new File(external, "b.txt").createNewFile();
+    try {
+      Files.createSymbolicLink(new File(root, "ext").toPath(), external.toPath());
+    } catch (UnsupportedOperationException | IOException e) {
+      // Symbolic links are not available (e.g. Windows without privileges)
+      return;
+    }
+    age(root);
+    age(docs);
+    File cacheFile = new File(tempDir, "tree.idx");
+
+    String first = print(root, cacheFile);
+    String nl = System.lineSeparator();
+    assertTrue(first.contains("ext/" + nl));
+    assertFalse(first.contains("b.txt"));
+
+    // The link flag is stored, so the replayed listing needs no canonical lookups
+    TreeIndex index = TreeIndex.load(cacheFile, root);
+    File[] children = index.listChildren(root);
+    assertEquals(1, index.getReplayedCount());
+    assertEquals("docs", children[0].getName());
+    assertFalse(((TreeIndex.IndexedFile) children[0]).isLink());
+    assertEquals("ext", children[1].getName());
+    assertTrue(((TreeIndex.IndexedFile) children[1]).isLink());
+
+    assertEquals(first, print(root, cacheFile));
+  }
+}
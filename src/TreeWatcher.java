@@ -0,0 +1,343 @@
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Keeps an in-memory model of a directory tree up to date by polling, and prints
+ * what changed.
+ * 
+ * The model records every visible directory's lastModified time and its sorted,
+ * filtered children. Each call to poll() checks the lastModified time of every
+ * directory in the model, which is one cheap check per directory, and only lists the
+ * directories that changed. New subdirectories are walked and added to the model;
+ * removed ones are dropped along with everything below them.
+ *
+ * The model can be recorded from the listings a TruffulaPrinter makes while printing
+ * the tree, so a watched tree is only walked once at startup.
+ * 
+ * Changes are printed one per line as a diff, with the path relative to the root's
+ * parent and a slash after directories:
+ * 
+ * + myFolder/Documents/new.txt
+ * - myFolder/old/
+ * 
+ * Added entries are green and removed entries are red (white if color is disabled).
+ * Removing a directory prints only the directory; adding one prints it and everything
+ * below it.
+ * 
+ * Only java.io is used, so changes are detected by polling rather than by file system
+ * notifications.
+ *
+ * Walks over the model keep explicit stacks rather than recursing, so deep trees
+ * cannot overflow the thread's stack.
+ */
+public class TreeWatcher {
+
+  /**
+   * Listings taken less than this long after a directory was modified are checked again
+   * on the next poll, since another change within the same timestamp tick would not
+   * change lastModified.
+   */
+  private static final long MODIFICATION_GRANULARITY_MILLIS = 2000;
+
+  /**
+   * The recorded state of one directory.
+   */
+  private static class DirectoryState {
+    private final long lastModified;
+    private final boolean settled;
+    private final File[] children;
+    private final boolean[] isDirectory;
+
+    DirectoryState(long lastModified, long listedAt, File[] children) {
+      this.lastModified = lastModified;
+      this.settled = listedAt - lastModified >= MODIFICATION_GRANULARITY_MILLIS;
+      this.children = children;
+      this.isDirectory = new boolean[children.length];
+      for (int i = 0; i < children.length; i++) {
+        isDirectory[i] = children[i].isDirectory();
+      }
+    }
+  }
+
+  private final File root;
+  private final int maxDepth;
+  private final Function<File, File[]> lister;
+  private final ColorPrinter out;
+  private final boolean useColor;
+  private final Map<File, DirectoryState> model = new HashMap<>();
+  private final Map<File, Integer> depths = new HashMap<>();
+
+  /**
+   * Listings recorded while a printer printed the tree, until the model is built from
+   * them; null once it has been, or if the tree was walked to build the model.
+   */
+  private Map<File, DirectoryState> recorded;
+
+  /**
+   * Constructs a TreeWatcher and records the current state of the tree.
+   *
+   * @param options   the options used to print the tree; hidden files, exclude patterns
+   *                  and the depth limit are respected
+   * @param outStream the stream changes are printed to
+   */
+  public TreeWatcher(TruffulaOptions options, PrintStream outStream) {
+    this(options, outStream, null);
+  }
+
+  /**
+   * Constructs a TreeWatcher that records the tree from the listings a printer makes
+   * while printing it, rather than walking the tree itself. The model is built from
+   * them on the first call to poll() or getDirectoryCount(), so the tree must have
+   * been printed by then; directories the printer did not list are listed then.
+   * Each recorded listing keeps the lastModified time read before it was made, so
+   * changes made while the tree was printed are reported by the first poll.
+   *
+   * @param options   the options used to print the tree; hidden files, exclude patterns
+   *                  and the depth limit are respected
+   * @param outStream the stream changes are printed to
+   * @param printer   the printer that will print the tree, or null to record the
+   *                  current state of the tree now
+   */
+  public TreeWatcher(TruffulaOptions options, PrintStream outStream, TruffulaPrinter printer) {
+    this.root = options.getRoot();
+    this.maxDepth = options.getMaxDepth();
+    this.lister = TruffulaPrinter.lister(options, root)::listChildren;
+    this.out = new ColorPrinter(outStream, ConsoleColor.WHITE, options.getColorSupport());
+    this.useColor = options.isUseColor();
+    if (printer != null) {
+      Map<File, DirectoryState> listings = new ConcurrentHashMap<>();
+      printer.setListingRecorder((directory, lastModified, listedAt, children) ->
+          listings.put(directory, new DirectoryState(lastModified, listedAt, children)));
+      recorded = listings;
+    } else {
+      addSubtree(root, 0, null);
+    }
+  }
+
+  /**
+   * Checks every directory in the model for changes, updates the model and prints
+   * the changes.
+   *
+   * @return the number of added and removed entries printed
+   */
+  public int poll() {
+    buildModel();
+    List<String> changes = new ArrayList<>();
+    pollTree(changes);
+    for (String change : changes) {
+      out.setCurrentColor(!useColor ? ConsoleColor.WHITE
+          : change.startsWith("+") ? ConsoleColor.GREEN : ConsoleColor.RED);
+      out.println(change);
+    }
+    out.flush();
+    return changes.size();
+  }
+
+  /**
+   * Returns the number of directories in the model.
+   *
+   * @return the number of directories being watched
+   */
+  public int getDirectoryCount() {
+    buildModel();
+    return model.size();
+  }
+
+  /**
+   * Builds the model from the recorded listings, if it has not been built yet.
+   */
+  private void buildModel() {
+    if (recorded != null) {
+      addSubtree(root, 0, null);
+      recorded = null;
+    }
+  }
+
+  /**
+   * Checks every directory in the model, each before the subdirectories it still has,
+   * in tree order.
+   */
+  private void pollTree(List<String> changes) {
+    DirectoryState rootState = pollDirectory(root, changes);
+    if (rootState == null) {
+      return;
+    }
+    List<DirectoryState> states = new ArrayList<>();
+    int[] positions = new int[16];
+    states.add(rootState);
+    while (!states.isEmpty()) {
+      int top = states.size() - 1;
+      DirectoryState state = states.get(top);
+      if (positions[top] == state.children.length) {
+        states.remove(top);
+        continue;
+      }
+      int i = positions[top]++;
+      if (state.isDirectory[i]) {
+        DirectoryState child = pollDirectory(state.children[i], changes);
+        if (child != null) {
+          if (states.size() == positions.length) {
+            positions = Arrays.copyOf(positions, positions.length * 2);
+          }
+          positions[states.size()] = 0;
+          states.add(child);
+        }
+      }
+    }
+  }
+
+  /**
+   * Checks one directory, listing it again if it may have changed.
+   *
+   * @return the directory's current state, or null if it is not in the model
+   */
+  private DirectoryState pollDirectory(File directory, List<String> changes) {
+    DirectoryState state = model.get(directory);
+    if (state != null && (!state.settled || directory.lastModified() != state.lastModified)) {
+      state = relist(directory, state, changes);
+    }
+    return state;
+  }
+
+  /**
+   * Lists a directory again and merges the old and new sorted listings to find
+   * what was added and removed.
+   */
+  private DirectoryState relist(File directory, DirectoryState old, List<String> changes) {
+    int depth = depths.get(directory);
+    DirectoryState current = list(directory);
+    model.put(directory, current);
+
+    int o = 0;
+    int n = 0;
+    while (o < old.children.length || n < current.children.length) {
+      int order;
+      if (o == old.children.length) {
+        order = 1;
+      } else if (n == current.children.length) {
+        order = -1;
+      } else {
+        order = AlphabeticalFileSorter.compareNames(old.children[o].getName(), current.children[n].getName());
+        if (order == 0 && old.isDirectory[o] != current.isDirectory[n]) {
+          // Replaced by an entry of the other type: report it as removed, then added
+          changes.add(describe("- ", old.children[o], old.isDirectory[o]));
+          removeSubtree(old.children[o], old.isDirectory[o]);
+          o++;
+          order = 1;
+        }
+      }
+      if (order < 0) {
+        changes.add(describe("- ", old.children[o], old.isDirectory[o]));
+        removeSubtree(old.children[o], old.isDirectory[o]);
+        o++;
+      } else if (order > 0) {
+        changes.add(describe("+ ", current.children[n], current.isDirectory[n]));
+        if (current.isDirectory[n]) {
+          addSubtree(current.children[n], depth + 1, changes);
+        }
+        n++;
+      } else {
+        o++;
+        n++;
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Adds a directory and everything below it to the model, reporting every entry
+   * below it as added if changes is not null.
+   */
+  private void addSubtree(File directory, int depth, List<String> changes) {
+    List<DirectoryState> states = new ArrayList<>();
+    int[] positions = new int[16];
+    states.add(record(directory, depth));
+    while (!states.isEmpty()) {
+      int top = states.size() - 1;
+      DirectoryState state = states.get(top);
+      if (positions[top] == state.children.length) {
+        states.remove(top);
+        continue;
+      }
+      int i = positions[top]++;
+      if (changes != null) {
+        changes.add(describe("+ ", state.children[i], state.isDirectory[i]));
+      }
+      if (state.isDirectory[i]) {
+        if (states.size() == positions.length) {
+          positions = Arrays.copyOf(positions, positions.length * 2);
+        }
+        positions[states.size()] = 0;
+        states.add(record(state.children[i], depth + top + 1));
+      }
+    }
+  }
+
+  /**
+   * Lists a directory, or takes its recorded listing, and adds it to the model.
+   */
+  private DirectoryState record(File directory, int depth) {
+    depths.put(directory, depth);
+    DirectoryState state = recorded != null ? recorded.remove(directory) : null;
+    if (state == null) {
+      state = list(directory);
+    }
+    model.put(directory, state);
+    return state;
+  }
+
+  /**
+   * Removes a directory and everything below it from the model.
+   */
+  private void removeSubtree(File file, boolean isDirectory) {
+    if (!isDirectory) {
+      return;
+    }
+    List<File> directories = new ArrayList<>();
+    directories.add(file);
+    while (!directories.isEmpty()) {
+      File directory = directories.remove(directories.size() - 1);
+      DirectoryState state = model.remove(directory);
+      depths.remove(directory);
+      if (state != null) {
+        for (int i = 0; i < state.children.length; i++) {
+          if (state.isDirectory[i]) {
+            directories.add(state.children[i]);
+          }
+        }
+      }
+    }
+  }
+
+  private DirectoryState list(File directory) {
+    int depth = depths.get(directory);
+    if (depth >= maxDepth) {
+      return new DirectoryState(directory.lastModified(), System.currentTimeMillis(), new File[0]);
+    }
+    // Read the time first, so a change during the listing is seen on the next poll
+    long lastModified = directory.lastModified();
+    long listedAt = System.currentTimeMillis();
+    return new DirectoryState(lastModified, listedAt, lister.apply(directory));
+  }
+
+  private String describe(String sign, File file, boolean isDirectory) {
+    String path = relativePath(file);
+    return sign + (isDirectory ? path + "/" : path);
+  }
+
+  private String relativePath(File file) {
+    String rootPath = root.getPath();
+    String path = file.getPath();
+    if (path.startsWith(rootPath)) {
+      return root.getName() + path.substring(rootPath.length()).replace(File.separatorChar, '/');
+    }
+    return path;
+  }
+}
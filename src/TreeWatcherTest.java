@@ -0,0 +1,77 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TreeWatcherTest {
+
+  @Test
+  void testReportsAddedAndRemovedEntries(@TempDir File tempDir) throws IOException {
+    File root = new File(tempDir, "myFolder");
+    File docs = new File(root, "Documents");
+    File old = new File(root, "old");
+    assertTrue(docs.mkdirs());
+    assertTrue(old.mkdirs());
+    new File(docs, "notes.txt").createNewFile();
+    new File(old, "stale.txt").createNewFile();
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    TreeWatcher watcher = new TreeWatcher(new TruffulaOptions(root, false, false), new PrintStream(baos));
+    assertEquals(3, watcher.getDirectoryCount());
+    assertEquals(0, watcher.poll());
+    assertEquals("", baos.toString());
+
+    File images = new File(docs, "images");
+    assertTrue(images.mkdir());
+    new File(images, "Cat.png").createNewFile();
+    new File(docs, "apple.txt").createNewFile();
+    new File(docs, ".hidden").createNewFile();
+    assertTrue(new File(old, "stale.txt").delete());
+    assertTrue(old.delete());
+
+    assertEquals(4, watcher.poll());
+    String nl = System.lineSeparator();
+    String white = ConsoleColor.WHITE.getCode();
+    String reset = ConsoleColor.RESET.getCode();
+    // Parents are checked before their subdirectories
+    String expected = white + "- myFolder/old/" + nl + reset
+        + white + "+ myFolder/Documents/apple.txt" + nl + reset
+        + white + "+ myFolder/Documents/images/" + nl + reset
+        + white + "+ myFolder/Documents/images/Cat.png" + nl + reset;
+    assertEquals(expected, baos.toString());
+    assertEquals(3, watcher.getDirectoryCount());
+
+    baos.reset();
+    assertEquals(0, watcher.poll());
+    assertEquals("", baos.toString());
+  }
+
+  @Test
+  void testRecordsModelFromPrintedListings(@TempDir File tempDir) throws IOException {
+    File root = new File(tempDir, "myFolder");
+    File docs = new File(root, "Documents");
+    assertTrue(docs.mkdirs());
+    new File(docs, "notes.txt").createNewFile();
+
+    TruffulaOptions options = new TruffulaOptions(root, false, false);
+    ByteArrayOutputStream tree = new ByteArrayOutputStream();
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    TruffulaPrinter printer = new TruffulaPrinter(options, new PrintStream(tree));
+    TreeWatcher watcher = new TreeWatcher(options, new PrintStream(baos), printer);
+    printer.printTree();
+
+    // Made after printing but before the model is built; a fresh walk would miss it
+    new File(docs, "apple.txt").createNewFile();
+    assertEquals(2, watcher.getDirectoryCount());
+    assertEquals(1, watcher.poll());
+    String expected = ConsoleColor.WHITE.getCode() + "+ myFolder/Documents/apple.txt" + System.lineSeparator()
+        + ConsoleColor.RESET.getCode();
+    assertEquals(expected, baos.toString());
+  }
+}
@@ -0,0 +1,121 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+
+/**
+ * Forwards command-line arguments to a running TruffulaServer and copies its output
+ * to this process's streams.
+ * 
+ * Example Usage:
+ * 
+ * int status = TruffulaClient.run(7878, args, System.out, System.err);
+ * 
+ * Arguments naming files (the paths, and the values of -cache, -diff, -roots and -o)
+ * are made absolute before they are sent, so they mean the same thing they would for
+ * a local run.
+ *
+ * Every request starts with the server's token, read from the token file the server
+ * wrote for its port, so only a user who can read that file can use the server.
+ */
+public class TruffulaClient {
+
+  private TruffulaClient() {
+  }
+
+  /**
+   * Sends the arguments to the server on the given loopback port, with the token
+   * from its file in ~/.truffula, and copies the response to the given streams.
+   *
+   * @param port the port the server listens on
+   * @param args command-line arguments in the format described by TruffulaOptions.USAGE
+   * @param out  the stream standard output is copied to
+   * @param err  the stream standard error is copied to
+   * @return the exit status reported by the server
+   * @throws IOException if the token cannot be read, the server cannot be reached or
+   *         the connection is lost
+   */
+  public static int run(int port, String[] args, PrintStream out, PrintStream err) throws IOException {
+    return run(port, TruffulaServer.defaultTokenDirectory(), args, out, err);
+  }
+
+  /**
+   * Sends the arguments to the server on the given loopback port, with the token
+   * from its file in the given directory, and copies the response to the given
+   * streams.
+   *
+   * @param port           the port the server listens on
+   * @param tokenDirectory the directory the server wrote its token file to
+   * @param args           command-line arguments in the format described by
+   *                       TruffulaOptions.USAGE
+   * @param out            the stream standard output is copied to
+   * @param err            the stream standard error is copied to
+   * @return the exit status reported by the server
+   * @throws IOException if the token cannot be read, the server cannot be reached or
+   *         the connection is lost
+   */
+  public static int run(int port, File tokenDirectory, String[] args, PrintStream out, PrintStream err)
+      throws IOException {
+    String token = readToken(TruffulaServer.tokenFile(tokenDirectory, port), port);
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+      DataOutputStream request = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      request.writeUTF(token);
+      request.writeInt(args.length);
+      for (int i = 0; i < args.length; i++) {
+        String previous = i > 0 ? args[i - 1] : "";
+        boolean isFile = (!args[i].startsWith("-") && !TruffulaOptions.takesValue(previous))
+            || previous.equals("-cache") || previous.equals("-diff") || previous.equals("-roots")
+            || previous.equals("-o");
+        request.writeUTF(isFile ? new File(args[i]).getAbsolutePath() : args[i]);
+      }
+      request.flush();
+
+      DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      byte[] buffer = new byte[AnsiWriter.DEFAULT_BUFFER_SIZE];
+      while (true) {
+        int kind;
+        try {
+          kind = in.readByte();
+        } catch (EOFException e) {
+          throw new IOException("Server closed the connection before finishing", e);
+        }
+        int value = in.readInt();
+        if (kind == TruffulaServer.EXIT) {
+          out.flush();
+          err.flush();
+          return value;
+        }
+        PrintStream target = kind == TruffulaServer.STDERR ? err : out;
+        while (value > 0) {
+          int read = Math.min(value, buffer.length);
+          in.readFully(buffer, 0, read);
+          target.write(buffer, 0, read);
+          value -= read;
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads the token a server wrote to its token file.
+   *
+   * @throws IOException if the file does not exist or cannot be read
+   */
+  private static String readToken(File file, int port) throws IOException {
+    try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+      String token = reader.readLine();
+      return token == null ? "" : token.strip();
+    } catch (FileNotFoundException e) {
+      throw new IOException("No server token in " + file.getPath() + "; is a server running on port " + port + "?", e);
+    }
+  }
+}
@@ -1,5 +1,10 @@
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Represents configuration options for controlling how a directory tree is displayed.
@@ -14,19 +19,106 @@ import java.io.FileNotFoundException;
  * 
  * Usage Example:
  * 
- * Arguments Format: [-h] [-nc] path
+ * Arguments Format: [-h] [-nc] [-color mode] [-compact] [-p threads] [-spill entries] [-cache file]
+ *                   [-L depth] [-x pattern]... [-i pattern]... [-vt listings]
+ *                   [-format text|ndjson|json] [-du] [-stats] [-watch seconds]
+ *                   [-top count] [-by size|modified] [-follow] [-diff path]
+ *                   [-roots file] [-o file] [-archives] [-page] path...
  * 
  * Flags:
  * - -h   : Show hidden files (defaults to false).
  * - -nc  : Do not use color (color is enabled by default).
+ * - -color: Which escape codes to write: never, basic (the eight ANSI colors), 256
+ *          (the xterm 256-color palette), truecolor (24-bit color) or auto. auto, the
+ *          default, uses what the terminal was detected to support, which is never when
+ *          output is redirected to a file or pipe, when NO_COLOR is set or when TERM is
+ *          dumb. With never, no escape codes are written at all, even with -nc.
+ * - -compact: Only write color codes when the color changes between lines. The output
+ *          looks the same in a terminal but is considerably smaller.
+ * - -p   : Number of threads used to list directories (defaults to 1).
+ *          A value greater than 1 lists subdirectories in parallel; the printed
+ *          output is identical either way.
+ * - -spill: Stream the tree, keeping at most this many sorted names in memory for each
+ *          directory being printed. Directories with more entries are sorted in
+ *          chunks spilled to temporary files. Each directory's raw listing is still
+ *          read whole, one directory at a time. Cannot be combined with -p.
+ * - -cache: Keep an index of directory listings in this file. On later runs, only
+ *          directories whose modification time changed are listed again. Cannot be
+ *          combined with -spill.
+ * - -L   : Only descend this many levels below the root. Deeper directories are
+ *          printed but never listed.
+ * - -x   : Leave out files and directories whose name matches this glob pattern
+ *          (for example node_modules, .git or *.class). Excluded directories are never
+ *          listed. May be given more than once. A pattern containing '/' is matched
+ *          against the path below the root instead, one glob per name, where **
+ *          matches any number of directories (for example build/tmp).
+ * - -i   : Only print files matching this glob pattern, along with the directories
+ *          leading to them. Like -x, a pattern containing '/' is matched against the
+ *          path below the root (for example src/main/*.java), and directories that
+ *          cannot contain a match are never listed. May be given more than once; a
+ *          file matching any of them is printed.
+ * - -vt  : List directories on virtual threads, with at most this many listings in
+ *          flight. Suited to network file systems where each listing is slow.
+ *          Cannot be combined with -p or -spill.
+ * - -format: The output format (defaults to text). ndjson prints one JSON object per
+ *          entry with its path, depth, type and size; json prints one nested document.
+ *          Color flags are ignored for the JSON formats.
+ * - -du  : Annotate every directory with the total size and number of files below it,
+ *          and print a summary for the root. Totals are computed during the same walk;
+ *          a directory's lines are held back until its subtree has been walked, so
+ *          it cannot be combined with -spill, whose memory bound this would break.
+ * - -stats: Print counters and timings for listing, sorting and output to standard
+ *          error after the tree.
+ * - -watch: After printing the tree, check it for changes every this many seconds and
+ *          print added and removed entries until interrupted. Each check only lists
+ *          directories whose modification time changed. Requires the text format.
+ * - -top : Instead of the tree, print only this many of the largest files below the
+ *          root, largest first, with their sizes. Files are ranked while walking, so
+ *          memory use depends on the count rather than the size of the tree. Cannot be
+ *          combined with -spill, -vt, -cache, -du, -watch or a JSON format.
+ * - -by  : What -top ranks files by: size (the default) or modified, for the most
+ *          recently modified files first.
+ * - -follow: Descend into symbolically linked directories. Each directory is only
+ *          walked once, so links back to an ancestor and several links to the same
+ *          directory are printed but not descended into again. Without this flag,
+ *          linked directories are printed as entries without contents. Cannot be
+ *          combined with -watch.
+ * - -diff: Instead of the tree, print only what differs between the tree at this path
+ *          (the old tree) and the tree at the main path (the new tree): entries only in
+ *          one of them and files whose size differs, with the directories leading to
+ *          them. Cannot be combined with -spill, -vt, -cache, -du, -stats, -watch, -top,
+ *          -follow or a JSON format.
+ * - -roots: Also print the directories listed in this file, one path per line. Blank
+ *          lines and lines starting with # are ignored. Relative paths are resolved
+ *          against the directory containing the file. The roots are added where the
+ *          flag appears among the paths.
+ * - -o   : Write the output to this file instead of standard output. If the name ends
+ *          in .gz, the output is compressed with GZIP as it is written. The file is
+ *          written (and compressed) on a background thread while the tree is walked.
+ *          No escape codes are written unless -color asks for them. Cannot be combined
+ *          with -watch.
+ * - -archives: Print the contents of .zip and .jar files as subtrees, with the usual
+ *          sorting, colors, filtering and depth limit. Only each archive's central
+ *          directory is read; nothing is extracted or decompressed. Entry sizes are the
+ *          uncompressed sizes the archive records. Cannot be combined with -watch.
+ * - -page: Show the output a screenful at a time when it goes to a terminal, waiting
+ *          for Enter before each next page (q quits). The screen height comes from
+ *          the LINES environment variable (24 rows if unset). Directories are listed
+ *          on background threads in the order they are printed, a bounded number
+ *          ahead of the output, and lines are shown as soon as they are known, so the
+ *          first page appears quickly however large the tree is. Cannot be combined
+ *          with -spill, -vt, -o or -watch.
  * 
  * Path:
  * - The absolute or relative path to the directory whose contents will be printed.
+ * - More than one path may be given. The trees are walked concurrently on one shared
+ *   pool and printed one after another in the order given. More than one root cannot
+ *   be combined with -spill, -cache, -watch, -diff or the json format.
  * 
  * Behavior:
  * - If color is disabled, all text will be printed in white.
  * - The order of flags is unimportant.
- * - The path argument is mandatory.
+ * - A path argument (or -roots) is mandatory, and the last argument is always a path.
  * 
  * Examples:
  * 
@@ -42,6 +134,8 @@ import java.io.FileNotFoundException;
  * Exceptions:
  * - Throws IllegalArgumentException if:
  *     - Unknown flags are provided.
+ *     - A flag that takes a value is missing it, or the value is invalid.
+ *     - Flags that cannot be combined are both provided.
  *     - The path argument is missing.
  * 
  * - Throws FileNotFoundException if:
@@ -49,9 +143,38 @@ import java.io.FileNotFoundException;
  *     - The path points to a file instead of a directory.
  */
 public class TruffulaOptions  {
+  /**
+   * Short usage string describing the accepted arguments.
+   */
+  public static final String USAGE = "[-h] [-nc] [-color mode] [-compact] [-p threads] [-spill entries] [-cache file]"
+      + " [-L depth] [-x pattern]... [-i pattern]... [-vt listings] [-format text|ndjson|json]"
+      + " [-du] [-stats] [-watch seconds] [-top count] [-by size|modified] [-follow]"
+      + " [-diff path] [-roots file] [-o file] [-archives] [-page] path...";
+
   private final File root;
+  private final List<File> roots;
   private final boolean showHidden;
   private final boolean useColor;
+  private final boolean compactColor;
+  private final ColorSupport colorSupport;
+  private final int parallelism;
+  private final int spillThreshold;
+  private final File cacheFile;
+  private final int maxDepth;
+  private final List<String> excludePatterns;
+  private final List<String> includePatterns;
+  private final int virtualThreadListings;
+  private final OutputFormat format;
+  private final boolean aggregateSizes;
+  private final boolean collectStats;
+  private final int watchIntervalSeconds;
+  private final int topCount;
+  private final TopEntries.Key topKey;
+  private final boolean followLinks;
+  private final File diffRoot;
+  private final File outputFile;
+  private final boolean expandArchives;
+  private final boolean paged;
 
   /**
    * Returns the root directory from which the directory tree will be printed.
@@ -62,6 +185,25 @@ public class TruffulaOptions  {
     return root;
   }
 
+  /**
+   * Returns every root directory to print, in order. The first one is getRoot().
+   *
+   * @return the root directories, never empty
+   */
+  public List<File> getRoots() {
+    return roots;
+  }
+
+  /**
+   * Returns a copy of these options for printing only the given root.
+   *
+   * @param root the root directory
+   * @return the options for that root alone
+   */
+  public TruffulaOptions forRoot(File root) {
+    return new TruffulaOptions(this, root);
+  }
+
   /**
    * Indicates whether hidden files should be included when printing the directory tree.
    *
@@ -71,9 +213,238 @@ public class TruffulaOptions  {
     return showHidden;
   }
 
+  /**
+   * Indicates whether color codes should only be written when the color changes
+   * between consecutive lines, rather than around every line.
+   *
+   * @return true if color codes should be elided when repeated; false otherwise
+   */
+  public boolean isCompactColor() {
+    return compactColor;
+  }
+
+  /**
+   * Returns which escape codes are written. With ColorSupport.NONE none are, whether
+   * or not color is used.
+   *
+   * @return the color level of the output
+   */
+  public ColorSupport getColorSupport() {
+    return colorSupport;
+  }
+
+  /**
+   * Returns the number of threads used to list directories while printing the tree.
+   * 
+   * A value of 1 means the tree is walked sequentially on the calling thread.
+   *
+   * @return the traversal parallelism, always at least 1
+   */
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Returns the maximum number of entries of a single directory kept in memory while
+   * streaming the tree. Larger directories are sorted using temporary files.
+   *
+   * @return the spill threshold, or 0 if the tree is not streamed
+   */
+  public int getSpillThreshold() {
+    return spillThreshold;
+  }
+
+  /**
+   * Indicates whether the tree should be streamed with bounded memory.
+   *
+   * @return true if a spill threshold was given; false otherwise
+   */
+  public boolean isStreaming() {
+    return spillThreshold > 0;
+  }
+
+  /**
+   * Returns the file in which directory listings are cached between runs.
+   *
+   * @return the cache file, or null if listings are not cached
+   */
+  public File getCacheFile() {
+    return cacheFile;
+  }
+
+  /**
+   * Returns the maximum depth below the root that is printed. Directories at this
+   * depth are printed but their contents are not.
+   *
+   * @return the maximum depth, or Integer.MAX_VALUE if there is no limit
+   */
+  public int getMaxDepth() {
+    return maxDepth;
+  }
+
+  /**
+   * Returns the glob patterns of names that are left out of the tree, along with
+   * everything below them.
+   *
+   * @return the exclude patterns, possibly empty
+   */
+  public List<String> getExcludePatterns() {
+    return excludePatterns;
+  }
+
+  /**
+   * Returns the glob patterns of files to print. If there are any, only matching
+   * files and the directories leading to them are printed.
+   *
+   * @return the include patterns, possibly empty
+   */
+  public List<String> getIncludePatterns() {
+    return includePatterns;
+  }
+
+  /**
+   * Returns the maximum number of directory listings in flight when listing on
+   * virtual threads.
+   *
+   * @return the listing limit, or 0 if virtual threads are not used
+   */
+  public int getVirtualThreadListings() {
+    return virtualThreadListings;
+  }
+
+  /**
+   * Indicates whether directories should be listed on virtual threads.
+   *
+   * @return true if a virtual thread listing limit was given; false otherwise
+   */
+  public boolean isUseVirtualThreads() {
+    return virtualThreadListings > 0;
+  }
+
+  /**
+   * Returns the format the tree is printed in.
+   *
+   * @return the output format
+   */
+  public OutputFormat getFormat() {
+    return format;
+  }
+
+  /**
+   * Indicates whether directories should be annotated with their cumulative size
+   * and file count.
+   *
+   * @return true if sizes should be aggregated; false otherwise
+   */
+  public boolean isAggregateSizes() {
+    return aggregateSizes;
+  }
+
+  /**
+   * Indicates whether traversal counters and timings should be collected and reported.
+   *
+   * @return true if stats should be collected; false otherwise
+   */
+  public boolean isCollectStats() {
+    return collectStats;
+  }
+
+  /**
+   * Returns how often the tree is checked for changes after it has been printed.
+   *
+   * @return the interval in seconds, or 0 if the tree is not watched
+   */
+  public int getWatchIntervalSeconds() {
+    return watchIntervalSeconds;
+  }
+
+  /**
+   * Indicates whether the tree should be watched for changes after it has been printed.
+   *
+   * @return true if a watch interval was given; false otherwise
+   */
+  public boolean isWatch() {
+    return watchIntervalSeconds > 0;
+  }
+
+  /**
+   * Returns the number of files to print in a top entries report instead of the tree.
+   *
+   * @return the number of files, or 0 to print the tree
+   */
+  public int getTopCount() {
+    return topCount;
+  }
+
+  /**
+   * Returns what files are ranked by in a top entries report.
+   *
+   * @return the ranking key
+   */
+  public TopEntries.Key getTopKey() {
+    return topKey;
+  }
+
+  /**
+   * Indicates whether symbolically linked directories should be descended into.
+   *
+   * @return true if links should be followed; false otherwise
+   */
+  public boolean isFollowLinks() {
+    return followLinks;
+  }
+
+  /**
+   * Returns the root of the tree to compare the root against, if only the
+   * differences should be printed.
+   *
+   * @return the old tree's root, or null to print the tree
+   */
+  public File getDiffRoot() {
+    return diffRoot;
+  }
+
+  /**
+   * Returns the file the output is written to instead of standard output.
+   *
+   * @return the output file, or null to write to standard output
+   */
+  public File getOutputFile() {
+    return outputFile;
+  }
+
+  /**
+   * Indicates whether .zip and .jar files should be printed with their contents, as
+   * if they were directories.
+   *
+   * @return true if archives should be expanded; false otherwise
+   */
+  public boolean isExpandArchives() {
+    return expandArchives;
+  }
+
+  /**
+   * Indicates whether output should be shown a page at a time, listing directories
+   * ahead of printing so the first lines appear quickly.
+   *
+   * @return true if output should be paged; false otherwise
+   */
+  public boolean isPaged() {
+    return paged;
+  }
+
   @Override
   public String toString() {
-    return "TruffulaOptions [root=" + root + ", showHidden=" + showHidden + ", useColor=" + useColor + "]";
+    return "TruffulaOptions [roots=" + roots + ", showHidden=" + showHidden + ", useColor=" + useColor
+        + ", colorSupport=" + colorSupport + ", compactColor=" + compactColor + ", parallelism=" + parallelism
+        + ", spillThreshold=" + spillThreshold + ", cacheFile=" + cacheFile
+        + ", maxDepth=" + maxDepth + ", excludePatterns=" + excludePatterns
+        + ", includePatterns=" + includePatterns + ", virtualThreadListings=" + virtualThreadListings
+        + ", format=" + format
+        + ", aggregateSizes=" + aggregateSizes + ", collectStats=" + collectStats
+        + ", watchIntervalSeconds=" + watchIntervalSeconds + ", topCount=" + topCount
+        + ", topKey=" + topKey + ", followLinks=" + followLinks + ", diffRoot=" + diffRoot
+        + ", outputFile=" + outputFile + ", expandArchives=" + expandArchives + ", paged=" + paged + "]";
   }
 
   /**
@@ -93,18 +464,333 @@ public class TruffulaOptions  {
    * Supported Flags:
    * - -h   : Show hidden files (defaults to false).
    * - -nc  : Do not use color (uses color by default).
+   * - -color: Write escape codes for never, basic, 256, truecolor or auto (the terminal).
+   * - -compact: Only write color codes when the color changes between lines.
+   * - -p   : Number of threads used to list directories (defaults to 1).
+   * - -spill: Stream with bounded memory, spilling directories larger than this many entries.
+   * - -cache: Cache directory listings in this file between runs.
+   * - -L   : Only descend this many levels below the root.
+   * - -x   : Leave out names (or paths, if the pattern has a '/') matching this glob
+   *          pattern (may be repeated).
+   * - -i   : Only print files whose name or path matches this glob pattern (may be repeated).
+   * - -vt  : List directories on virtual threads, at most this many at once.
+   * - -format: Print as text (default), ndjson or json.
+   * - -du  : Annotate directories with their total size and file count.
+   * - -stats: Report traversal counters and timings to standard error.
+   * - -watch: Check for changes every this many seconds and print them.
+   * - -top : Print only this many of the largest (or newest) files instead of the tree.
+   * - -by  : Rank -top files by size (default) or modified.
+   * - -follow: Descend into symbolically linked directories, each directory only once.
+   * - -diff: Print only the differences from the tree at this path.
+   * - -roots: Also print the directories listed in this file, one per line, relative
+   *          to the file's directory.
+   * - -o   : Write the output to this file, compressed with GZIP if it ends in .gz.
+   * - -archives: Print the contents of .zip and .jar files as subtrees.
+   * - -page: Show the output a screenful at a time, listing ahead in the background.
+   * 
+   * Every other argument is the path to a directory to print, and the last argument
+   * must be one.
    * 
-   * The last argument must be the path to the directory.
+   * Output is assumed to support the basic ANSI colors unless -color says otherwise.
    * 
-   * @param args command-line arguments in the format [-h] [-nc] path
+   * @param args command-line arguments in the format described by USAGE
    * @throws IllegalArgumentException if unknown arguments are provided or the path is missing
    * @throws FileNotFoundException if the directory cannot be found or if the path points to a file
    */
   public TruffulaOptions(String[] args) throws IllegalArgumentException, FileNotFoundException {
-    // TODO: Replace the below lines with your implementation
-    root = null;
-    showHidden = false;
-    useColor = false;
+    this(args, ColorSupport.BASIC);
+  }
+
+  /**
+   * Constructs a TruffulaOptions object based on command-line arguments, for output
+   * that supports the given color level. The flags are as for TruffulaOptions(String[]).
+   * 
+   * @param args     command-line arguments in the format described by USAGE
+   * @param terminal what standard output supports, e.g. from ColorSupport.detect();
+   *                 used unless -color names a level or -o names an output file. If
+   *                 null, ColorSupport.detect() is only called when it is used.
+   * @throws IllegalArgumentException if unknown arguments are provided or the path is missing
+   * @throws FileNotFoundException if the directory cannot be found or if the path points to a file
+   */
+  public TruffulaOptions(String[] args, ColorSupport terminal) throws IllegalArgumentException, FileNotFoundException {
+    if (args.length == 0) {
+      throw new IllegalArgumentException("Missing path argument");
+    }
+
+    boolean hidden = false;
+    boolean color = true;
+    boolean compact = false;
+    // Left null for auto, which is resolved once it is known whether -o was given
+    ColorSupport colors = null;
+    int threads = 1;
+    int spill = 0;
+    File cache = null;
+    int depth = Integer.MAX_VALUE;
+    List<String> excludes = new ArrayList<>();
+    List<String> includes = new ArrayList<>();
+    int listings = 0;
+    OutputFormat outputFormat = OutputFormat.TEXT;
+    boolean sizes = false;
+    boolean stats = false;
+    int watch = 0;
+    int top = 0;
+    TopEntries.Key key = null;
+    boolean follow = false;
+    File diff = null;
+    File output = null;
+    boolean archives = false;
+    boolean page = false;
+    List<String> paths = new ArrayList<>();
+
+    // Arguments not starting with '-' (and not a flag's value) are paths
+    for (int i = 0; i < args.length; i++) {
+      String arg = args[i];
+      if (!arg.startsWith("-")) {
+        paths.add(arg);
+      } else if (arg.equals("-h")) {
+        hidden = true;
+      } else if (arg.equals("-nc")) {
+        color = false;
+      } else if (arg.equals("-color")) {
+        String mode = parseValue(arg, args, ++i);
+        colors = mode.equalsIgnoreCase("auto") ? null : ColorSupport.fromName(mode);
+      } else if (arg.equals("-compact")) {
+        compact = true;
+      } else if (arg.equals("-p")) {
+        threads = parsePositiveInt(arg, args, ++i);
+      } else if (arg.equals("-spill")) {
+        spill = parsePositiveInt(arg, args, ++i);
+      } else if (arg.equals("-cache")) {
+        cache = new File(parseValue(arg, args, ++i));
+      } else if (arg.equals("-L")) {
+        depth = parsePositiveInt(arg, args, ++i);
+      } else if (arg.equals("-x") || arg.equals("-i")) {
+        String pattern = parseValue(arg, args, ++i);
+        if (pattern.isEmpty()) {
+          throw new IllegalArgumentException("Empty pattern for " + arg);
+        }
+        if (PathPattern.isPathPattern(pattern)) {
+          // Parsed here so a malformed pattern is reported like any other bad value
+          new PathPattern(pattern);
+        }
+        (arg.equals("-x") ? excludes : includes).add(pattern);
+      } else if (arg.equals("-vt")) {
+        listings = parsePositiveInt(arg, args, ++i);
+      } else if (arg.equals("-format")) {
+        outputFormat = OutputFormat.fromName(parseValue(arg, args, ++i));
+      } else if (arg.equals("-du")) {
+        sizes = true;
+      } else if (arg.equals("-stats")) {
+        stats = true;
+      } else if (arg.equals("-watch")) {
+        watch = parsePositiveInt(arg, args, ++i);
+      } else if (arg.equals("-top")) {
+        top = parsePositiveInt(arg, args, ++i);
+      } else if (arg.equals("-by")) {
+        key = TopEntries.Key.fromName(parseValue(arg, args, ++i));
+      } else if (arg.equals("-follow")) {
+        follow = true;
+      } else if (arg.equals("-diff")) {
+        diff = new File(parseValue(arg, args, ++i));
+      } else if (arg.equals("-o")) {
+        output = new File(parseValue(arg, args, ++i));
+      } else if (arg.equals("-archives")) {
+        archives = true;
+      } else if (arg.equals("-page")) {
+        page = true;
+      } else if (arg.equals("-roots")) {
+        // The roots file may be the last argument, as it names paths itself
+        if (++i == args.length) {
+          throw new IllegalArgumentException("Missing value for " + arg);
+        }
+        paths.addAll(readRoots(new File(args[i])));
+      } else {
+        throw new IllegalArgumentException("Unknown argument: " + arg);
+      }
+    }
+
+    if (spill > 0 && threads > 1) {
+      throw new IllegalArgumentException("-spill cannot be combined with -p");
+    }
+    if (spill > 0 && cache != null) {
+      throw new IllegalArgumentException("-spill cannot be combined with -cache");
+    }
+    if (sizes && spill > 0) {
+      throw new IllegalArgumentException("-du cannot be combined with -spill");
+    }
+    if (listings > 0 && (threads > 1 || spill > 0)) {
+      throw new IllegalArgumentException("-vt cannot be combined with -p or -spill");
+    }
+    if (watch > 0 && outputFormat != OutputFormat.TEXT) {
+      throw new IllegalArgumentException("-watch requires the text format");
+    }
+    if (top > 0 && (spill > 0 || listings > 0 || cache != null || sizes || watch > 0
+        || outputFormat != OutputFormat.TEXT)) {
+      throw new IllegalArgumentException(
+          "-top cannot be combined with -spill, -vt, -cache, -du, -watch or a JSON format");
+    }
+    if (key != null && top == 0) {
+      throw new IllegalArgumentException("-by requires -top");
+    }
+    if (follow && watch > 0) {
+      throw new IllegalArgumentException("-follow cannot be combined with -watch");
+    }
+    if (diff != null && (spill > 0 || listings > 0 || cache != null || sizes || stats || watch > 0 || top > 0
+        || follow || outputFormat != OutputFormat.TEXT)) {
+      throw new IllegalArgumentException(
+          "-diff cannot be combined with -spill, -vt, -cache, -du, -stats, -watch, -top, -follow or a JSON format");
+    }
+
+    if (output != null && watch > 0) {
+      throw new IllegalArgumentException("-o cannot be combined with -watch");
+    }
+    if (archives && watch > 0) {
+      throw new IllegalArgumentException("-archives cannot be combined with -watch");
+    }
+    if (page && (spill > 0 || listings > 0 || output != null || watch > 0)) {
+      throw new IllegalArgumentException("-page cannot be combined with -spill, -vt, -o or -watch");
+    }
+    if (paths.isEmpty()) {
+      throw new IllegalArgumentException("Missing path argument");
+    }
+    if (paths.size() > 1 && (spill > 0 || cache != null || watch > 0 || diff != null
+        || outputFormat == OutputFormat.JSON)) {
+      throw new IllegalArgumentException(
+          "More than one root cannot be combined with -spill, -cache, -watch, -diff or the json format");
+    }
+
+    List<File> directories = new ArrayList<>();
+    for (String path : paths) {
+      File directory = new File(path);
+      if (!directory.exists()) {
+        throw new FileNotFoundException("Directory not found: " + path);
+      }
+      if (!directory.isDirectory()) {
+        throw new FileNotFoundException("Not a directory: " + path);
+      }
+      directories.add(directory);
+    }
+    if (diff != null && !diff.isDirectory()) {
+      throw new FileNotFoundException((diff.exists() ? "Not a directory: " : "Directory not found: ") + diff.getPath());
+    }
+
+    roots = List.copyOf(directories);
+    root = roots.get(0);
+    showHidden = hidden;
+    useColor = color;
+    compactColor = compact;
+    if (colors != null) {
+      colorSupport = colors;
+    } else if (output != null) {
+      colorSupport = ColorSupport.NONE;
+    } else {
+      colorSupport = terminal != null ? terminal : ColorSupport.detect();
+    }
+    parallelism = threads;
+    spillThreshold = spill;
+    cacheFile = cache;
+    maxDepth = depth;
+    excludePatterns = List.copyOf(excludes);
+    includePatterns = List.copyOf(includes);
+    virtualThreadListings = listings;
+    format = outputFormat;
+    aggregateSizes = sizes;
+    collectStats = stats;
+    watchIntervalSeconds = watch;
+    topCount = top;
+    topKey = key != null ? key : TopEntries.Key.SIZE;
+    followLinks = follow;
+    diffRoot = diff;
+    outputFile = output;
+    expandArchives = archives;
+    paged = page;
+  }
+
+  /**
+   * Reads the root paths listed in a file, one per line, skipping blank lines and
+   * lines starting with #. Relative paths are resolved against the file's directory,
+   * so a roots file means the same thing wherever it is used from.
+   *
+   * @param file the file listing the roots
+   * @return the paths, in order
+   * @throws FileNotFoundException if the file does not exist
+   * @throws IllegalArgumentException if the file cannot be read
+   */
+  private static List<String> readRoots(File file) throws FileNotFoundException {
+    List<String> paths = new ArrayList<>();
+    try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        line = line.strip();
+        if (!line.isEmpty() && !line.startsWith("#")) {
+          File root = new File(line);
+          paths.add(root.isAbsolute() ? line : new File(file.getParentFile(), line).getPath());
+        }
+      }
+    } catch (FileNotFoundException e) {
+      throw new FileNotFoundException("Roots file not found: " + file.getPath());
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Cannot read roots file " + file.getPath() + ": " + e.getMessage());
+    }
+    return paths;
+  }
+
+  /**
+   * Indicates whether a flag takes a value, i.e. whether the argument after it is the
+   * flag's value rather than a path or another flag.
+   *
+   * @param flag the argument
+   * @return true if the flag takes a value; false otherwise
+   */
+  public static boolean takesValue(String flag) {
+    switch (flag) {
+      case "-color", "-p", "-spill", "-cache", "-L", "-x", "-i", "-vt", "-format", "-watch", "-top", "-by",
+          "-diff", "-roots", "-o":
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Returns the value following a flag.
+   * 
+   * The value must come before the final (path) argument.
+   *
+   * @param flag  the flag the value belongs to, used in error messages
+   * @param args  all command-line arguments
+   * @param index the index of the value within args
+   * @return the value
+   * @throws IllegalArgumentException if the value is missing
+   */
+  private static String parseValue(String flag, String[] args, int index) {
+    if (index >= args.length - 1) {
+      throw new IllegalArgumentException("Missing value for " + flag);
+    }
+    return args[index];
+  }
+
+  /**
+   * Parses the value following a flag as a positive integer.
+   *
+   * @param flag  the flag the value belongs to, used in error messages
+   * @param args  all command-line arguments
+   * @param index the index of the value within args
+   * @return the parsed value
+   * @throws IllegalArgumentException if the value is missing, not a number, or less than 1
+   */
+  private static int parsePositiveInt(String flag, String[] args, int index) {
+    String text = parseValue(flag, args, index);
+    int value;
+    try {
+      value = Integer.parseInt(text);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid value for " + flag + ": " + text);
+    }
+    if (value < 1) {
+      throw new IllegalArgumentException("Value for " + flag + " must be at least 1: " + value);
+    }
+    return value;
   }
 
   /**
@@ -115,8 +801,75 @@ public class TruffulaOptions  {
    * @param useColor   whether color should be used in the output
    */
   public TruffulaOptions(File root, boolean showHidden, boolean useColor) {
+    this(root, showHidden, useColor, 1);
+  }
+
+  /**
+   * Constructs a TruffulaOptions object with explicit values.
+   * 
+   * @param root        the root directory for the directory tree
+   * @param showHidden  whether hidden files should be displayed
+   * @param useColor    whether color should be used in the output
+   * @param parallelism the number of threads used to list directories (at least 1)
+   * @throws IllegalArgumentException if parallelism is less than 1
+   */
+  public TruffulaOptions(File root, boolean showHidden, boolean useColor, int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be at least 1: " + parallelism);
+    }
     this.root = root;
+    this.roots = List.of(root);
     this.showHidden = showHidden;
     this.useColor = useColor;
+    this.compactColor = false;
+    this.colorSupport = ColorSupport.BASIC;
+    this.parallelism = parallelism;
+    this.spillThreshold = 0;
+    this.cacheFile = null;
+    this.maxDepth = Integer.MAX_VALUE;
+    this.excludePatterns = List.of();
+    this.includePatterns = List.of();
+    this.virtualThreadListings = 0;
+    this.format = OutputFormat.TEXT;
+    this.aggregateSizes = false;
+    this.collectStats = false;
+    this.watchIntervalSeconds = 0;
+    this.topCount = 0;
+    this.topKey = TopEntries.Key.SIZE;
+    this.followLinks = false;
+    this.diffRoot = null;
+    this.outputFile = null;
+    this.expandArchives = false;
+    this.paged = false;
+  }
+
+  /**
+   * Copies options for a single root.
+   */
+  private TruffulaOptions(TruffulaOptions other, File root) {
+    this.root = root;
+    this.roots = List.of(root);
+    this.showHidden = other.showHidden;
+    this.useColor = other.useColor;
+    this.compactColor = other.compactColor;
+    this.colorSupport = other.colorSupport;
+    this.parallelism = other.parallelism;
+    this.spillThreshold = other.spillThreshold;
+    this.cacheFile = other.cacheFile;
+    this.maxDepth = other.maxDepth;
+    this.excludePatterns = other.excludePatterns;
+    this.includePatterns = other.includePatterns;
+    this.virtualThreadListings = other.virtualThreadListings;
+    this.format = other.format;
+    this.aggregateSizes = other.aggregateSizes;
+    this.collectStats = other.collectStats;
+    this.watchIntervalSeconds = other.watchIntervalSeconds;
+    this.topCount = other.topCount;
+    this.topKey = other.topKey;
+    this.followLinks = other.followLinks;
+    this.diffRoot = other.diffRoot;
+    this.outputFile = other.outputFile;
+    this.expandArchives = other.expandArchives;
+    this.paged = other.paged;
   }
 }
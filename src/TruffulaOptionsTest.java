@@ -1,5 +1,6 @@
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.File;
@@ -26,4 +27,72 @@ public class TruffulaOptionsTest {
     assertTrue(options.isShowHidden());
     assertFalse(options.isUseColor());
   }
+
+  @Test
+  void testParallelismFlag(@TempDir File tempDir) throws FileNotFoundException {
+    String[] args = {"-p", "8", tempDir.getAbsolutePath()};
+
+    TruffulaOptions options = new TruffulaOptions(args);
+
+    assertEquals(8, options.getParallelism());
+    assertTrue(options.isUseColor());
+    assertFalse(options.isShowHidden());
+  }
+
+  @Test
+  void testColorFlag(@TempDir File tempDir) throws FileNotFoundException {
+    String path = tempDir.getAbsolutePath();
+
+    assertEquals(ColorSupport.BASIC, new TruffulaOptions(new String[] {path}).getColorSupport());
+    assertEquals(ColorSupport.NONE, new TruffulaOptions(new String[] {path}, ColorSupport.NONE).getColorSupport());
+    assertEquals(ColorSupport.TRUECOLOR,
+        new TruffulaOptions(new String[] {"-color", "truecolor", path}, ColorSupport.NONE).getColorSupport());
+    assertEquals(ColorSupport.PALETTE_256,
+        new TruffulaOptions(new String[] {"-color", "auto", path}, ColorSupport.PALETTE_256).getColorSupport());
+    assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(new String[] {"-color", "bright", path}));
+    // Without a known terminal, it is only detected when no level is given
+    assertEquals(ColorSupport.detect(), new TruffulaOptions(new String[] {path}, null).getColorSupport());
+    assertEquals(ColorSupport.TRUECOLOR,
+        new TruffulaOptions(new String[] {"-color", "truecolor", path}, null).getColorSupport());
+
+    String output = new File(tempDir, "tree.txt").getPath();
+    assertEquals(ColorSupport.NONE,
+        new TruffulaOptions(new String[] {"-o", output, path}, ColorSupport.TRUECOLOR).getColorSupport());
+    assertEquals(ColorSupport.BASIC,
+        new TruffulaOptions(new String[] {"-o", output, "-color", "basic", path}).getColorSupport());
+    assertThrows(IllegalArgumentException.class,
+        () -> new TruffulaOptions(new String[] {"-o", output, "-watch", path}));
+    assertThrows(IllegalArgumentException.class,
+        () -> new TruffulaOptions(new String[] {"-page", "-o", output, path}));
+  }
+
+  @Test
+  void testInvalidArguments(@TempDir File tempDir) {
+    String path = tempDir.getAbsolutePath();
+
+    assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(new String[] {}));
+    assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(new String[] {"-q", path}));
+    assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(new String[] {"-p", path}));
+    assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(new String[] {"-p", "0", path}));
+    assertThrows(IllegalArgumentException.class,
+        () -> new TruffulaOptions(new String[] {"-p", "2", "-spill", "100", path}));
+    assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(new String[] {"-by", "size", path}));
+    assertThrows(IllegalArgumentException.class,
+        () -> new TruffulaOptions(new String[] {"-top", "5", "-by", "name", path}));
+    assertThrows(IllegalArgumentException.class,
+        () -> new TruffulaOptions(new String[] {"-top", "5", "-cache", new File(tempDir, "tree.idx").getPath(), path}));
+    assertThrows(IllegalArgumentException.class,
+        () -> new TruffulaOptions(new String[] {"-page", "-spill", "100", path}));
+    assertThrows(IllegalArgumentException.class,
+        () -> new TruffulaOptions(new String[] {"-page", "-vt", "8", path}));
+    assertThrows(IllegalArgumentException.class,
+        () -> new TruffulaOptions(new String[] {"-du", "-spill", "100", path}));
+    assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(new String[] {"-i", "src//a", path}));
+    assertThrows(IllegalArgumentException.class,
+        () -> new TruffulaOptions(new String[] {"-diff", path, "-du", path}));
+    assertThrows(FileNotFoundException.class,
+        () -> new TruffulaOptions(new String[] {"-diff", new File(tempDir, "missing").getPath(), path}));
+    assertThrows(FileNotFoundException.class,
+        () -> new TruffulaOptions(new String[] {new File(tempDir, "missing").getAbsolutePath()}));
+  }
 }
@@ -1,5 +1,15 @@
+import java.io.File;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * TruffulaPrinter is responsible for printing a directory tree structure
@@ -7,6 +17,23 @@ import java.util.List;
  * in a case-insensitive manner and cycling through colors for visual clarity.
  */
 public class TruffulaPrinter {
+
+  /**
+   * Receives the directory listings a printer makes, so a TreeWatcher can start from
+   * them instead of walking the tree again.
+   */
+  public interface ListingRecorder {
+    /**
+     * Takes one listing. May be called from several threads at once.
+     *
+     * @param directory    the directory that was listed
+     * @param lastModified the directory's lastModified time, read before it was listed
+     * @param listedAt     when it was listed
+     * @param children     the sorted visible children; the array must not be modified
+     */
+    void record(File directory, long lastModified, long listedAt, File[] children);
+  }
+
   
   /**
    * Configuration options that determine how the tree is printed.
@@ -23,13 +50,93 @@ public class TruffulaPrinter {
    */
   private ColorPrinter out;
 
+  /**
+   * The buffered writer behind out, used directly for tree lines.
+   */
+  private final AnsiWriter writer;
+
+  /**
+   * The encoded color code and indentation for each depth.
+   */
+  private final LinePrefixes prefixes;
+
+  /**
+   * The compiled exclude and include patterns.
+   */
+  private final EntryFilter filter;
+
+  /**
+   * The directory path patterns are matched relative to: the options' root, unless
+   * this printer was made by lister() for another tree.
+   */
+  private File filterRoot;
+
+  /**
+   * With include patterns, the directories on the path to the last printed line,
+   * indexed by depth. A directory's line is held back until a file below it is
+   * printed, so directories without a match are never printed.
+   */
+  private final List<File> pendingDirectories = new ArrayList<>();
+
+  /**
+   * The number of pendingDirectories, from the root down, whose lines were printed.
+   */
+  private int printedDepth;
+
+  /**
+   * The JSON writer used when printing in a JSON format, or null when printing text.
+   */
+  private final JsonTreeWriter json;
+
+  /**
+   * Adds up directory sizes while a tree is printed with size totals, or null.
+   */
+  private SizeAggregator sizes;
+
+  /**
+   * Counters and timings for the last printed tree, or null if not collecting stats.
+   */
+  private TraversalStats stats;
+
+  /**
+   * The canonical paths of the directories walked so far when following symbolic
+   * links, or null.
+   */
+  private VisitedDirectories visited;
+
+  /**
+   * A pool shared with other printers to list directories on when the options ask for
+   * parallel listing, or null to create one for each tree.
+   */
+  private ForkJoinPool listingPool;
+
+  /**
+   * The index of cached directory listings while a tree is being printed, or null.
+   */
+  private TreeIndex index;
+
+  /**
+   * Receives every sorted listing made while printing, or null.
+   */
+  private ListingRecorder recorder;
+
   /**
    * Default color sequence used when no custom colors are provided.
    */
-  private static final List<ConsoleColor> DEFAULT_COLOR_SEQUENCE = List.of(
+  static final List<ConsoleColor> DEFAULT_COLOR_SEQUENCE = List.of(
       ConsoleColor.WHITE, ConsoleColor.PURPLE, ConsoleColor.YELLOW
   );
 
+  /**
+   * Indentation added for each directory level.
+   */
+  static final String INDENT = "   ";
+
+  /**
+   * The most directories listed ahead of printing when paging.
+   */
+  private static final int PAGED_LOOKAHEAD = 256;
+
   /**
    * Constructs a TruffulaPrinter with the given options, using the default
    * output stream and the default color sequence.
@@ -72,7 +179,51 @@ public class TruffulaPrinter {
   public TruffulaPrinter(TruffulaOptions options, PrintStream outStream, List<ConsoleColor> colorSequence) {
     this.options = options;
     this.colorSequence = colorSequence;
-    out = new ColorPrinter(outStream);
+    filter = new EntryFilter(options.getExcludePatterns(), options.getIncludePatterns());
+    filterRoot = options.getRoot();
+    writer = new AnsiWriter(outStream, AnsiWriter.DEFAULT_BUFFER_SIZE, options.isCompactColor(),
+        options.getColorSupport());
+    out = new ColorPrinter(outStream, ConsoleColor.WHITE, writer);
+    prefixes = new LinePrefixes(colorSequence, options.isUseColor(), INDENT, options.getColorSupport());
+    if (options.getFormat() != OutputFormat.TEXT) {
+      json = new JsonTreeWriter(outStream, options.getFormat(), AnsiWriter.DEFAULT_BUFFER_SIZE);
+    } else {
+      json = null;
+    }
+  }
+
+  /**
+   * Returns a printer that never prints, for its filtered, sorted listings of the
+   * tree below root through listChildren. The root need not be the options' root;
+   * path patterns are matched relative to it.
+   *
+   * @param options the options whose filters and sort order apply
+   * @param root    the root of the tree that will be listed
+   * @return the printer
+   */
+  static TruffulaPrinter lister(TruffulaOptions options, File root) {
+    TruffulaPrinter printer = new TruffulaPrinter(options, new PrintStream(PrintStream.nullOutputStream()));
+    printer.filterRoot = root;
+    return printer;
+  }
+
+  /**
+   * Lists directories on the given pool, rather than a pool of its own, when the
+   * options ask for parallel listing. The pool is not shut down by the printer.
+   *
+   * @param pool the pool to share, or null
+   */
+  void setListingPool(ForkJoinPool pool) {
+    listingPool = pool;
+  }
+
+  /**
+   * Hands every directory listing made while printing to a recorder.
+   *
+   * @param listingRecorder the recorder, or null
+   */
+  void setListingRecorder(ListingRecorder listingRecorder) {
+    recorder = listingRecorder;
   }
 
   /**
@@ -101,18 +252,818 @@ public class TruffulaPrinter {
    *       notes.txt
    *       README.md
    *    zebra.txt
+   *
+   * If the options ask for streaming, each line is printed as soon as it is known and
+   * large directories are sorted using temporary files. java.io cannot list a
+   * directory a name at a time, so each directory's raw listing is still read into
+   * one array; it is dropped once its names are in the sorter. Memory use is then
+   * bounded by the largest single directory's listing, plus at most the spill
+   * threshold's worth of names for each directory being printed; the rest wait in
+   * spill runs on disk.
+   *
+   * Output is buffered and flushed once the tree has been printed. If the options ask
+   * for compact color, color codes are only written when the color changes. The codes
+   * are those of the options' ColorSupport, and with ColorSupport.NONE each line is
+   * written as plain text.
+   *
+   * If the options ask for a JSON format, the same entries are written as NDJSON
+   * records or as one nested JSON document instead of text.
+   *
+   * If the options ask for size totals, every directory is annotated with the total
+   * size and number of files below it, and a summary line is printed for the root.
+   *
+   * If the options ask for stats, counters and timings are collected and available
+   * from getStats() afterwards.
+   *
+   * Directories can be listed in parallel on a fork/join pool or on virtual threads;
+   * either way the output is the same as the sequential walk.
+   *
+   * Directories deeper than the maximum depth, and anything matching an exclude
+   * pattern, are never listed.
+   *
+   * If the options give include patterns, only matching files are printed, along with
+   * the directories leading to them. Directories that cannot contain a match for any
+   * path include pattern are never listed.
+   *
+   * If the options name a cache file, directory listings are replayed from it for
+   * directories that have not been modified, and the cache is updated afterwards.
+   *
+   * If the options ask for archives to be expanded, .zip and .jar files are printed
+   * as directories holding their entries; see ArchiveEntry.
+   *
+   * If the options ask for paging, directories are listed ahead of printing in print
+   * order, a bounded number at a time, and output is flushed whenever printing has to
+   * wait for a listing, so every line reaches the pager as soon as it is known.
+   *
+   * @throws UncheckedIOException if streaming and a temporary file cannot be used,
+   *         or if the cache file cannot be written
    */
   public void printTree() {
-    // TODO: Implement this!
-    // REQUIRED: ONLY use java.io, DO NOT use java.nio
-    
-    // Hints:
-    // - Add a recursive helper method
-    // - For Wave 6: Use AlphabeticalFileSorter
-    // DO NOT USE SYSTEM.OUT.PRINTLN
-    // USE out.println instead (will use your ColorPrinter)
-
-    out.println("printTree was called!");
-    out.println("My options are: " + options);
+    TreeIndex cache = null;
+    if (options.getCacheFile() != null) {
+      cache = TreeIndex.load(options.getCacheFile(), options.getRoot());
+    }
+    printTree(cache);
+    if (cache != null) {
+      try {
+        cache.save();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  /**
+   * Prints the tree as described for printTree(), replaying directory listings from
+   * the given index instead of the options' cache file. The index is updated with the
+   * listings used but is not saved, which lets a long-running process keep one index
+   * in memory across many trees.
+   * 
+   * The index is not used when streaming.
+   *
+   * @param listingIndex the index to list directories through, or null to list
+   *                     every directory from disk
+   * @throws UncheckedIOException if streaming and a temporary file cannot be used
+   */
+  public void printTree(TreeIndex listingIndex) {
+    printTree(listingIndex, null);
+  }
+
+  /**
+   * Lists the whole tree into a CompactTree without printing anything. Hidden files,
+   * exclude and include patterns and the depth limit are applied as they would be when
+   * printing. Directories without a matching file are still in the tree; they are left
+   * out when it is printed.
+   *
+   * @return the tree below the options' root
+   */
+  public CompactTree buildCompactTree() {
+    startWalk();
+    try {
+      return CompactTree.build(options.getRoot(), options.getMaxDepth(), this::listChildren);
+    } finally {
+      visited = null;
+    }
+  }
+
+  /**
+   * Prints a tree that was already listed by buildCompactTree(), without touching the
+   * file system except to read file sizes when the options ask for size totals. The
+   * output is the same as printTree() for the tree as it was when it was built.
+   *
+   * @param tree the tree to print
+   */
+  public void printTree(CompactTree tree) {
+    printTree(null, tree);
+  }
+
+  /**
+   * Prints the tree, either by walking the file system or from a prebuilt tree.
+   *
+   * @param listingIndex the index to list directories through, or null
+   * @param tree         the prebuilt tree to print, or null to walk the file system
+   */
+  private void printTree(TreeIndex listingIndex, CompactTree tree) {
+    File root = options.getRoot();
+    index = listingIndex;
+    startWalk();
+    if (options.isAggregateSizes()) {
+      sizes = new SizeAggregator(this::emitLine);
+    }
+    if (options.isCollectStats()) {
+      stats = new TraversalStats();
+    }
+    try {
+      if (tree != null) {
+        printCompactTree(tree);
+      } else if (options.isStreaming()) {
+        printLine(root, true, 0);
+        printChildrenStreaming(root, 1);
+      } else if (options.isUseVirtualThreads()) {
+        try (ParallelTreeWalker walker = ParallelTreeWalker.virtualThreads(options.getVirtualThreadListings(),
+            options.getMaxDepth(), this::listChildren)) {
+          printNode(walker.walk(root), 0);
+        }
+      } else if (options.isPaged() && listingPool == null) {
+        int threads = options.getParallelism() > 1
+            ? options.getParallelism() : Runtime.getRuntime().availableProcessors();
+        try (ParallelTreeWalker walker = ParallelTreeWalker.prefetching(threads, PAGED_LOOKAHEAD,
+            options.getMaxDepth(), this::listChildren)) {
+          printNode(walker.walk(root), 0);
+        }
+      } else if (options.getParallelism() > 1) {
+        try (ParallelTreeWalker walker = listingPool != null
+            ? ParallelTreeWalker.forkJoin(listingPool, options.getMaxDepth(), this::listChildren)
+            : ParallelTreeWalker.forkJoin(options.getParallelism(), options.getMaxDepth(), this::listChildren)) {
+          printNode(walker.walk(root), 0);
+        }
+      } else {
+        printLine(root, true, 0);
+        printChildren(root, 1);
+      }
+      if (sizes != null) {
+        sizes.finish();
+        if (json == null) {
+          printSummary(sizes.getRootTotals());
+        }
+      }
+      if (json != null) {
+        json.finish(sizes != null ? sizes.getRootTotals() : null);
+      }
+    } finally {
+      long flushStart = System.nanoTime();
+      out.flush();
+      if (stats != null) {
+        stats.recordFlush(System.nanoTime() - flushStart);
+      }
+      index = null;
+      sizes = null;
+      visited = null;
+    }
+  }
+
+  /**
+   * Prints the largest or most recently modified files below the root instead of the
+   * tree, best first, one per line: the size or modification time, then the path
+   * starting at the root's name.
+   * 
+   *   1.5 MiB  myFolder/Documents/images/Cat.png
+   *  12.0 KiB  myFolder/notes.txt
+   * 
+   * Hidden files, exclude and include patterns and the depth limit apply as they do to
+   * the tree.
+   * Directories are listed without sorting, and only the best files are kept while
+   * walking; see TopEntries. With a parallelism above 1, directories are listed on
+   * that many threads, or on the shared listing pool if one was set.
+   */
+  public void printTopEntries() {
+    if (options.isCollectStats()) {
+      stats = new TraversalStats();
+    }
+    startWalk();
+    try {
+      TopEntries top = listingPool != null && options.getParallelism() > 1
+          ? TopEntries.collect(options.getRoot(), options.getTopCount(), options.getTopKey(),
+              options.getMaxDepth(), listingPool, this::listChildrenUnsorted)
+          : TopEntries.collect(options.getRoot(), options.getTopCount(), options.getTopKey(),
+              options.getMaxDepth(), options.getParallelism(), this::listChildrenUnsorted);
+      String rootPath = options.getRoot().getPath();
+      String rootName = options.getRoot().getName();
+      // Created here rather than statically so ordinary runs never load java.time
+      DateTimeFormatter timestamps = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss", Locale.ROOT)
+          .withZone(ZoneId.systemDefault());
+      for (int i = 0; i < top.size(); i++) {
+        String path = top.getFile(i).getPath();
+        if (path.startsWith(rootPath)) {
+          path = rootName + path.substring(rootPath.length()).replace(File.separatorChar, '/');
+        }
+        String key = options.getTopKey() == TopEntries.Key.SIZE
+            ? String.format(Locale.ROOT, "%10s", formatSize(top.getKey(i)))
+            : timestamps.format(Instant.ofEpochMilli(top.getKey(i)));
+        writer.writeLine(prefixes.get(0), key, "  " + path);
+      }
+    } finally {
+      out.flush();
+      visited = null;
+    }
+  }
+
+  /**
+   * Returns the counters and timings collected during the last call to printTree.
+   *
+   * @return the stats, or null if the options do not ask for stats
+   */
+  public TraversalStats getStats() {
+    return stats;
+  }
+
+  /**
+   * Prints every node of a CompactTree in order. Nodes are numbered in print order,
+   * so this follows first-child and next-sibling links, climbing back up through the
+   * parents after the last child of each directory; the only per-depth state is the
+   * File of each open directory, which is needed to make each line's File.
+   *
+   * @param tree the tree to print
+   */
+  private void printCompactTree(CompactTree tree) {
+    List<File> directories = new ArrayList<>();
+    directories.add(tree.getRoot());
+    printLine(tree.getRoot(), true, 0);
+    int node = tree.getFirstChild(0);
+    int depth = 1;
+    while (node != CompactTree.NONE) {
+      File file = new File(directories.get(depth - 1), tree.getName(node));
+      boolean isDirectory = tree.isDirectory(node);
+      printLine(file, isDirectory, depth);
+      if (tree.getFirstChild(node) != CompactTree.NONE) {
+        if (directories.size() == depth) {
+          directories.add(file);
+        } else {
+          directories.set(depth, file);
+        }
+        node = tree.getFirstChild(node);
+        depth++;
+        continue;
+      }
+      while (node != CompactTree.NONE && tree.getNextSibling(node) == CompactTree.NONE) {
+        node = tree.getParent(node);
+        depth--;
+      }
+      if (node != CompactTree.NONE) {
+        node = tree.getNextSibling(node);
+      }
+    }
+  }
+
+  /**
+   * Prints the visible children of a directory in sorted order, each followed by its
+   * own subtree. The walk keeps an explicit stack of the listings being printed rather
+   * than recursing, so deep trees cannot overflow the thread's stack.
+   *
+   * @param directory the directory whose children are printed
+   * @param depth     the depth of the children below the root
+   */
+  private void printChildren(File directory, int depth) {
+    if (depth > options.getMaxDepth()) {
+      return;
+    }
+    List<File[]> listings = new ArrayList<>();
+    int[] positions = new int[16];
+    listings.add(listChildren(directory));
+    while (!listings.isEmpty()) {
+      int top = listings.size() - 1;
+      File[] children = listings.get(top);
+      if (positions[top] == children.length) {
+        listings.remove(top);
+        continue;
+      }
+      File child = children[positions[top]++];
+      int childDepth = depth + top;
+      boolean isDirectory = child.isDirectory();
+      printLine(child, isDirectory, childDepth);
+      if (isDirectory && childDepth < options.getMaxDepth()) {
+        if (listings.size() == positions.length) {
+          positions = Arrays.copyOf(positions, positions.length * 2);
+        }
+        positions[listings.size()] = 0;
+        listings.add(listChildren(child));
+      }
+    }
+  }
+
+  /**
+   * Prints the visible children of a directory in sorted order, holding at most the
+   * spill threshold's worth of sorted names in memory for each directory being
+   * printed. The raw listing of the directory being listed is held whole while its
+   * names are handed to the sorter.
+   * 
+   * Only names are collected while listing; a File is created for each child right
+   * before it is printed. Like printChildren, the walk keeps an explicit stack (here
+   * of open sorters) instead of recursing.
+   *
+   * @param directory the directory whose children are printed
+   * @param depth     the depth of the children below the root
+   */
+  private void printChildrenStreaming(File directory, int depth) {
+    if (depth > options.getMaxDepth()) {
+      return;
+    }
+    List<ExternalNameSorter> sorters = new ArrayList<>();
+    List<File> directories = new ArrayList<>();
+    try {
+      sorters.add(sortNames(directory));
+      directories.add(directory);
+      while (!sorters.isEmpty()) {
+        int top = sorters.size() - 1;
+        String name = sorters.get(top).next();
+        if (name == null) {
+          sorters.remove(top).close();
+          directories.remove(top);
+          continue;
+        }
+        File parent = directories.get(top);
+        File child = childOf(parent, name);
+        if (child.isDirectory() && !(child instanceof ArchiveEntry)) {
+          child = guardLinks(parent, child);
+        }
+        int childDepth = depth + top;
+        boolean isDirectory = child.isDirectory();
+        printLine(child, isDirectory, childDepth);
+        if (isDirectory && childDepth < options.getMaxDepth()) {
+          sorters.add(sortNames(child));
+          directories.add(child);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      for (ExternalNameSorter sorter : sorters) {
+        sorter.close();
+      }
+    }
+  }
+
+  /**
+   * Lists the visible names in a directory into a sorter, which spills them to
+   * temporary files if there are more than the spill threshold.
+   *
+   * @param directory the directory to list
+   * @return the sorter holding the names, ready to be read in order
+   * @throws IOException if a temporary file cannot be written
+   */
+  private ExternalNameSorter sortNames(File directory) throws IOException {
+    ExternalNameSorter sorter = new ExternalNameSorter(options.getSpillThreshold(),
+        AlphabeticalFileSorter::compareNames);
+    try {
+      // list() still reads the whole raw listing into one array before filtering it;
+      // the filter hands every name to the sorter and rejects it, so no second array
+      // of accepted names is built, and the raw one can be dropped on return
+      long listStart = System.nanoTime();
+      long[] states = filter.statesOf(filterRoot, directory);
+      int[] seen = new int[1];
+      directory.list((dir, name) -> {
+        seen[0]++;
+        if (includedEntry(dir, states, name, null) != null) {
+          try {
+            sorter.add(name);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        }
+        return false;
+      });
+      if (stats != null) {
+        stats.recordListing(System.nanoTime() - listStart, seen[0]);
+      }
+      return sorter;
+    } catch (UncheckedIOException e) {
+      sorter.close();
+      throw e.getCause();
+    } catch (RuntimeException e) {
+      sorter.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Prints a directory that was listed by a ParallelTreeWalker, followed by its
+   * subtree. Children are consumed in sorted order, waiting for each subdirectory's
+   * listing only when it is its turn to be printed. The open directories are kept on
+   * an explicit stack rather than recursing.
+   *
+   * When paging, what was printed so far is flushed before waiting for a listing, so
+   * the lines already known are not held back by a slow directory.
+   *
+   * @param node  the listed directory
+   * @param depth the depth of the directory below the root
+   */
+  private void printNode(ParallelTreeWalker.Node node, int depth) {
+    List<ParallelTreeWalker.Node> nodes = new ArrayList<>();
+    int[] positions = new int[16];
+    printLine(node.getDirectory(), true, depth);
+    nodes.add(node);
+    while (!nodes.isEmpty()) {
+      int top = nodes.size() - 1;
+      ParallelTreeWalker.Node current = nodes.get(top);
+      File[] children = current.getChildren();
+      if (positions[top] == children.length) {
+        nodes.remove(top);
+        continue;
+      }
+      int i = positions[top]++;
+      if (options.isPaged() && !current.isSubdirectoryListed(i)) {
+        if (json != null) {
+          json.flush();
+        } else {
+          writer.flush();
+        }
+      }
+      ParallelTreeWalker.Node subdirectory = current.awaitSubdirectory(i);
+      if (subdirectory != null) {
+        printLine(subdirectory.getDirectory(), true, depth + top + 1);
+        if (nodes.size() == positions.length) {
+          positions = Arrays.copyOf(positions, positions.length * 2);
+        }
+        positions[nodes.size()] = 0;
+        nodes.add(subdirectory);
+      } else {
+        printLine(children[i], false, depth + top + 1);
+      }
+    }
+  }
+
+  /**
+   * Lists the children of a directory that should be printed, sorted
+   * case-insensitively. Hidden files are left out unless they should be shown, and
+   * entries matching an exclude pattern or left out by the include patterns are never
+   * listed.
+   * The listing comes from the cache index when one is in use, or from the archive
+   * when the directory is a .zip or .jar file being expanded.
+   *
+   * @param directory the directory to list
+   * @return the sorted visible children, or an empty array if the directory cannot be read
+   */
+  File[] listChildren(File directory) {
+    return listChildren(directory, true);
+  }
+
+  /**
+   * Lists the children of a directory like listChildren(File), but in whatever order
+   * the file system returns them, for callers that do not print the tree.
+   *
+   * @param directory the directory to list
+   * @return the visible children, or an empty array if the directory cannot be read
+   */
+  private File[] listChildrenUnsorted(File directory) {
+    return listChildren(directory, false);
+  }
+
+  private File[] listChildren(File directory, boolean sorted) {
+    boolean recording = recorder != null && sorted;
+    // Read the time first, so a change during the listing is not mistaken for part of it
+    long lastModified = recording ? directory.lastModified() : 0;
+    long listedAt = recording ? System.currentTimeMillis() : 0;
+    File[] children;
+    long listStart = stats != null ? System.nanoTime() : 0;
+    if (directory instanceof ArchiveEntry archive) {
+      // Archive entries are already sorted, and never links
+      children = archive.listEntries();
+      if (stats != null) {
+        stats.recordListing(System.nanoTime() - listStart, children.length);
+      }
+    } else if (index != null) {
+      children = index.listChildren(directory);
+      if (stats != null) {
+        stats.recordListing(System.nanoTime() - listStart, children.length);
+      }
+    } else {
+      String[] names = directory.list();
+      children = new File[names != null ? names.length : 0];
+      for (int i = 0; i < children.length; i++) {
+        children[i] = new ListedFile(directory, names[i]);
+      }
+      if (stats != null) {
+        long sortStart = System.nanoTime();
+        stats.recordListing(sortStart - listStart, children.length);
+        if (sorted) {
+          AlphabeticalFileSorter.sort(children);
+          stats.recordSort(System.nanoTime() - sortStart);
+        }
+      } else if (sorted) {
+        AlphabeticalFileSorter.sort(children);
+      }
+    }
+    if (!options.isShowHidden() || !filter.isEmpty()) {
+      long[] states = filter.statesOf(filterRoot, directory);
+      int visible = 0;
+      for (File child : children) {
+        File included = includedEntry(directory, states, child.getName(), child);
+        if (included != null) {
+          children[visible++] = included;
+        }
+      }
+      if (visible < children.length) {
+        File[] trimmed = new File[visible];
+        System.arraycopy(children, 0, trimmed, 0, visible);
+        children = trimmed;
+      }
+    }
+    // Archives are only opened once they are known to be printed
+    if (options.isExpandArchives() && !(directory instanceof ArchiveEntry)) {
+      for (int i = 0; i < children.length; i++) {
+        children[i] = ArchiveEntry.wrap(children[i]);
+      }
+    }
+    for (int i = 0; i < children.length; i++) {
+      if (children[i].isDirectory() && !(children[i] instanceof ArchiveEntry)) {
+        children[i] = guardLinks(directory, children[i]);
+      }
+    }
+    if (recording) {
+      recorder.record(directory, lastModified, listedAt, children);
+    }
+    return children;
+  }
+
+  /**
+   * Returns the entry with the given name in a directory, for walks that list names
+   * rather than Files: an entry of the archive if the directory is one, and an
+   * archive to expand if the options ask for it and the name is one.
+   *
+   * @param directory the directory containing the entry
+   * @param name      the entry's name
+   * @return the entry
+   */
+  private File childOf(File directory, String name) {
+    File child = entryOf(directory, name);
+    return options.isExpandArchives() ? ArchiveEntry.wrap(child) : child;
+  }
+
+  /**
+   * Returns the entry with the given name in a directory like childOf, but without
+   * opening it if it is an archive to expand.
+   *
+   * @param directory the directory containing the entry
+   * @param name      the entry's name
+   * @return the entry
+   */
+  private File entryOf(File directory, String name) {
+    File child = null;
+    if (directory instanceof ArchiveEntry archive) {
+      child = archive.getEntry(name);
+    }
+    return child != null ? child : new ListedFile(directory, name);
+  }
+
+  /**
+   * Decides whether a walk should descend into a subdirectory, returning it marked
+   * as unfollowed (see ListedFile) if not.
+   * 
+   * A subdirectory is a symbolic link if its canonical path is not its parent's
+   * canonical path followed by its name. Links are not followed unless the options
+   * ask for it. When they are, every directory's canonical path is added to the
+   * walk's visited set, and a directory already in it (a loop back to an ancestor, or
+   * a second way into the same directory) is not descended into again.
+   * 
+   * The canonical path is kept with the returned directory, so working it out costs
+   * one lookup per directory. java.io has no way to ask whether a file is a link
+   * short of that lookup, but when links are not followed, a directory replayed from
+   * the index is not looked up at all: the index recorded whether it is a link when
+   * it was last listed from disk.
+   *
+   * @param parent    the directory that was listed
+   * @param directory a subdirectory of parent
+   * @return the directory, knowing its canonical path and whether to follow it
+   */
+  private File guardLinks(File parent, File directory) {
+    if (visited == null && directory instanceof TreeIndex.IndexedFile indexed) {
+      // A replayed listing already knows which subdirectories are links
+      return new ListedFile(directory, null, !indexed.isLink());
+    }
+    String parentPath = canonicalPathOf(parent);
+    String canonicalPath = canonicalPathOf(directory);
+    if (parentPath == null || canonicalPath == null) {
+      return new ListedFile(directory, canonicalPath, false);
+    }
+    boolean isLink = ListedFile.isLink(parentPath, canonicalPath, directory.getName());
+    boolean follow;
+    if (visited != null) {
+      follow = visited.add(canonicalPath);
+    } else {
+      follow = !isLink;
+    }
+    return new ListedFile(directory, canonicalPath, follow);
+  }
+
+  /**
+   * Returns a directory's canonical path, reusing the one recorded when it was listed.
+   *
+   * @param directory the directory
+   * @return the canonical path, or null if it cannot be determined
+   */
+  private static String canonicalPathOf(File directory) {
+    if (directory instanceof ListedFile listed && listed.getCanonicalPathIfKnown() != null) {
+      return listed.getCanonicalPathIfKnown();
+    }
+    try {
+      return directory.getCanonicalPath();
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Starts a new walk: when following links, clears the visited set and adds the root.
+   */
+  private void startWalk() {
+    if (options.isFollowLinks()) {
+      visited = new VisitedDirectories();
+      String rootPath = canonicalPathOf(options.getRoot());
+      if (rootPath != null) {
+        visited.add(rootPath);
+      }
+    } else {
+      visited = null;
+    }
+  }
+
+  /**
+   * Decides whether an entry should be printed: it must not match an exclude
+   * pattern, must not be hidden unless hidden files are shown, and must be kept by
+   * the include patterns if there are any. Entries left out are counted in the stats.
+   * 
+   * An archive to expand is not opened unless the include patterns need to know
+   * whether it can be read as a directory, so excluded and hidden archives are never
+   * read; the entry returned is then the opened archive, so it is not read again.
+   * 
+   * This runs for every listed entry, so it takes the File (or the parts to make one
+   * from) rather than a callback; the sequential walk never has to bootstrap a lambda,
+   * which is a noticeable part of startup for small trees.
+   *
+   * @param directory the directory containing the entry
+   * @param states    the directory's path pattern states, from EntryFilter.statesOf
+   * @param name      the file name
+   * @param file      the entry, or null to create it here
+   * @return the entry if it should be printed, or null
+   */
+  private File includedEntry(File directory, long[] states, String name, File file) {
+    if (filter.isExcluded(states, name)) {
+      if (stats != null) {
+        stats.recordExcluded();
+      }
+      return null;
+    }
+    if (file == null) {
+      file = entryOf(directory, name);
+    }
+    if (!options.isShowHidden() && file.isHidden()) {
+      if (stats != null) {
+        stats.recordHidden();
+      }
+      return null;
+    }
+    if (filter.hasIncludes()) {
+      if (options.isExpandArchives() && !(directory instanceof ArchiveEntry)) {
+        file = ArchiveEntry.wrap(file);
+      }
+      if (!filter.isIncluded(states, name, file.isDirectory())) {
+        if (stats != null) {
+          stats.recordExcluded();
+        }
+        return null;
+      }
+    }
+    return file;
+  }
+
+  /**
+   * Prints a single file or directory at the given depth. When size totals are
+   * being computed, the line goes through the SizeAggregator, which emits it once
+   * the totals it needs are known.
+   * 
+   * With include patterns, a directory's line is held back until a file below it is
+   * printed, and then printed along with any other held-back directories above it;
+   * the root is always printed.
+   *
+   * @param file        the file or directory to print
+   * @param isDirectory whether the file is a directory
+   * @param depth       the depth below the root
+   */
+  private void printLine(File file, boolean isDirectory, int depth) {
+    if (filter.hasIncludes()) {
+      if (depth == 0) {
+        pendingDirectories.clear();
+        pendingDirectories.add(file);
+        printedDepth = 1;
+      } else {
+        // Lines at this depth or deeper end the subtrees of the pending directories there
+        printedDepth = Math.min(printedDepth, depth);
+        while (pendingDirectories.size() > depth) {
+          pendingDirectories.remove(pendingDirectories.size() - 1);
+        }
+        if (isDirectory) {
+          pendingDirectories.add(file);
+          return;
+        }
+        for (; printedDepth < depth; printedDepth++) {
+          forwardLine(pendingDirectories.get(printedDepth), true, printedDepth);
+        }
+      }
+    }
+    forwardLine(file, isDirectory, depth);
+  }
+
+  /**
+   * Prints a line that is known to belong in the output, through the SizeAggregator
+   * when size totals are being computed.
+   *
+   * @param file        the file or directory to print
+   * @param isDirectory whether the file is a directory
+   * @param depth       the depth below the root
+   */
+  private void forwardLine(File file, boolean isDirectory, int depth) {
+    if (sizes != null) {
+      sizes.add(file, isDirectory, ListedFile.isUnfollowed(file), depth);
+    } else {
+      emitLine(file, isDirectory, depth, null);
+    }
+  }
+
+  /**
+   * Writes a single file or directory, indented and colored for its depth, using
+   * the prebuilt prefix for that depth.
+   * Directory names end with a slash, followed by the directory's totals if given.
+   * In a JSON format, the entry is handed to the JSON writer instead.
+   *
+   * @param file        the file or directory to print
+   * @param isDirectory whether the file is a directory
+   * @param depth       the depth below the root
+   * @param totals      the directory's size totals, or null
+   */
+  private void emitLine(File file, boolean isDirectory, int depth, SizeAggregator.Totals totals) {
+    // Directories that were not descended into still print as directories
+    isDirectory = isDirectory || ListedFile.isUnfollowed(file);
+    if (json != null) {
+      long start = stats != null ? System.nanoTime() : 0;
+      json.entry(file, isDirectory, depth, totals);
+      if (stats != null) {
+        stats.recordOutput(System.nanoTime() - start);
+      }
+      return;
+    }
+    String suffix;
+    if (totals != null) {
+      suffix = "/ (" + describe(totals) + ")";
+    } else {
+      suffix = isDirectory ? "/" : "";
+    }
+    if (stats != null) {
+      long start = System.nanoTime();
+      writer.writeLine(prefixes.get(depth), file.getName(), suffix);
+      stats.recordOutput(System.nanoTime() - start);
+    } else {
+      writer.writeLine(prefixes.get(depth), file.getName(), suffix);
+    }
+  }
+
+  /**
+   * Prints the root's totals on a line of their own after the tree.
+   *
+   * @param totals the root's totals
+   */
+  private void printSummary(SizeAggregator.Totals totals) {
+    out.setCurrentColor(prefixes.colorFor(0));
+    out.println(describe(totals));
+  }
+
+  /**
+   * Describes totals as, for example, "3 files, 1.5 KiB".
+   *
+   * @param totals the totals to describe
+   * @return the description
+   */
+  static String describe(SizeAggregator.Totals totals) {
+    long count = totals.getFileCount();
+    return count + (count == 1 ? " file, " : " files, ") + formatSize(totals.getSize());
+  }
+
+  /**
+   * Formats a number of bytes with a binary unit, for example "512 B" or "1.5 KiB".
+   *
+   * @param bytes the number of bytes
+   * @return the formatted size
+   */
+  static String formatSize(long bytes) {
+    if (bytes < 1024) {
+      return bytes + " B";
+    }
+    String[] units = {"KiB", "MiB", "GiB", "TiB", "PiB", "EiB"};
+    double value = bytes;
+    int unit = -1;
+    while (value >= 1024 && unit < units.length - 1) {
+      value /= 1024;
+      unit++;
+    }
+    return String.format(Locale.ROOT, "%.1f %s", value, units[unit]);
   }
 }
@@ -3,12 +3,15 @@ import org.junit.jupiter.api.io.TempDir;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.nio.file.Files;
 import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -149,4 +152,328 @@ public class TruffulaPrinterTest {
         // Assert that the output matches the expected output exactly
         assertEquals(expected.toString(), output);
     }
+
+    /**
+     * Builds a directory tree with the given number of entries per directory, where
+     * every directory entry is itself a directory until the given depth is reached.
+     */
+    private static void buildTree(File parent, int width, int depth) throws IOException {
+        for (int i = 0; i < width; i++) {
+            String name = (i % 2 == 0 ? "Entry" : "entry") + i;
+            if (depth > 0 && i % 3 == 0) {
+                File dir = new File(parent, name);
+                assertTrue(dir.mkdir(), name + " should be created");
+                buildTree(dir, width, depth - 1);
+            } else {
+                new File(parent, name + ".txt").createNewFile();
+            }
+        }
+    }
+
+    private static String printToString(TruffulaOptions options) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        new TruffulaPrinter(options, new PrintStream(baos)).printTree();
+        return baos.toString();
+    }
+
+    @Test
+    public void testPrintTree_ParallelMatchesSequential(@TempDir File tempDir) throws IOException {
+        File root = new File(tempDir, "root");
+        assertTrue(root.mkdir(), "root should be created");
+        buildTree(root, 7, 3);
+        createHiddenFile(root, ".hidden.txt");
+
+        String sequential = printToString(new TruffulaOptions(root, false, true, 1));
+        String parallel = printToString(new TruffulaOptions(root, false, true, 4));
+        String virtual = printToString(new TruffulaOptions(new String[] {"-vt", "2", root.getPath()}));
+        String paged = printToString(new TruffulaOptions(new String[] {"-page", "-p", "2", root.getPath()}));
+
+        assertEquals(sequential, parallel);
+        assertEquals(sequential, virtual);
+        assertEquals(sequential, paged);
+        assertTrue(sequential.contains("entry1.txt"));
+        assertTrue(!sequential.contains(".hidden.txt"));
+    }
+
+    @Test
+    public void testPrintTree_StreamingMatchesSequential(@TempDir File tempDir) throws IOException {
+        File root = new File(tempDir, "root");
+        assertTrue(root.mkdir(), "root should be created");
+        buildTree(root, 9, 2);
+        createHiddenFile(root, ".hidden.txt");
+
+        String sequential = printToString(new TruffulaOptions(root, true, true));
+        String streamed = printToString(new TruffulaOptions(new String[] {"-h", "-spill", "2", root.getPath()}));
+
+        assertEquals(sequential, streamed);
+        assertTrue(streamed.contains(".hidden.txt"));
+    }
+
+    @Test
+    public void testPrintTree_CompactTreeMatchesWalk(@TempDir File tempDir) throws IOException {
+        File root = new File(tempDir, "root");
+        assertTrue(root.mkdir(), "root should be created");
+        buildTree(root, 8, 3);
+        createHiddenFile(root, ".hidden.txt");
+
+        for (String[] args : new String[][] {{root.getPath()}, {"-du", "-L", "2", root.getPath()},
+                {"-format", "ndjson", root.getPath()}}) {
+            TruffulaOptions options = new TruffulaOptions(args);
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            TruffulaPrinter printer = new TruffulaPrinter(options, new PrintStream(baos));
+            printer.printTree(printer.buildCompactTree());
+            assertEquals(printToString(options), baos.toString());
+        }
+    }
+
+    @Test
+    public void testPrintTree_SymbolicLinks(@TempDir File tempDir) throws IOException {
+        File root = new File(tempDir, "root");
+        File docs = new File(root, "docs");
+        File external = new File(tempDir, "external");
+        assertTrue(docs.mkdirs());
+        assertTrue(external.mkdirs());
+        new File(docs, "a.txt").createNewFile();
+        new File(external, "b.txt").createNewFile();
+        try {
+            Files.createSymbolicLink(new File(docs, "loop").toPath(), root.toPath());
+            Files.createSymbolicLink(new File(root, "ext").toPath(), external.toPath());
+            Files.createSymbolicLink(new File(root, "more").toPath(), external.toPath());
+        } catch (UnsupportedOperationException | IOException e) {
+            // Symbolic links are not available (e.g. Windows without privileges)
+            return;
+        }
+
+        String nl = System.lineSeparator();
+        // Links are listed as directories but not descended into by default
+        String expected = "root/" + nl
+                + "   docs/" + nl
+                + "      a.txt" + nl
+                + "      loop/" + nl
+                + "   ext/" + nl
+                + "   more/" + nl;
+        for (String[] args : new String[][] {{"-nc", root.getPath()}, {"-nc", "-spill", "1", root.getPath()},
+                {"-nc", "-compact", root.getPath()}}) {
+            String plain = printToString(new TruffulaOptions(args))
+                    .replace(ConsoleColor.WHITE.getCode(), "").replace(ConsoleColor.RESET.getCode(), "");
+            assertEquals(expected, plain);
+        }
+
+        // Following links walks the external directory once; the loop back to the
+        // root and the second link to the same directory are not descended into
+        String followed = "root/" + nl
+                + "   docs/" + nl
+                + "      a.txt" + nl
+                + "      loop/" + nl
+                + "   ext/" + nl
+                + "      b.txt" + nl
+                + "   more/" + nl;
+        for (String[] args : new String[][] {{"-nc", "-follow", root.getPath()}, {"-nc", "-follow", "-p", "4", root.getPath()}}) {
+            String plain = printToString(new TruffulaOptions(args))
+                    .replace(ConsoleColor.WHITE.getCode(), "").replace(ConsoleColor.RESET.getCode(), "");
+            assertEquals(followed, plain);
+        }
+    }
+
+    @Test
+    public void testPrintTree_DepthLimitAndExcludes(@TempDir File tempDir) throws IOException {
+        File root = new File(tempDir, "root");
+        File nodeModules = new File(root, "node_modules");
+        File src = new File(root, "src");
+        File deep = new File(src, "deep");
+        assertTrue(nodeModules.mkdirs());
+        assertTrue(deep.mkdirs());
+        new File(nodeModules, "left-pad.js").createNewFile();
+        new File(root, "build.log").createNewFile();
+        new File(src, "Main.java").createNewFile();
+        new File(deep, "hidden-by-depth.txt").createNewFile();
+
+        String nl = System.lineSeparator();
+        String expected = "root/" + nl + "   src/" + nl + "      deep/" + nl + "      Main.java" + nl;
+
+        for (String threads : new String[] {"1", "3"}) {
+            String[] args = {"-nc", "-p", threads, "-L", "2", "-x", "node_modules", "-x", "*.log", root.getPath()};
+            String output = printToString(new TruffulaOptions(args));
+            String plain = output.replace(ConsoleColor.WHITE.getCode(), "").replace(ConsoleColor.RESET.getCode(), "");
+            assertEquals(expected, plain);
+        }
+    }
+
+    @Test
+    public void testPrintTree_IncludePatterns(@TempDir File tempDir) throws IOException {
+        File root = new File(tempDir, "root");
+        File deep = new File(root, "src/main/deep");
+        File docs = new File(root, "docs");
+        assertTrue(deep.mkdirs());
+        assertTrue(new File(root, "src/empty").mkdirs());
+        assertTrue(docs.mkdirs());
+        new File(root, "src/main/App.java").createNewFile();
+        new File(root, "src/main/notes.txt").createNewFile();
+        new File(deep, "Deep.java").createNewFile();
+        new File(docs, "Guide.java").createNewFile();
+
+        String nl = System.lineSeparator();
+        String expected = "root/" + nl + "   src/" + nl + "      main/" + nl + "         App.java" + nl
+            + "         deep/" + nl + "            Deep.java" + nl;
+
+        for (String threads : new String[] {"1", "3"}) {
+            String[] args = {"-nc", "-p", threads, "-i", "src/**/*.java", root.getPath()};
+            String plain = printToString(new TruffulaOptions(args))
+                .replace(ConsoleColor.WHITE.getCode(), "").replace(ConsoleColor.RESET.getCode(), "");
+            assertEquals(expected, plain);
+        }
+
+        String byName = printToString(new TruffulaOptions(new String[] {"-nc", "-i", "*.java", "-x", "docs", root.getPath()}))
+            .replace(ConsoleColor.WHITE.getCode(), "").replace(ConsoleColor.RESET.getCode(), "");
+        assertEquals(expected, byName);
+    }
+
+    @Test
+    public void testPrintTree_Archives(@TempDir File tempDir) throws IOException {
+        File root = new File(tempDir, "root");
+        assertTrue(root.mkdirs());
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(new File(root, "app.jar")))) {
+            for (String name : new String[] {"META-INF/MANIFEST.MF", "com/example/App.class", "com/example/util/",
+                    "README.md", ".hidden"}) {
+                zip.putNextEntry(new ZipEntry(name));
+                zip.write(name.getBytes());
+                zip.closeEntry();
+            }
+        }
+        writeBytes(new File(root, "broken.zip"), 10);
+        new File(root, "notes.txt").createNewFile();
+
+        String nl = System.lineSeparator();
+        String expected = "root/" + nl
+            + "   app.jar/" + nl
+            + "      com/" + nl
+            + "         example/" + nl
+            + "            App.class" + nl
+            + "            util/" + nl
+            + "      META-INF/" + nl
+            + "         MANIFEST.MF" + nl
+            + "      README.md" + nl
+            + "   broken.zip" + nl
+            + "   notes.txt" + nl;
+
+        for (String[] walk : new String[][] {{"-p", "1"}, {"-p", "3"}, {"-spill", "2"}}) {
+            String[] args = {"-nc", "-archives", walk[0], walk[1], root.getPath()};
+            String plain = printToString(new TruffulaOptions(args))
+                .replace(ConsoleColor.WHITE.getCode(), "").replace(ConsoleColor.RESET.getCode(), "");
+            assertEquals(expected, plain);
+        }
+
+        String included = printToString(new TruffulaOptions(new String[] {"-nc", "-archives", "-i", "*.class", root.getPath()}))
+            .replace(ConsoleColor.WHITE.getCode(), "").replace(ConsoleColor.RESET.getCode(), "");
+        assertEquals("root/" + nl + "   app.jar/" + nl + "      com/" + nl + "         example/" + nl
+            + "            App.class" + nl, included);
+
+        for (String[] walk : new String[][] {{"-p", "1"}, {"-spill", "2"}}) {
+            String[] args = {"-nc", "-archives", "-x", "*.jar", walk[0], walk[1], root.getPath()};
+            String excluded = printToString(new TruffulaOptions(args))
+                .replace(ConsoleColor.WHITE.getCode(), "").replace(ConsoleColor.RESET.getCode(), "");
+            assertEquals("root/" + nl + "   broken.zip" + nl + "   notes.txt" + nl, excluded);
+        }
+
+        String unexpanded = printToString(new TruffulaOptions(new String[] {"-nc", root.getPath()}))
+            .replace(ConsoleColor.WHITE.getCode(), "").replace(ConsoleColor.RESET.getCode(), "");
+        assertEquals("root/" + nl + "   app.jar" + nl + "   broken.zip" + nl + "   notes.txt" + nl, unexpanded);
+    }
+
+    private static void writeBytes(File file, int count) throws IOException {
+        try (PrintStream out = new PrintStream(file)) {
+            out.print("x".repeat(count));
+        }
+    }
+
+    @Test
+    public void testPrintTree_SizeTotals(@TempDir File tempDir) throws IOException {
+        File root = new File(tempDir, "root");
+        File sub = new File(root, "sub");
+        File empty = new File(sub, "empty");
+        assertTrue(empty.mkdirs());
+        writeBytes(new File(root, "a.txt"), 10);
+        writeBytes(new File(sub, "b.txt"), 2000);
+        writeBytes(new File(sub, "c.txt"), 5);
+        writeBytes(new File(root, "z.txt"), 1);
+
+        String nl = System.lineSeparator();
+        String expected = "root/" + nl
+            + "   a.txt" + nl
+            + "   sub/ (2 files, 2.0 KiB)" + nl
+            + "      b.txt" + nl
+            + "      c.txt" + nl
+            + "      empty/ (0 files, 0 B)" + nl
+            + "   z.txt" + nl
+            + "4 files, 2.0 KiB" + nl;
+
+        for (String threads : new String[] {"1", "4"}) {
+            String output = printToString(new TruffulaOptions(new String[] {"-nc", "-du", "-p", threads, root.getPath()}));
+            String plain = output.replace(ConsoleColor.WHITE.getCode(), "").replace(ConsoleColor.RESET.getCode(), "");
+            assertEquals(expected, plain);
+        }
+    }
+
+    @Test
+    public void testPrintTree_SizeTotalsSkipUnfollowedLinks(@TempDir File tempDir) throws IOException {
+        File root = new File(tempDir, "root");
+        File external = new File(tempDir, "external");
+        assertTrue(root.mkdirs());
+        assertTrue(external.mkdirs());
+        try (PrintStream file = new PrintStream(new File(external, "b.txt"))) {
+            file.print("xyz");
+        }
+        try {
+            Files.createSymbolicLink(new File(root, "link").toPath(), external.toPath());
+        } catch (UnsupportedOperationException | IOException e) {
+            // Symbolic links are not available (e.g. Windows without privileges)
+            return;
+        }
+
+        // The link is neither descended into nor counted as a file
+        String nl = System.lineSeparator();
+        String expected = "root/" + nl
+            + "   link/" + nl
+            + "0 files, 0 B" + nl;
+        String output = printToString(new TruffulaOptions(new String[] {"-nc", "-du", root.getPath()}));
+        assertEquals(expected, output.replace(ConsoleColor.WHITE.getCode(), "").replace(ConsoleColor.RESET.getCode(), ""));
+
+        String json = printToString(new TruffulaOptions(new String[] {"-du", "-format", "ndjson", root.getPath()}));
+        assertTrue(json.contains("\"type\":\"totals\",\"totalSize\":0,\"fileCount\":0}"), json);
+    }
+
+    @Test
+    public void testFormatSize() {
+        assertEquals("0 B", TruffulaPrinter.formatSize(0));
+        assertEquals("1023 B", TruffulaPrinter.formatSize(1023));
+        assertEquals("1.5 KiB", TruffulaPrinter.formatSize(1536));
+        assertEquals("3.0 GiB", TruffulaPrinter.formatSize(3L * 1024 * 1024 * 1024));
+    }
+
+    @Test
+    public void testPrintTree_CollectsStats(@TempDir File tempDir) throws IOException {
+        File root = new File(tempDir, "root");
+        File sub = new File(root, "sub");
+        assertTrue(sub.mkdirs());
+        new File(root, "a.txt").createNewFile();
+        new File(sub, "b.txt").createNewFile();
+        new File(sub, "skip.log").createNewFile();
+        createHiddenFile(root, ".hidden");
+
+        TruffulaOptions options = new TruffulaOptions(new String[] {"-stats", "-x", "*.log", root.getPath()});
+        TruffulaPrinter printer = new TruffulaPrinter(options, new PrintStream(new ByteArrayOutputStream()));
+        printer.printTree();
+
+        TraversalStats stats = printer.getStats();
+        assertEquals(2, stats.getDirectoriesListed());
+        assertEquals(5, stats.getEntriesSeen());
+        assertEquals(1, stats.getHiddenFiltered());
+        assertEquals(1, stats.getExcluded());
+        assertEquals(4, stats.getLinesPrinted());
+        assertEquals(2, stats.getListingLatency().getCount());
+
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        stats.report(new PrintStream(report));
+        assertTrue(report.toString().contains("directories listed   2"));
+    }
 }
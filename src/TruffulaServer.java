@@ -0,0 +1,406 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A long-running process that prints trees for TruffulaClient, so repeated invocations
+ * skip JVM startup and run on already compiled code.
+ * 
+ * The server listens on the loopback interface only, but any local user can connect
+ * to a loopback port, and requests run with the server's file permissions. So the
+ * server makes up a random token when it starts and writes it to a file only its own
+ * user can read (server-<port>.token in ~/.truffula); a request without the token is
+ * refused before its arguments are read. The file is deleted when the server closes.
+ *
+ * For every root it has printed,
+ * it keeps an in-memory TreeIndex of the directory listings it used, so printing the
+ * same tree again only lists the directories that changed since the last request.
+ * Only the MAX_INDEXES most recently printed roots keep their index.
+ * 
+ * Example Usage:
+ * 
+ * try (TruffulaServer server = new TruffulaServer(7878)) {
+ *   server.serve();
+ * }
+ * 
+ * Protocol:
+ * 
+ * The client sends the token, then the number of arguments followed by each argument,
+ * written with DataOutputStream (writeUTF for the token, an int, then writeUTF for
+ * each argument). The path and any file
+ * arguments must already be absolute, since the server has its own working directory.
+ * 
+ * The server answers with a sequence of frames, each a one-byte kind followed by an
+ * int. STDOUT and STDERR frames carry that many bytes of output; the final EXIT frame
+ * carries the exit status instead and ends the response. A wrong token is answered
+ * with an error on STDERR and exit status 1, as is a request that fails while it is
+ * printed. A connection that sends no complete request within the read timeout is
+ * closed without an answer.
+ * 
+ * Requests are handled concurrently, one virtual thread per connection. A request
+ * naming several roots prints them one after another, each through its own index.
+ * -watch is not supported, since a watched tree never finishes printing.
+ */
+public class TruffulaServer implements Closeable {
+
+  /**
+   * Frame kind for bytes written to standard output.
+   */
+  public static final int STDOUT = 1;
+
+  /**
+   * Frame kind for bytes written to standard error.
+   */
+  public static final int STDERR = 2;
+
+  /**
+   * Frame kind for the exit status, which ends a response.
+   */
+  public static final int EXIT = 3;
+
+  /**
+   * The number of roots whose listings are kept between requests.
+   */
+  static final int MAX_INDEXES = 32;
+
+  /**
+   * How long a connection may take to send its request, in milliseconds.
+   */
+  static final int READ_TIMEOUT_MILLIS = 30_000;
+
+  private final ServerSocket serverSocket;
+  private final File tokenFile;
+  private final byte[] token;
+
+  /**
+   * Listings used for the last tree printed under each root, keyed by absolute path.
+   * An index is removed while a request uses it, so concurrent requests for the same
+   * root never share one.
+   */
+  private final Map<String, TreeIndex> indexes = Collections.synchronizedMap(new IndexCache());
+
+  private int readTimeoutMillis = READ_TIMEOUT_MILLIS;
+
+  /**
+   * Creates a server listening on the given port of the loopback interface, with its
+   * token file in ~/.truffula.
+   *
+   * @param port the port to listen on, or 0 to pick a free port
+   * @throws IOException if the port cannot be bound or the token file cannot be written
+   */
+  public TruffulaServer(int port) throws IOException {
+    this(port, defaultTokenDirectory());
+  }
+
+  /**
+   * Creates a server listening on the given port of the loopback interface.
+   *
+   * @param port           the port to listen on, or 0 to pick a free port
+   * @param tokenDirectory the directory to write the token file to
+   * @throws IOException if the port cannot be bound or the token file cannot be written
+   */
+  public TruffulaServer(int port, File tokenDirectory) throws IOException {
+    serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+    byte[] random = new byte[32];
+    new SecureRandom().nextBytes(random);
+    token = HexFormat.of().formatHex(random).getBytes();
+    tokenFile = tokenFile(tokenDirectory, serverSocket.getLocalPort());
+    try {
+      writeToken(tokenFile, token);
+    } catch (IOException e) {
+      serverSocket.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Returns the directory token files are kept in by default, ~/.truffula.
+   *
+   * @return the directory
+   */
+  static File defaultTokenDirectory() {
+    return new File(System.getProperty("user.home"), ".truffula");
+  }
+
+  /**
+   * Returns the file holding the token of the server on a port.
+   *
+   * @param tokenDirectory the directory token files are kept in
+   * @param port           the server's port
+   * @return the token file
+   */
+  static File tokenFile(File tokenDirectory, int port) {
+    return new File(tokenDirectory, "server-" + port + ".token");
+  }
+
+  /**
+   * Writes the token to a new file that only the owner can read or write, in a
+   * directory only the owner can use. The file is restricted before the token is
+   * written into it.
+   */
+  private static void writeToken(File file, byte[] token) throws IOException {
+    File directory = file.getParentFile();
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Cannot create " + directory.getPath());
+    }
+    if (!ownerOnly(directory) || !directory.setExecutable(false, false) || !directory.setExecutable(true, true)) {
+      throw new IOException("Cannot restrict access to " + directory.getPath());
+    }
+    if (file.exists() && !file.delete()) {
+      throw new IOException("Cannot replace " + file.getPath());
+    }
+    if (!file.createNewFile() || !ownerOnly(file)) {
+      throw new IOException("Cannot restrict access to " + file.getPath());
+    }
+    try (FileWriter writer = new FileWriter(file)) {
+      writer.write(new String(token));
+    }
+  }
+
+  /**
+   * Makes a file readable and writable by its owner alone.
+   *
+   * @return true if the permissions were changed; false otherwise
+   */
+  private static boolean ownerOnly(File file) {
+    return file.setReadable(false, false) && file.setReadable(true, true)
+        && file.setWritable(false, false) && file.setWritable(true, true);
+  }
+
+  /**
+   * Returns the port the server listens on.
+   *
+   * @return the local port
+   */
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  /**
+   * Sets how long a connection may take to send its request.
+   *
+   * @param millis the read timeout in milliseconds
+   */
+  void setReadTimeout(int millis) {
+    readTimeoutMillis = millis;
+  }
+
+  /**
+   * Accepts and handles connections until the server is closed.
+   *
+   * @throws IOException if accepting a connection fails for a reason other than
+   *         the server being closed
+   */
+  public void serve() throws IOException {
+    while (!serverSocket.isClosed()) {
+      Socket socket;
+      try {
+        socket = serverSocket.accept();
+      } catch (IOException e) {
+        if (serverSocket.isClosed()) {
+          return;
+        }
+        throw e;
+      }
+      Thread.ofVirtual().start(() -> handle(socket));
+    }
+  }
+
+  /**
+   * Stops accepting connections and deletes the token file. Requests already being
+   * handled run to completion.
+   *
+   * @throws IOException if the server socket cannot be closed
+   */
+  @Override
+  public void close() throws IOException {
+    tokenFile.delete();
+    serverSocket.close();
+  }
+
+  /**
+   * Reads one request from a connection, prints the tree and writes the response.
+   */
+  private void handle(Socket socket) {
+    try (socket) {
+      // A client that stops sending must not hold its virtual thread forever
+      socket.setSoTimeout(readTimeoutMillis);
+      DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      DataOutputStream response = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      PrintStream out = new PrintStream(new FrameOutputStream(response, STDOUT));
+      PrintStream err = new PrintStream(new FrameOutputStream(response, STDERR));
+      int status;
+      // Compared in constant time, so the token cannot be guessed a byte at a time
+      if (!MessageDigest.isEqual(in.readUTF().getBytes(), token)) {
+        err.println("Error: Invalid server token");
+        status = 1;
+      } else {
+        String[] args = new String[in.readInt()];
+        for (int i = 0; i < args.length; i++) {
+          args[i] = in.readUTF();
+        }
+        try {
+          status = run(args, out, err);
+        } catch (RuntimeException e) {
+          err.println("Error: " + e.getMessage());
+          status = 1;
+        }
+      }
+      out.flush();
+      err.flush();
+      response.writeByte(EXIT);
+      response.writeInt(status);
+      response.flush();
+    } catch (IOException e) {
+      // The client went away or timed out; there is nobody left to report to
+    }
+  }
+
+  /**
+   * Prints the tree for one request.
+   *
+   * @return the exit status for the client
+   */
+  int run(String[] args, PrintStream out, PrintStream err) {
+    TruffulaOptions options;
+    try {
+      options = new TruffulaOptions(args);
+      if (options.isWatch()) {
+        throw new IllegalArgumentException("-watch is not supported by the server");
+      }
+    } catch (IllegalArgumentException | FileNotFoundException e) {
+      err.println("Error: " + e.getMessage());
+      err.println("Usage: truffula " + TruffulaOptions.USAGE);
+      return 1;
+    }
+
+    if (options.getOutputFile() == null) {
+      return print(options, out, err);
+    }
+    PrintStream file;
+    try {
+      file = new PrintStream(BackgroundOutputStream.openFile(options.getOutputFile()));
+    } catch (IOException e) {
+      err.println("Error: Cannot write " + options.getOutputFile() + ": " + e.getMessage());
+      return 1;
+    }
+    int status;
+    try {
+      status = print(options, file, err);
+    } finally {
+      file.close();
+    }
+    if (file.checkError()) {
+      err.println("Error: Could not write " + options.getOutputFile());
+      return 1;
+    }
+    return status;
+  }
+
+  /**
+   * Prints a diff, or every root's tree, for one request.
+   *
+   * @return the exit status for the client
+   */
+  private int print(TruffulaOptions options, PrintStream out, PrintStream err) {
+    if (options.getDiffRoot() != null) {
+      return new TreeDiff(options, options.getDiffRoot(), out).print() > 0 ? 1 : 0;
+    }
+
+    // Several roots are printed one after another, each through its own warm index
+    for (File root : options.getRoots()) {
+      TruffulaOptions rootOptions = options.forRoot(root);
+      // An explicit cache file is honored as usual; otherwise use the in-memory index
+      TruffulaPrinter printer = new TruffulaPrinter(rootOptions, out);
+      if (rootOptions.getTopCount() > 0) {
+        printer.printTopEntries();
+      } else if (rootOptions.getCacheFile() != null || rootOptions.isStreaming()) {
+        printer.printTree();
+      } else {
+        String key = root.getAbsolutePath();
+        TreeIndex index = indexes.remove(key);
+        if (index == null) {
+          index = TreeIndex.inMemory(root);
+        }
+        printer.printTree(index);
+        indexes.put(key, index.next());
+      }
+      if (printer.getStats() != null) {
+        printer.getStats().report(err);
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * The indexes of the most recently printed roots, dropping the least recently
+   * used one when a root beyond MAX_INDEXES is added.
+   */
+  private static class IndexCache extends LinkedHashMap<String, TreeIndex> {
+    private static final long serialVersionUID = 1L;
+
+    IndexCache() {
+      super(16, 0.75f, true);
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, TreeIndex> eldest) {
+      return size() > MAX_INDEXES;
+    }
+  }
+
+  /**
+   * Writes everything written to it as frames of one kind. Each write becomes one
+   * frame; callers are expected to write in large chunks.
+   */
+  private static class FrameOutputStream extends OutputStream {
+    private final DataOutputStream response;
+    private final int kind;
+
+    FrameOutputStream(DataOutputStream response, int kind) {
+      this.response = response;
+      this.kind = kind;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+      if (length == 0) {
+        return;
+      }
+      synchronized (response) {
+        response.writeByte(kind);
+        response.writeInt(length);
+        response.write(bytes, offset, length);
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      synchronized (response) {
+        response.flush();
+      }
+    }
+  }
+}
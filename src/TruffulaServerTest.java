@@ -0,0 +1,174 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TruffulaServerTest {
+
+  private static String printLocally(String[] args) throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    new TruffulaPrinter(new TruffulaOptions(args), new PrintStream(baos)).printTree();
+    return baos.toString();
+  }
+
+  @Test
+  void testClientOutputMatchesLocalRun(@TempDir File tempDir) throws Exception {
+    File root = new File(tempDir, "myFolder");
+    File images = new File(root, "Documents/images");
+    assertTrue(images.mkdirs());
+    new File(root, "zebra.txt").createNewFile();
+    new File(images, "Cat.png").createNewFile();
+    new File(images, "cat.png").createNewFile();
+
+    File tokens = new File(tempDir, "tokens");
+    try (TruffulaServer server = new TruffulaServer(0, tokens)) {
+      Thread.ofVirtual().start(() -> {
+        try {
+          server.serve();
+        } catch (IOException e) {
+          throw new AssertionError(e);
+        }
+      });
+
+      String[] args = {"-du", root.getPath()};
+      String expected = printLocally(args);
+      // The second request replays listings from the server's in-memory index
+      for (int run = 0; run < 2; run++) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int status = TruffulaClient.run(server.getPort(), tokens, args, new PrintStream(out), new PrintStream(err));
+        assertEquals(0, status);
+        assertEquals(expected, out.toString());
+        assertEquals("", err.toString());
+      }
+
+      new File(images, "Dog.png").createNewFile();
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      TruffulaClient.run(server.getPort(), tokens, args, new PrintStream(out), new PrintStream(new ByteArrayOutputStream()));
+      assertEquals(printLocally(args), out.toString());
+      assertTrue(out.toString().contains("Dog.png"));
+    }
+  }
+
+  @Test
+  void testInvalidArgumentsReportErrorStatus(@TempDir File tempDir) throws Exception {
+    File tokens = new File(tempDir, "tokens");
+    try (TruffulaServer server = new TruffulaServer(0, tokens)) {
+      Thread.ofVirtual().start(() -> {
+        try {
+          server.serve();
+        } catch (IOException e) {
+          throw new AssertionError(e);
+        }
+      });
+
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      ByteArrayOutputStream err = new ByteArrayOutputStream();
+      String[] args = {"-bogus", tempDir.getPath()};
+      int status = TruffulaClient.run(server.getPort(), tokens, args, new PrintStream(out), new PrintStream(err));
+      assertEquals(1, status);
+      assertEquals("", out.toString());
+      assertTrue(err.toString().startsWith("Error: Unknown argument: -bogus"));
+    }
+  }
+
+  @Test
+  void testRequestWithoutTokenIsRefused(@TempDir File tempDir) throws Exception {
+    File tokens = new File(tempDir, "tokens");
+    File root = new File(tempDir, "myFolder");
+    assertTrue(root.mkdir());
+    File tokenFile;
+    try (TruffulaServer server = new TruffulaServer(0, tokens)) {
+      Thread.ofVirtual().start(() -> {
+        try {
+          server.serve();
+        } catch (IOException e) {
+          throw new AssertionError(e);
+        }
+      });
+
+      // Only the owner can read the token
+      tokenFile = TruffulaServer.tokenFile(tokens, server.getPort());
+      assertEquals(PosixFilePermissions.fromString("rw-------"), Files.getPosixFilePermissions(tokenFile.toPath()));
+      assertEquals(PosixFilePermissions.fromString("rwx------"), Files.getPosixFilePermissions(tokens.toPath()));
+
+      File forged = new File(tempDir, "forged");
+      assertTrue(forged.mkdir());
+      try (PrintStream out = new PrintStream(TruffulaServer.tokenFile(forged, server.getPort()))) {
+        out.println("not the token");
+      }
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      ByteArrayOutputStream err = new ByteArrayOutputStream();
+      String[] args = {root.getPath()};
+      int status = TruffulaClient.run(server.getPort(), forged, args, new PrintStream(out), new PrintStream(err));
+      assertEquals(1, status);
+      assertEquals("", out.toString());
+      assertEquals("Error: Invalid server token" + System.lineSeparator(), err.toString());
+
+      assertThrows(IOException.class, () -> TruffulaClient.run(server.getPort(), new File(tempDir, "none"), args,
+          new PrintStream(out), new PrintStream(err)));
+    }
+    assertFalse(tokenFile.exists());
+  }
+
+  @Test
+  void testFailedRequestReportsErrorStatus(@TempDir File tempDir) throws Exception {
+    File tokens = new File(tempDir, "tokens");
+    try (TruffulaServer server = new TruffulaServer(0, tokens) {
+      @Override
+      int run(String[] args, PrintStream out, PrintStream err) {
+        throw new IllegalStateException("broken");
+      }
+    }) {
+      Thread.ofVirtual().start(() -> {
+        try {
+          server.serve();
+        } catch (IOException e) {
+          throw new AssertionError(e);
+        }
+      });
+
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      ByteArrayOutputStream err = new ByteArrayOutputStream();
+      String[] args = {tempDir.getPath()};
+      int status = TruffulaClient.run(server.getPort(), tokens, args, new PrintStream(out), new PrintStream(err));
+      assertEquals(1, status);
+      assertEquals("Error: broken" + System.lineSeparator(), err.toString());
+    }
+  }
+
+  @Test
+  void testSilentConnectionIsClosed(@TempDir File tempDir) throws Exception {
+    File tokens = new File(tempDir, "tokens");
+    try (TruffulaServer server = new TruffulaServer(0, tokens)) {
+      server.setReadTimeout(100);
+      Thread.ofVirtual().start(() -> {
+        try {
+          server.serve();
+        } catch (IOException e) {
+          throw new AssertionError(e);
+        }
+      });
+
+      try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+        // Without the server's timeout this read would wait for the test's instead
+        socket.setSoTimeout(10_000);
+        InputStream in = socket.getInputStream();
+        assertEquals(-1, in.read());
+      }
+    }
+  }
+}
@@ -0,0 +1,84 @@
+/**
+ * A thread-safe set of the directories visited during one walk, identified by their
+ * canonical paths.
+ * 
+ * To stay small for millions of directories, the set keeps a 64-bit hash of each
+ * path rather than the path itself, in an open-addressed long array: 8 bytes per
+ * directory at most, or 16 bytes while the table is half full. Two different paths
+ * only collide with a probability of about n^2 / 2^65, which for a million
+ * directories is around one in 37 million; a collision would make one directory
+ * look visited and leave it unlisted, never make a walk loop.
+ */
+public class VisitedDirectories {
+
+  /**
+   * Marks an empty slot. Hashes that come out as 0 are stored as 1 instead.
+   */
+  private static final long EMPTY = 0;
+
+  private long[] table = new long[1024];
+  private int size;
+
+  /**
+   * Adds a directory to the set.
+   *
+   * @param canonicalPath the directory's canonical path
+   * @return true if the directory had not been visited; false if it had
+   */
+  public synchronized boolean add(String canonicalPath) {
+    long hash = hash(canonicalPath);
+    int mask = table.length - 1;
+    int slot = (int) (hash ^ (hash >>> 32)) & mask;
+    while (table[slot] != EMPTY) {
+      if (table[slot] == hash) {
+        return false;
+      }
+      slot = (slot + 1) & mask;
+    }
+    table[slot] = hash;
+    if (++size * 2 > table.length) {
+      grow();
+    }
+    return true;
+  }
+
+  /**
+   * Returns the number of directories in the set.
+   *
+   * @return the number of visited directories
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+  private void grow() {
+    long[] old = table;
+    table = new long[old.length * 2];
+    int mask = table.length - 1;
+    for (long hash : old) {
+      if (hash != EMPTY) {
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while (table[slot] != EMPTY) {
+          slot = (slot + 1) & mask;
+        }
+        table[slot] = hash;
+      }
+    }
+  }
+
+  /**
+   * 64-bit FNV-1a over the path's characters, followed by a final mix so that paths
+   * differing only at the end still spread across the table.
+   */
+  private static long hash(String path) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < path.length(); i++) {
+      hash ^= path.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    return hash == EMPTY ? 1 : hash;
+  }
+}
@@ -0,0 +1,20 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class VisitedDirectoriesTest {
+
+  @Test
+  void testAddsEachPathOnce() {
+    VisitedDirectories visited = new VisitedDirectories();
+    for (int i = 0; i < 100_000; i++) {
+      assertTrue(visited.add("/data/dir" + i));
+    }
+    for (int i = 0; i < 100_000; i += 997) {
+      assertFalse(visited.add("/data/dir" + i));
+    }
+    assertEquals(100_000, visited.size());
+  }
+}